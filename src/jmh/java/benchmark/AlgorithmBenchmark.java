@@ -0,0 +1,130 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deconvolution.algorithm.Algorithm;
+import deconvolution.algorithm.AlgorithmList;
+import deconvolution.algorithm.FilterCache;
+import deconvolution.algorithm.SpectrumCache;
+import deconvolutionlab.monitor.Verbose;
+import fft.PlanCache;
+import signal.RealSignal;
+import signal.SignalCollector;
+
+/**
+ * The iterations of every algorithm on a synthetic volume blurred by a
+ * Gaussian PSF.
+ * 
+ * The preparation is done out of the timed region: the padded image, its
+ * spectrum and the spectra of the PSF are computed by a first run and shared
+ * through a cache of spectra, the FFT plans are in the plan cache and the
+ * algorithm is created before every invocation. The timed region is the loop
+ * of the iterations, the inverse FFT and the crop of the result; the cost of
+ * one iteration is the difference between the scores of 11 and 1
+ * iterations, divided by 10. The direct algorithms ignore the iterations.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+	@Param({ "RIF", "TRIF", "NIF", "DIV", "FISTA", "ISTA", "LW", "NNLS", "SP", "RL", "RLTV", "RLA", "OSRL", "TM", "ICTM", "VC", "I", "CONV", "SIM" })
+	public String			algorithm;
+
+	@Param({ "64x64x32", "128x128x64" })
+	public String			size;
+
+	@Param({ "1", "11" })
+	public int				iterations;
+
+	private RealSignal		image;
+	private RealSignal		psf;
+	private SpectrumCache	spectra;
+	private Algorithm		algo;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		int[] dim = Volumes.parse(size);
+		image = Volumes.image(dim);
+		psf = Volumes.psf(dim);
+		spectra = new SpectrumCache(true);
+		prepare();
+		SignalCollector.free(algo.run(image, psf));
+	}
+
+	@Setup(Level.Invocation)
+	public void prepare() {
+		algo = AlgorithmList.createAlgorithm(algorithm);
+		algo.setIterationsMax(iterations);
+		algo.getController().setVerbose(Verbose.Mute);
+		algo.getController().setSpectra(spectra);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		// The caches hold signals, they are emptied before the collector
+		spectra.clear();
+		FilterCache.clear();
+		PlanCache.clear();
+		SignalCollector.clear();
+	}
+
+	@Benchmark
+	public RealSignal run() {
+		RealSignal x = algo.run(image, psf);
+		SignalCollector.free(x);
+		return x;
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import signal.ComplexSignal;
+import signal.Operations;
+import signal.RealSignal;
+import signal.SignalCollector;
+
+/**
+ * Pixelwise kernels of signal.Operations and the arithmetic and statistics
+ * of RealSignal.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OperationsBenchmark {
+
+	@Param({ "128x128x32", "256x256x64" })
+	public String			size;
+
+	private RealSignal		x;
+	private RealSignal		u;
+	private RealSignal		one;
+	private RealSignal		output;
+	private ComplexSignal	A;
+	private ComplexSignal	B;
+	private ComplexSignal	C;
+	private ComplexSignal	U;
+
+	@Setup
+	public void setup() {
+		int[] dim = Volumes.parse(size);
+		x = Volumes.random("x", dim, 0f, 1f, 1);
+		u = Volumes.random("u", dim, 0f, 1f, 2);
+		one = Volumes.random("one", dim, 1f, 1f, 3);
+		output = new RealSignal("output", dim[0], dim[1], dim[2]);
+		A = Volumes.randomComplex("A", dim, 4);
+		B = Volumes.randomComplex("B", dim, 5);
+		C = Volumes.randomComplex("C", dim, 6);
+		U = Volumes.unitComplex("U", dim, 7);
+	}
+
+	@Benchmark
+	public ComplexSignal multiply() {
+		Operations.multiply(A, B, C);
+		return C;
+	}
+
+	@Benchmark
+	public ComplexSignal multiplyConjugate() {
+		Operations.multiplyConjugate(A, B, C);
+		return C;
+	}
+
+	@Benchmark
+	public ComplexSignal divideStabilized() {
+		ComplexSignal D = Operations.divideStabilized(A, B);
+		SignalCollector.free(D);
+		return D;
+	}
+
+	@Benchmark
+	public RealSignal divide() {
+		Operations.divide(x, u, output);
+		return output;
+	}
+
+	@Benchmark
+	public RealSignal multiplyPositive() {
+		Operations.multiplyPositive(x, one);
+		return x;
+	}
+
+	@Benchmark
+	public RealSignal times() {
+		return x.times(one);
+	}
+
+	@Benchmark
+	public RealSignal plusMinus() {
+		return x.plus(u).minus(u);
+	}
+
+	@Benchmark
+	public ComplexSignal complexTimes() {
+		return C.times(U);
+	}
+
+	@Benchmark
+	public double[] stats() {
+		return x.getStatsAsDouble();
+	}
+
+	@Benchmark
+	public float energy() {
+		return x.getEnergy();
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import deconvolutionlab.monitor.Monitors;
+import signal.RealSignal;
+import signal.SignalCollector;
+import signal.padding.Multiple235Padding;
+import signal.padding.Padding;
+
+/**
+ * Slice and line accessors of RealSignal, padding and cropping.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SignalBenchmark {
+
+	@Param({ "128x128x32", "256x256x64" })
+	public String		size;
+
+	private RealSignal	x;
+	private RealSignal	padded;
+	private float[]		buffer;
+	private Padding		padding;
+	private Monitors	monitors;
+
+	@Setup
+	public void setup() {
+		int[] dim = Volumes.parse(size);
+		x = Volumes.image(dim);
+		buffer = new float[dim[0] * dim[1] * dim[2]];
+		monitors = new Monitors();
+		padding = new Padding(new Multiple235Padding(), new Multiple235Padding(), new Multiple235Padding(), 10, 10, 10);
+		padded = padding.pad(monitors, x);
+	}
+
+	@Benchmark
+	public float[] getXYZ() {
+		return x.getXYZ(buffer);
+	}
+
+	@Benchmark
+	public RealSignal setXYZ() {
+		x.setXYZ(buffer);
+		return x;
+	}
+
+	@Benchmark
+	public float linesX() {
+		float sum = 0f;
+		for (int k = 0; k < x.nz; k++)
+			for (int j = 0; j < x.ny; j++)
+				sum += x.getX(j, k)[0];
+		return sum;
+	}
+
+	@Benchmark
+	public float linesY() {
+		float sum = 0f;
+		for (int k = 0; k < x.nz; k++)
+			for (int i = 0; i < x.nx; i++)
+				sum += x.getY(i, k)[0];
+		return sum;
+	}
+
+	@Benchmark
+	public float linesZ() {
+		float sum = 0f;
+		for (int j = 0; j < x.ny; j++)
+			for (int i = 0; i < x.nx; i++)
+				sum += x.getZ(i, j)[0];
+		return sum;
+	}
+
+	@Benchmark
+	public RealSignal pad() {
+		RealSignal large = padding.pad(monitors, x);
+		SignalCollector.free(large);
+		return large;
+	}
+
+	@Benchmark
+	public RealSignal crop() {
+		RealSignal small = padding.crop(monitors, padded);
+		SignalCollector.free(small);
+		return small;
+	}
+}
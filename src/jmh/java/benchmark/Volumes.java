@@ -0,0 +1,135 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package benchmark;
+
+import java.util.Random;
+
+import fft.AbstractFFT;
+import fft.AbstractFFTLibrary;
+import fft.FFT;
+import signal.ComplexSignal;
+import signal.RealSignal;
+import signal.factory.CubeSphericalBeads;
+import signal.factory.Gaussian;
+
+/**
+ * Synthetic volumes and FFT lookup shared by the benchmarks.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+public class Volumes {
+
+	/**
+	 * @param size
+	 *            size as "nx x ny x nz", for example 128x128x32
+	 * @return the size as an array {nx, ny, nz}
+	 */
+	public static int[] parse(String size) {
+		String[] parts = size.toLowerCase().split("x");
+		int nx = Integer.parseInt(parts[0].trim());
+		int ny = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : nx;
+		int nz = parts.length > 2 ? Integer.parseInt(parts[2].trim()) : 1;
+		return new int[] { nx, ny, nz };
+	}
+
+	public static RealSignal image(int[] size) {
+		RealSignal image = new CubeSphericalBeads(3, 0.5, 16, 8).intensity(100).generate(size[0], size[1], size[2]);
+		image.setName("image");
+		return image;
+	}
+
+	public static RealSignal psf(int[] size) {
+		RealSignal psf = new Gaussian(2, 2, 2).generate(size[0], size[1], size[2]);
+		psf.setName("psf");
+		return psf;
+	}
+
+	public static RealSignal random(String name, int[] size, float min, float max, long seed) {
+		Random rand = new Random(seed);
+		RealSignal signal = new RealSignal(name, size[0], size[1], size[2]);
+		for (int k = 0; k < size[2]; k++)
+			for (int i = 0; i < size[0] * size[1]; i++)
+				signal.data[k][i] = min + (max - min) * rand.nextFloat();
+		return signal;
+	}
+
+	public static ComplexSignal randomComplex(String name, int[] size, long seed) {
+		Random rand = new Random(seed);
+		ComplexSignal signal = new ComplexSignal(name, size[0], size[1], size[2]);
+		for (int k = 0; k < size[2]; k++)
+			for (int i = 0; i < 2 * size[0] * size[1]; i++)
+				signal.data[k][i] = rand.nextFloat() - 0.5f;
+		return signal;
+	}
+
+	/**
+	 * Complex signal of modulus 1, its products never underflow.
+	 */
+	public static ComplexSignal unitComplex(String name, int[] size, long seed) {
+		Random rand = new Random(seed);
+		ComplexSignal signal = new ComplexSignal(name, size[0], size[1], size[2]);
+		for (int k = 0; k < size[2]; k++)
+			for (int i = 0; i < size[0] * size[1]; i++) {
+				double phase = 2 * Math.PI * rand.nextDouble();
+				signal.data[k][2 * i] = (float) Math.cos(phase);
+				signal.data[k][2 * i + 1] = (float) Math.sin(phase);
+			}
+		return signal;
+	}
+
+	/**
+	 * Returns a new instance of the FFT of a library with a given
+	 * separability.
+	 * 
+	 * @param library
+	 *            name of the library, Academic, JTransforms or FFTW2
+	 * @param separability
+	 *            XYZ or XY_Z
+	 * @return the FFT, not initialized
+	 */
+	public static AbstractFFT fft(String library, String separability) {
+		for (AbstractFFTLibrary lib : FFT.getInstalledLibraries())
+			if (lib.getLibraryName().equalsIgnoreCase(library))
+				for (AbstractFFT fft : lib.getFFTs())
+					if (fft.getSeparability().name().equalsIgnoreCase(separability)) {
+						try {
+							return fft.getClass().getDeclaredConstructor().newInstance();
+						}
+						catch (Exception ex) {
+							throw new IllegalStateException(ex);
+						}
+					}
+		throw new IllegalStateException(library + " " + separability + " is not installed");
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import bilib.tools.NumFormat;
+import deconvolution.algorithm.Algorithm;
+import deconvolution.algorithm.SpectrumCache;
+import deconvolutionlab.Lab;
+import deconvolutionlab.monitor.Monitors;
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+
+/**
+ * This class deconvolves a series of images with the same PSF.
+ * 
+ * The PSF is prepared and transformed once per padded shape, the spectra
+ * derived from it are shared between the images through a SpectrumCache.
+ * The images are processed concurrently within a memory budget and every
+ * result is saved as soon as it is finished.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class Batch {
+
+	private String			command;
+	private String			source;
+	private long			budget;
+	private SpectrumCache	spectra	= new SpectrumCache();
+
+	/**
+	 * @param command
+	 *            the command line used for every image
+	 * @param source
+	 *            a directory or a list of files separated by ';'
+	 * @param budget
+	 *            memory budget in bytes, 0 for the half of the maximum memory
+	 */
+	public Batch(String command, String source, long budget) {
+		this.command = command;
+		this.source = source;
+		this.budget = budget > 0 ? budget : Runtime.getRuntime().maxMemory() / 2;
+	}
+
+	/**
+	 * @param path
+	 *            the path used to resolve the relative names
+	 * @return the list of the image files of the source
+	 */
+	public ArrayList<File> getFiles(String path) {
+		ArrayList<File> files = new ArrayList<File>();
+		File dir = resolve(path, source);
+		if (dir.isDirectory()) {
+			String list[] = dir.list();
+			Arrays.sort(list);
+			for (String name : list) {
+				File file = new File(dir, name);
+				if (file.isFile() && !name.startsWith("."))
+					files.add(file);
+			}
+			return files;
+		}
+		for (String name : source.split(";")) {
+			File file = resolve(path, name.trim());
+			if (file.isFile())
+				files.add(file);
+		}
+		return files;
+	}
+
+	private File resolve(String path, String name) {
+		File file = new File(path + File.separator + name);
+		return file.exists() ? file : new File(name);
+	}
+
+	/**
+	 * Deconvolves all the images of the source with one PSF.
+	 * 
+	 * @param monitors
+	 *            the monitors of the batch
+	 * @param psf
+	 *            the PSF shared by all the images
+	 * @param path
+	 *            the path of the sources and of the outputs
+	 * @return the list of the saved results
+	 */
+	public ArrayList<File> run(final Monitors monitors, final RealSignal psf, final String path) {
+		final ArrayList<File> outputs = new ArrayList<File>();
+		ArrayList<File> files = getFiles(path);
+		if (files.size() == 0) {
+			monitors.error("Batch: no image in " + source);
+			return outputs;
+		}
+
+		// The concurrency is estimated on the first image
+		RealSignal first = Lab.openFile(monitors, files.get(0).getAbsolutePath());
+		if (first == null)
+			return outputs;
+		final String sn = Command.decodeAlgorithm(command).getShortnames()[0];
+		double ratio = Math.max(1.0, Command.decodeAlgorithm(command).getMemoryFootprintRatio());
+		long sizeImage = (long) first.nx * first.ny * first.nz * 4L;
+		int processors = Parallel.getAvailableProcessors();
+		int concurrency = (int) Math.max(1, Math.min(processors, budget / (long) ((ratio + 2) * sizeImage)));
+		SignalCollector.free(first);
+		monitors.log("Batch: " + files.size() + " images, " + concurrency + " concurrent (budget " + NumFormat.bytes(budget) + ")");
+
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		ArrayList<Future<File>> futures = new ArrayList<Future<File>>();
+		for (final File file : files) {
+			futures.add(executor.submit(new Callable<File>() {
+				@Override
+				public File call() {
+					double chrono = System.nanoTime();
+					RealSignal image = Lab.openFile(monitors, file.getAbsolutePath());
+					if (image == null)
+						return null;
+					Algorithm algo = Command.decodeSilentAlgorithm(command);
+					algo.getController().setSpectra(spectra);
+					RealSignal h = psf.duplicate();
+					RealSignal result = algo.run(image, h);
+					SignalCollector.free(image);
+					SignalCollector.free(h);
+					String name = file.getName();
+					int dot = name.lastIndexOf('.');
+					name = (dot > 0 ? name.substring(0, dot) : name) + "_" + sn;
+					Lab.save(monitors, result, path, name);
+					SignalCollector.free(result);
+					monitors.log("Batch: " + file.getName() + " in " + NumFormat.time(System.nanoTime() - chrono));
+					return new File(path + File.separator + name + ".tif");
+				}
+			}));
+		}
+		executor.shutdown();
+		for (Future<File> future : futures) {
+			try {
+				File output = future.get();
+				if (output != null)
+					outputs.add(output);
+			}
+			catch (InterruptedException ex) {
+				monitors.error("Batch: interrupted");
+			}
+			catch (ExecutionException ex) {
+				monitors.error("Batch: " + ex.getCause());
+			}
+		}
+		monitors.log("Batch: spectra " + spectra.toString());
+		spectra.clear();
+		return outputs;
+	}
+}
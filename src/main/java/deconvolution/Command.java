@@ -42,6 +42,7 @@ import deconvolution.algorithm.Algorithm;
 import deconvolution.algorithm.AlgorithmList;
 import deconvolution.algorithm.Constraint;
 import deconvolution.algorithm.Controller;
+import deconvolution.algorithm.ConvergenceMonitor;
 import deconvolutionlab.Constants;
 import deconvolutionlab.module.AbstractModule;
 import deconvolutionlab.module.CommandModule;
@@ -53,20 +54,24 @@ import deconvolutionlab.monitor.Verbose;
 import deconvolutionlab.output.Output;
 import deconvolutionlab.output.Output.View;
 import fft.FFT;
+import fft.PlanCache;
 import signal.Operations;
+import signal.SignalCollector;
 import signal.apodization.AbstractApodization;
 import signal.apodization.Apodization;
 import signal.apodization.UniformApodization;
 import signal.padding.AbstractPadding;
 import signal.padding.NoPadding;
 import signal.padding.Padding;
+import signal.storage.AbstractStorage;
+import signal.storage.Storage;
 import wavelets.Wavelets;
 
 public class Command {
 
 	public static String keywords[] = { "-image", "-psf", "-reference", "-algorithm", "-path", "-verbose", "-monitor",
 			"-multithreading", "-system", "-stats", "-constraint", "-time", "-residu", "-out", "-pad", "-apo", "-norm",
-			"-fft", "-epsilon" };
+			"-fft", "-epsilon", "-storage", "-pool", "-plan", "-tile", "-batch", "-convergence", "-checkpoint", "-resume", "-sweep" };
 
 	private static AbstractModule modules[];
 	private static CommandModule command;
@@ -121,13 +126,15 @@ public class Command {
 				controller.setSystem(decodeBoolean(token.parameters));
 
 			if (token.keyword.equalsIgnoreCase("-multithreading"))
-				controller.setMultithreading(decodeBoolean(token.parameters));
+				controller.setMultithreading(decodeMultithreading(token.parameters));
 
 			if (token.keyword.equalsIgnoreCase("-stats"))
 				controller.setStats(decodeStats(token));
 
-			if (token.keyword.equalsIgnoreCase("-constraint"))
+			if (token.keyword.equalsIgnoreCase("-constraint")) {
 				controller.setConstraint(decodeConstraint(token));
+				controller.setProjection(decodeProjection(token));
+			}
 
 			if (token.keyword.equalsIgnoreCase("-time"))
 				controller.setTimeLimit(decodeTimeLimit(token));
@@ -135,20 +142,46 @@ public class Command {
 			if (token.keyword.equalsIgnoreCase("-residu"))
 				controller.setResiduMin(decodeResidu(token));
 
-			if (token.keyword.equalsIgnoreCase("-pad"))
-				controller.setPadding(decodePadding(token));
+			if (token.keyword.equalsIgnoreCase("-convergence"))
+				controller.setConvergence(decodeConvergence(token));
+
+			if (token.keyword.equalsIgnoreCase("-checkpoint"))
+				decodeCheckpoint(controller, token);
+
+			if (token.keyword.equalsIgnoreCase("-resume"))
+				controller.setResume(token.parameters.trim());
+
+			if (token.keyword.equalsIgnoreCase("-pad")) {
+				if (token.parameters.trim().toLowerCase().startsWith("auto"))
+					controller.setAutotunePadding(true);
+				else
+					controller.setPadding(decodePadding(token));
+			}
 
 			if (token.keyword.equalsIgnoreCase("-apo"))
 				controller.setApodization(decodeApodization(token));
 
+			if (token.keyword.equalsIgnoreCase("-storage"))
+				controller.setStorage(decodeStorage(token));
+
+			if (token.keyword.equalsIgnoreCase("-pool"))
+				SignalCollector.setPoolBudget(decodePool(token));
+
+			if (token.keyword.equalsIgnoreCase("-plan"))
+				decodePlan(token);
+
 			if (token.keyword.equalsIgnoreCase("-norm"))
 				controller.setNormalizationPSF(decodeNormalization(token));
 
 			if (token.keyword.equalsIgnoreCase("-epsilon"))
 				Operations.epsilon = NumFormat.parseNumber(token.parameters, 1e-6);
 
-			if (token.keyword.equalsIgnoreCase("-fft"))
-				controller.setFFT(FFT.getLibraryByName(token.parameters).getDefaultFFT());
+			if (token.keyword.equalsIgnoreCase("-fft")) {
+				if (token.parameters.trim().equalsIgnoreCase("auto"))
+					controller.setAutotuneFFT(true);
+				else
+					controller.setFFT(FFT.getLibraryByName(token.parameters).getDefaultFFT());
+			}
 
 			if (token.keyword.equalsIgnoreCase("-epsilon"))
 				Operations.epsilon = NumFormat.parseNumber(token.parameters, 1e-6);
@@ -172,6 +205,31 @@ public class Command {
 		return algo;
 	}
 
+	/**
+	 * Decodes the algorithm and its controller for one part of a larger job
+	 * (a block of a tiling, an image of a batch). The outputs, the stats, the
+	 * monitors and the final display are handled by the job. The checkpoint
+	 * and the resume are disabled, the parts would share the same files.
+	 * 
+	 * @param command
+	 *            the command line
+	 * @return the algorithm with its controller
+	 */
+	public static Algorithm decodeSilentAlgorithm(String command) {
+		Controller controller = decodeController(command);
+		Algorithm algo = decodeAlgorithm(command);
+		if (algo.getConstraint() != Constraint.NO)
+			controller.setConstraint(algo.getConstraint());
+		controller.getOuts().clear();
+		controller.setStats(new Stats(Stats.Mode.NO, "stats"));
+		controller.setMonitors(new Monitors());
+		controller.setDisplayFinal(false);
+		controller.setCheckpoint(null, 0);
+		controller.setResume(null);
+		algo.setController(controller);
+		return algo;
+	}
+
 	/**
 	 * This methods first segments the command line, then create all the tokens of
 	 * the command line
@@ -205,6 +263,24 @@ public class Command {
 		return (CommandToken) null;
 	}
 
+	/**
+	 * Extracts all the tokens of a keyword, for example the -image and -psf of
+	 * the views of a multi-view deconvolution.
+	 * 
+	 * @param command
+	 *            the command line
+	 * @param keyword
+	 *            the keyword
+	 * @return the tokens in the order of the command line
+	 */
+	public static ArrayList<CommandToken> extractAll(String command, String keyword) {
+		ArrayList<CommandToken> all = new ArrayList<CommandToken>();
+		for (CommandToken token : parse(command))
+			if (token.keyword.equalsIgnoreCase(keyword))
+				all.add(token);
+		return all;
+	}
+
 	public static double[] parseNumeric(String line) {
 		ArrayList<String> num = new ArrayList<String>();
 		Pattern p = Pattern.compile("[-+]?[0-9]+[.]?[0-9]*([eE][-+]?[0-9]+)?");
@@ -250,19 +326,24 @@ public class Command {
 	public static Algorithm decodeAlgorithm(CommandToken token) {
 		String option = token.option;
 		Algorithm algo = AlgorithmList.createAlgorithm(option);
-		double params[] = parseNumeric(token.parameters);
+		String parameters = token.parameters;
+		String wavelet = null;
+		if (algo.isWaveletsBased()) {
+			// The digits of the name (Spline3) are not numeric parameters
+			wavelet = Wavelets.findWaveletsName(parameters);
+			if (wavelet != null) {
+				int pos = parameters.toLowerCase().indexOf(wavelet.toLowerCase());
+				parameters = parameters.substring(0, pos) + " " + parameters.substring(pos + wavelet.length());
+			}
+		}
+		double params[] = parseNumeric(parameters);
 
 		if (params != null) {
 			algo.setParameters(params);
 		}
 
-		if (algo.isWaveletsBased()) {
-			for (String wavelet : Wavelets.getWaveletsAsArray()) {
-				int pos = token.parameters.toLowerCase().indexOf(wavelet.toLowerCase());
-				if (pos >= 0)
-					algo.setWavelets(wavelet);
-			}
-		}
+		if (wavelet != null)
+			algo.setWavelets(wavelet);
 		return algo;
 	}
 
@@ -359,6 +440,17 @@ public class Command {
 
 	}
 
+	/**
+	 * Decodes the optional number of iterations between two projections,
+	 * -constraint nonnegativity 10.
+	 */
+	public static int decodeProjection(CommandToken token) {
+		double[] values = parseNumeric(token.parameters);
+		if (values.length < 1)
+			return 1;
+		return Math.max(1, (int) values[values.length - 1]);
+	}
+
 	public static Constraint decodeConstraint(CommandToken token) {
 		String p = token.parameters.toLowerCase();
 		if (p.startsWith("non"))
@@ -379,6 +471,52 @@ public class Command {
 			return NumFormat.parseNumber(token.parameters, 1);
 	}
 
+	/**
+	 * Decodes the criteria of convergence, a list of named criteria followed
+	 * by their values: every N, stagnation window fraction, discrepancy sigma
+	 * [tau], plateau window dB.
+	 * 
+	 * @param token
+	 *            the command token
+	 * @return the monitor of convergence
+	 */
+	public static ConvergenceMonitor decodeConvergence(CommandToken token) {
+		ConvergenceMonitor convergence = new ConvergenceMonitor();
+		String parts[] = token.parameters.trim().toLowerCase().split("\\s+");
+		for (int i = 0; i < parts.length; i++) {
+			if (parts[i].equals("every") && i + 1 < parts.length)
+				convergence.setEvery((int) NumFormat.parseNumber(parts[i + 1], 1));
+			if (parts[i].equals("stagnation") && i + 2 < parts.length)
+				convergence.setStagnation((int) NumFormat.parseNumber(parts[i + 1], 0), NumFormat.parseNumber(parts[i + 2], 0));
+			if (parts[i].equals("discrepancy") && i + 1 < parts.length) {
+				double tau = i + 2 < parts.length ? NumFormat.parseNumber(parts[i + 2], 1) : 1;
+				convergence.setDiscrepancy(NumFormat.parseNumber(parts[i + 1], -1), tau);
+			}
+			if (parts[i].equals("plateau") && i + 2 < parts.length)
+				convergence.setPlateau((int) NumFormat.parseNumber(parts[i + 1], 0), NumFormat.parseNumber(parts[i + 2], 0));
+		}
+		return convergence;
+	}
+
+	/**
+	 * Decodes the checkpoints, -checkpoint filename [every], by default a
+	 * checkpoint every 10 iterations.
+	 * 
+	 * @param controller
+	 *            the controller
+	 * @param token
+	 *            the command token
+	 */
+	public static void decodeCheckpoint(Controller controller, CommandToken token) {
+		String parts[] = token.parameters.trim().split("\\s+");
+		if (parts[0].equalsIgnoreCase("no")) {
+			controller.setCheckpoint(null, 0);
+			return;
+		}
+		int every = parts.length >= 2 ? (int) NumFormat.parseNumber(parts[1], 10) : 10;
+		controller.setCheckpoint(parts[0], every);
+	}
+
 	public static double decodeTimeLimit(CommandToken token) {
 		if (token.parameters.toLowerCase().endsWith("no"))
 			return -1;
@@ -417,6 +555,107 @@ public class Command {
 		return new Apodization(apoXY, apoXY, apoZ);
 	}
 
+	/**
+	 * Decodes the budget of the pool of signals, given in megabytes.
+	 * 
+	 * @param token
+	 *            the command token
+	 * @return the budget in bytes, 0 to disable the pool
+	 */
+	public static long decodePool(CommandToken token) {
+		if (token.parameters.toLowerCase().endsWith("no"))
+			return 0;
+		double mb = NumFormat.parseNumber(token.parameters, 0);
+		return (long) (mb * 1024 * 1024);
+	}
+
+	public static void decodePlan(CommandToken token) {
+		String[] parts = token.parameters.trim().split(" ");
+		PlanCache.setMode(PlanCache.Mode.getByName(parts[0]));
+		if (parts.length >= 2)
+			PlanCache.setCapacity((int) NumFormat.parseNumber(parts[1], PlanCache.getCapacity()));
+	}
+
+	/**
+	 * Decodes the tiling of the command line, -tile tx ty tz [budget], the
+	 * budget of memory is given in megabytes.
+	 * 
+	 * @param command
+	 *            the command line
+	 * @return the tiling, or null if the keyword -tile is not present
+	 */
+	public static Tiling decodeTiling(String command) {
+		CommandToken token = extract(command, "-tile");
+		if (token == null)
+			return null;
+		double[] values = parseNumeric(token.parameters);
+		if (values.length < 3)
+			return null;
+		long budget = values.length >= 4 ? (long) (values[3] * 1024 * 1024) : 0;
+		return new Tiling((int) values[0], (int) values[1], (int) values[2], budget);
+	}
+
+	/**
+	 * Decodes the batch of the command line, -batch source [budget MB], the
+	 * source is a directory or a list of files separated by ';'.
+	 * 
+	 * @param command
+	 *            the command line
+	 * @return the batch, or null if the keyword -batch is not present
+	 */
+	public static Batch decodeBatch(String command) {
+		CommandToken token = extract(command, "-batch");
+		if (token == null)
+			return null;
+		String parts[] = token.parameters.split(" budget ");
+		long budget = parts.length >= 2 ? (long) (NumFormat.parseNumber(parts[1], 0) * 1024 * 1024) : 0;
+		return new Batch(command, parts[0].trim(), budget);
+	}
+
+	/**
+	 * Decodes the sweep of the command line, -sweep parameter from to count
+	 * [lin|log] [snr|psnr|rmse|gcv|lcurve] [budget MB]. The parameter is
+	 * lambda, gamma or its position in the list of the parameters of the
+	 * algorithm, starting from 1.
+	 * 
+	 * @param command
+	 *            the command line
+	 * @return the sweep, or null if the keyword -sweep is not present
+	 */
+	public static Sweep decodeSweep(String command) {
+		CommandToken token = extract(command, "-sweep");
+		if (token == null)
+			return null;
+		String[] parts = token.parameters.trim().split("\\s+");
+		if (parts.length < 4)
+			return null;
+		double from = NumFormat.parseNumber(parts[1], 0);
+		double to = NumFormat.parseNumber(parts[2], 0);
+		int count = (int) Math.round(NumFormat.parseNumber(parts[3], 1));
+		boolean log = from > 0 && to > 0;
+		Sweep.Criterion criterion = null;
+		long budget = 0;
+		for (int i = 4; i < parts.length; i++) {
+			String p = parts[i].toLowerCase();
+			if (p.equals("lin"))
+				log = false;
+			else if (p.equals("log"))
+				log = true;
+			else if (p.equals("budget") && i + 1 < parts.length)
+				budget = (long) (NumFormat.parseNumber(parts[++i], 0) * 1024 * 1024);
+			else if (Sweep.Criterion.getByName(p) != null)
+				criterion = Sweep.Criterion.getByName(p);
+		}
+		return new Sweep(command, parts[0], from, to, count, log, criterion, budget);
+	}
+
+	public static AbstractStorage decodeStorage(CommandToken token) {
+		String[] parts = token.parameters.trim().split(" ", 2);
+		if (parts.length >= 2)
+			return Storage.getByShortname(parts[0].trim(), parts[1].trim());
+		return Storage.getByShortname(parts[0].trim(), null);
+	}
+
 	public static String getPath() {
 		buildCommand();
 		ArrayList<CommandToken> tokens = parse(command.getCommand());
@@ -457,6 +696,13 @@ public class Command {
 		return monitors;
 	}
 
+	public static int decodeMultithreading(String cmd) {
+		double[] threads = NumFormat.parseNumbers(cmd);
+		if (threads.length > 0)
+			return (int) Math.max(1, threads[0]);
+		return decodeBoolean(cmd) ? 0 : 1;
+	}
+
 	public static boolean decodeBoolean(String cmd) {
 		String p = cmd.toLowerCase();
 		if (p.startsWith("no"))
@@ -32,6 +32,8 @@
 package deconvolution;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -39,6 +41,7 @@ import bilib.tools.NumFormat;
 import deconvolution.algorithm.Algorithm;
 import deconvolution.algorithm.Constraint;
 import deconvolution.algorithm.Controller;
+import deconvolution.algorithm.RichardsonLucyMultiView;
 import deconvolutionlab.Lab;
 import deconvolutionlab.Platform;
 import deconvolutionlab.monitor.AbstractMonitor;
@@ -47,6 +50,7 @@ import deconvolutionlab.monitor.TableMonitor;
 import deconvolutionlab.output.Output;
 import signal.RealSignal;
 import signal.SignalCollector;
+import signal.storage.AbstractStorage;
 
 /**
  * This class is the main class to run deconvolution with or without user
@@ -168,18 +172,43 @@ public class Deconvolution implements Runnable {
 
 		report.add("Path", controller.toStringPath());
 
-		if (image == null)
+		Batch batch = Command.decodeBatch(command);
+		if (batch != null) {
+			if (psf == null)
+				psf = openPSF();
+			if (psf == null) {
+				monitors.error("PSF: not valid");
+				report.add("PSF", "Not valid");
+				if (finish == Finish.KILL)
+					System.exit(-102);
+				return;
+			}
+			report.add("Batch", batch.run(monitors, psf, controller.getPath()).size() + " images");
+			report.add("End", NumFormat.time(System.nanoTime() - chrono));
+			if (finish == Finish.KILL)
+				System.exit(0);
+			if (finish == Finish.DIE)
+				die();
+			return;
+		}
+
+		// A raw image deconvolved by blocks is not opened, the blocks are read from the file
+		Tiling tiling = Command.decodeTiling(command);
+		File raw = (tiling == null || image != null ? null : getRawImage());
+
+		if (image == null && raw == null)
 			image = openImage();
 
-		if (image == null) {
+		if (image == null && raw == null) {
 			monitors.error("Image: Not valid ");
 			report.add("Image", "Not valid");
 			if (finish == Finish.KILL)
 				System.exit(-101);
 			return;
 		}
-		report.add("Image", image.dimAsString());
-		monitors.log("Image: " + image.dimAsString());
+		String dim = (raw == null ? image.dimAsString() : raw.getName());
+		report.add("Image", dim);
+		monitors.log("Image: " + dim);
 
 		if (psf == null)
 			psf = openPSF();
@@ -229,8 +258,70 @@ public class Deconvolution implements Runnable {
 			}
 		}
 		algo.setController(controller);
-		deconvolvedImage = algo.run(image, psf, reference);
+		Sweep sweep = Command.decodeSweep(command);
+		// The other views are only opened for a multi-view deconvolution which is neither tiled nor swept
+		ArrayList<RealSignal> views = new ArrayList<RealSignal>();
+		ArrayList<RealSignal> viewPSFs = new ArrayList<RealSignal>();
+		if (Command.extractAll(command, "-image").size() > 1) {
+			if (!(algo instanceof RichardsonLucyMultiView))
+				monitors.error("Only the first view is used by " + algo.getName());
+			else if (tiling == null && sweep == null) {
+				views = openViews("-image");
+				viewPSFs = openViews("-psf");
+			}
+		}
+		if (algo instanceof RichardsonLucyMultiView) {
+			ArrayList<RealSignal> images = new ArrayList<RealSignal>(views);
+			ArrayList<RealSignal> psfs = new ArrayList<RealSignal>(viewPSFs);
+			images.add(0, image);
+			psfs.add(0, psf);
+			((RichardsonLucyMultiView) algo).setViews(images, psfs);
+			report.add("Views", "" + images.size());
+		}
+		if (sweep != null && raw != null) {
+			monitors.error("Sweep: not available on a raw image read by blocks");
+		}
+		else if (sweep != null) {
+			double best[] = sweep.run(monitors, image, psf, reference, controller.getPath());
+			if (best != null) {
+				algo.setParameters(best);
+				report.add("Sweep", algo.getParametersAsString());
+			}
+		}
+		if (tiling == null && !(algo instanceof RichardsonLucyMultiView)) {
+			tiling = Tiling.getOutOfCore(algo, image, psf, controller.getStorage());
+			if (tiling != null)
+				monitors.log("Tiling: the working set does not fit in the memory, it is streamed through the storage");
+		}
+		if (tiling == null) {
+			deconvolvedImage = algo.run(image, psf, reference);
+		}
+		else if (raw != null) {
+			File file = tiling.run(monitors, command, raw, psf, controller.getPath(), name);
+			report.add("Tiling", file == null ? "failed" : file.getAbsolutePath());
+			deconvolvedImage = null;
+		}
+		else {
+			// The blocks are read from the storage, the image leaves the heap
+			AbstractStorage storage = controller.getStorage();
+			if (storage != null && storage.isOffHeap()) {
+				try {
+					image.offload(storage);
+				}
+				catch (IOException ex) {
+					monitors.error("Storage: " + ex.getMessage());
+				}
+			}
+			File file = tiling.run(monitors, command, image, psf, controller.getPath(), name);
+			image.reload();
+			report.add("Tiling", file == null ? "failed" : file.getAbsolutePath());
+			deconvolvedImage = null;
+		}
 
+		for (RealSignal view : views)
+			SignalCollector.free(view);
+		for (RealSignal view : viewPSFs)
+			SignalCollector.free(view);
 		report.add("End", NumFormat.time(System.nanoTime() - chrono));
 
 		if (finish == Finish.KILL) {
@@ -290,6 +381,7 @@ public class Deconvolution implements Runnable {
 			features.add("Padding", controller.getPadding().toString());
 			features.add("Apodization", controller.getApodization().toString());
 			features.add("FFT", controller.getFFT() == null ? "null" : controller.getFFT().getName());
+			features.add("Storage", controller.getStorage() == null ? "null" : controller.getStorage().toString());
 			CommandToken ref = Command.extract(command, "-psf");
 			features.add("Reference", ref == null ? "keyword -reference not found" : ref.parameters + " norm:" + normf);
 		}
@@ -347,26 +439,65 @@ public class Deconvolution implements Runnable {
 		CommandToken token = Command.extract(command, "-image");
 		if (token == null)
 			return null;
-		if (token.parameters.startsWith(">>>"))
+		return open(token, "image");
+	}
+
+	/**
+	 * Returns the raw file of the image, -image file name_NXxNYxNZ_float32.raw,
+	 * which can be deconvolved by blocks without being opened.
+	 * 
+	 * @return the raw file, or null if the image is not a raw file
+	 */
+	public File getRawImage() {
+		CommandToken token = Command.extract(command, "-image");
+		if (token == null || token.parameters.startsWith(">>>"))
 			return null;
 		String arg = token.option.trim();
+		if (!arg.equalsIgnoreCase("file"))
+			return null;
 		String cmd = token.parameters.substring(arg.length(), token.parameters.length()).trim();
-		RealSignal image = createRealSignal(controller.getMonitors(), arg, cmd, controller.getPath());
-		controller.getMonitors().log("Open image " + arg + " " + cmd);
-		return image;
+		File file = new File(controller.getPath() + File.separator + cmd);
+		if (!file.isFile())
+			file = new File(cmd);
+		if (!file.isFile() || Tiling.getRawSize(file) == null)
+			return null;
+		return file;
 	}
 
 	public RealSignal openPSF() {
 		CommandToken token = Command.extract(command, "-psf");
 		if (token == null)
 			return null;
+		return open(token, "PSF");
+	}
+
+	/**
+	 * Opens the signals of the views after the first one, given by the
+	 * repeated keywords -image or -psf.
+	 * 
+	 * @param keyword
+	 *            -image or -psf
+	 * @return the list of signals, from the second view
+	 */
+	public ArrayList<RealSignal> openViews(String keyword) {
+		ArrayList<RealSignal> signals = new ArrayList<RealSignal>();
+		ArrayList<CommandToken> tokens = Command.extractAll(command, keyword);
+		for (int i = 1; i < tokens.size(); i++) {
+			RealSignal signal = open(tokens.get(i), keyword.substring(1) + " " + (i + 1));
+			if (signal != null)
+				signals.add(signal);
+		}
+		return signals;
+	}
+
+	private RealSignal open(CommandToken token, String what) {
 		if (token.parameters.startsWith(">>>"))
 			return null;
 		String arg = token.option.trim();
 		String cmd = token.parameters.substring(arg.length(), token.parameters.length()).trim();
-		RealSignal psf = createRealSignal(controller.getMonitors(), arg, cmd, controller.getPath());
-		controller.getMonitors().log("Open PSF " + arg + " " + cmd);
-		return psf;
+		RealSignal signal = createRealSignal(controller.getMonitors(), arg, cmd, controller.getPath());
+		controller.getMonitors().log("Open " + what + " " + arg + " " + cmd);
+		return signal;
 	}
 
 	public static RealSignal createRealSignal(Monitors monitors, String arg, String cmd, String path) {
@@ -79,6 +79,8 @@ public class Stats {
 		columns.add(new CustomizedColumn("PSNR", Double.class, 100, false));
 		columns.add(new CustomizedColumn("SNR", Double.class, 100, false));
 		columns.add(new CustomizedColumn("Residu", Double.class, 100, false));
+		// Appended last, the columns before keep their position in the CSV files
+		columns.add(new CustomizedColumn("Output", String.class, 100, false));
 		table = new CustomizedTable(columns, true);
 	}
 	
@@ -125,16 +127,32 @@ public class Stats {
 	}
 
 	public void add(RealSignal x, String iterations, String time, double psnr, double snr, double residu) {
-		table.append(compute(x, "" + iterations, time, psnr, snr, residu));	
+		add(x, iterations, time, "", psnr, snr, residu);	
+	}
+
+	/**
+	 * Adds the stats of an iteration, output is the time spent by the
+	 * iterative outputs in background.
+	 */
+	public void add(RealSignal x, String iterations, String time, String output, double psnr, double snr, double residu) {
+		table.append(compute(x, "" + iterations, time, output, psnr, snr, residu));	
 	}
 
 	public void addOutput(RealSignal x, String algo, String time, double psnr, double snr, double residu) {
-		table.append(compute(x, "Out: " + algo, time, psnr, snr, residu));	
+		addOutput(x, algo, time, "", psnr, snr, residu);	
+	}
+
+	public void addOutput(RealSignal x, String algo, String time, String output, double psnr, double snr, double residu) {
+		table.append(compute(x, "Out: " + algo, time, output, psnr, snr, residu));	
 	}
 	
 	public Object[] compute(RealSignal x, String iterations, String time, double psnr, double snr, double residu) {
+		return compute(x, iterations, time, "", psnr, snr, residu);
+	}
+
+	public Object[] compute(RealSignal x, String iterations, String time, String output, double psnr, double snr, double residu) {
 		double params[] = null;
-		Object[] row = new Object[12];
+		Object[] row = new Object[13];
 		if (x != null) 
 			params = x.getStatsAsDouble();
 		if (params == null)
@@ -151,6 +169,7 @@ public class Stats {
 		row[9] = new Double(psnr);
 		row[10] = new Double(snr);
 		row[11] = residu;
+		row[12] = output;
 		return row;
 	}
 
@@ -0,0 +1,527 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import bilib.table.CustomizedColumn;
+import bilib.table.CustomizedTable;
+import bilib.tools.NumFormat;
+import deconvolution.algorithm.Algorithm;
+import deconvolution.algorithm.Controller;
+import deconvolution.algorithm.RegularizedInverseFilter;
+import deconvolution.algorithm.SpectrumCache;
+import deconvolution.algorithm.TikhonovRegularizedInverseFilter;
+import deconvolutionlab.monitor.Monitors;
+import fft.AbstractFFT;
+import fft.PlanCache;
+import signal.Assessment;
+import signal.ComplexSignal;
+import signal.Operations;
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+import signal.factory.complex.ComplexSignalFactory;
+import signal.padding.Padding;
+import signal.storage.Storage;
+
+/**
+ * This class sweeps one parameter of an algorithm, typically the
+ * regularization factor, and ranks the candidates.
+ * 
+ * The candidates are ranked by comparison to a reference (SNR, PSNR, RMSE) or
+ * by a reference-free criterion: the generalized cross-validation (GCV) for
+ * the direct filters and the corner of the L-curve for all the algorithms.
+ * 
+ * For the direct filters (RIF, TRIF), the spectra Y and H are computed once
+ * and all the candidates are evaluated in the Fourier domain from their
+ * transfer function, without FFT of the input. The iterative algorithms run
+ * concurrently within a memory budget and share the spectra derived from the
+ * PSF through a SpectrumCache.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class Sweep {
+
+	public enum Criterion {
+		SNR, PSNR, RMSE, GCV, LCURVE;
+
+		public static Criterion getByName(String name) {
+			for (Criterion criterion : values())
+				if (criterion.name().equalsIgnoreCase(name))
+					return criterion;
+			return null;
+		}
+
+		public boolean isReference() {
+			return this == SNR || this == PSNR || this == RMSE;
+		}
+	};
+
+	private String			command;
+	private String			parameter;
+	private double[]		values;
+	private Criterion		criterion;
+	private long			budget;
+	private SpectrumCache	spectra	= new SpectrumCache(true);
+	private CustomizedTable	table;
+
+	/**
+	 * @param command
+	 *            the command line of the algorithm
+	 * @param parameter
+	 *            "lambda", "gamma" or the position of the parameter in the
+	 *            list of the parameters of the algorithm, starting from 1
+	 * @param from
+	 *            first value
+	 * @param to
+	 *            last value
+	 * @param count
+	 *            number of candidates
+	 * @param log
+	 *            true for a logarithmic spacing of the values
+	 * @param criterion
+	 *            the criterion, null to select it from the algorithm and the
+	 *            reference
+	 * @param budget
+	 *            memory budget in bytes, 0 for the half of the maximum memory
+	 */
+	public Sweep(String command, String parameter, double from, double to, int count, boolean log, Criterion criterion, long budget) {
+		this.command = command;
+		this.parameter = parameter;
+		this.criterion = criterion;
+		this.budget = budget > 0 ? budget : Runtime.getRuntime().maxMemory() / 2;
+		count = Math.max(1, count);
+		values = new double[count];
+		boolean geometric = log && from > 0 && to > 0;
+		for (int i = 0; i < count; i++) {
+			double t = count == 1 ? 0 : (double) i / (count - 1);
+			values[i] = geometric ? from * Math.pow(to / from, t) : from + (to - from) * t;
+		}
+		ArrayList<CustomizedColumn> columns = new ArrayList<CustomizedColumn>();
+		columns.add(new CustomizedColumn("Rank", Integer.class, 50, false));
+		columns.add(new CustomizedColumn("Parameters", String.class, 200, false));
+		columns.add(new CustomizedColumn("Score", Double.class, 100, false));
+		columns.add(new CustomizedColumn("Residu", Double.class, 100, false));
+		columns.add(new CustomizedColumn("Norm", Double.class, 100, false));
+		columns.add(new CustomizedColumn("GCV", Double.class, 100, false));
+		columns.add(new CustomizedColumn("Curvature", Double.class, 100, false));
+		columns.add(new CustomizedColumn("SNR", Double.class, 100, false));
+		columns.add(new CustomizedColumn("PSNR", Double.class, 100, false));
+		columns.add(new CustomizedColumn("RMSE", Double.class, 100, false));
+		table = new CustomizedTable(columns, true);
+	}
+
+	public double[] getValues() {
+		return values;
+	}
+
+	public CustomizedTable getTable() {
+		return table;
+	}
+
+	/**
+	 * @return true if the algorithm is a direct filter evaluated in the
+	 *         Fourier domain by the sweep
+	 */
+	public static boolean isDirect(Algorithm algo) {
+		return algo instanceof RegularizedInverseFilter || algo instanceof TikhonovRegularizedInverseFilter;
+	}
+
+	/**
+	 * Finds the position of a parameter in the list of parameters of the
+	 * algorithm. The names "lambda" and "gamma" are found by changing every
+	 * parameter in turn and by watching the regularization or the step factor.
+	 * 
+	 * @return the position from 0, or -1 if the parameter is not found
+	 */
+	public static int getIndex(String command, String parameter) {
+		Algorithm algo = Command.decodeAlgorithm(command);
+		double params[] = algo.getParameters();
+		boolean lambda = parameter.equalsIgnoreCase("lambda") || parameter.equalsIgnoreCase("reg");
+		boolean gamma = parameter.equalsIgnoreCase("gamma") || parameter.equalsIgnoreCase("step");
+		if (!lambda && !gamma) {
+			int index = (int) Math.round(NumFormat.parseNumber(parameter, 0)) - 1;
+			return index >= 0 && index < params.length ? index : -1;
+		}
+		double reference = lambda ? algo.getRegularizationFactor() : algo.getStepFactor();
+		for (int i = 0; i < params.length; i++) {
+			double p[] = params.clone();
+			p[i] = params[i] * 2 + 1;
+			Algorithm probe = Command.decodeAlgorithm(command).setParameters(p);
+			double factor = lambda ? probe.getRegularizationFactor() : probe.getStepFactor();
+			if (factor != reference)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Evaluates all the candidates and ranks them.
+	 * 
+	 * @param monitors
+	 *            the monitors of the sweep
+	 * @param image
+	 *            the input image
+	 * @param psf
+	 *            the PSF
+	 * @param reference
+	 *            the reference image, or null
+	 * @param path
+	 *            the path where the table of the candidates is saved
+	 * @return the parameters of the best candidate, or null if the sweep has
+	 *         failed
+	 */
+	public double[] run(Monitors monitors, RealSignal image, RealSignal psf, RealSignal reference, String path) {
+		if (Command.extractAll(command, "-image").size() > 1) {
+			monitors.error("Sweep: not available with several views");
+			return null;
+		}
+		Algorithm algo = Command.decodeAlgorithm(command);
+		int index = getIndex(command, parameter);
+		if (index < 0) {
+			monitors.error("Sweep: the parameter " + parameter + " is not a parameter of " + algo.getShortnames()[0]);
+			return null;
+		}
+		boolean direct = isDirect(algo);
+		Criterion by = criterion;
+		if (by == null)
+			by = reference != null ? Criterion.SNR : (direct ? Criterion.GCV : Criterion.LCURVE);
+		if (by.isReference() && reference == null) {
+			monitors.error("Sweep: " + by.name().toLowerCase() + " needs a reference, the L-curve is used");
+			by = Criterion.LCURVE;
+		}
+		if (by == Criterion.GCV && !direct) {
+			monitors.error("Sweep: GCV is only available for the direct filters, the L-curve is used");
+			by = Criterion.LCURVE;
+		}
+
+		ArrayList<Candidate> candidates = new ArrayList<Candidate>();
+		double base[] = algo.getParameters();
+		for (double value : values) {
+			double params[] = base.clone();
+			params[index] = value;
+			candidates.add(new Candidate(params));
+		}
+		monitors.log("Sweep: " + candidates.size() + " candidates of " + algo.getShortnames()[0] + " ranked by " + by.name().toLowerCase());
+
+		double chrono = System.nanoTime();
+		if (direct)
+			evaluateDirect(monitors, image, psf, reference, candidates);
+		else
+			evaluateIterative(monitors, image, psf, reference, candidates, by == Criterion.LCURVE);
+		if (by == Criterion.LCURVE)
+			curvature(candidates);
+
+		for (Candidate candidate : candidates)
+			candidate.score = candidate.getScore(by);
+		ArrayList<Candidate> ranking = new ArrayList<Candidate>(candidates);
+		Collections.sort(ranking, new Comparator<Candidate>() {
+			@Override
+			public int compare(Candidate a, Candidate b) {
+				return Double.compare(a.score, b.score);
+			}
+		});
+		for (int rank = 0; rank < ranking.size(); rank++) {
+			Candidate candidate = ranking.get(rank);
+			table.append(candidate.getRow(rank + 1));
+			monitors.log("Sweep #" + (rank + 1) + " (" + candidate + ") " + by.name().toLowerCase() + ": " + NumFormat.nice(candidate.getValue(by)));
+		}
+		String filename = path + File.separator + "sweep.csv";
+		table.saveCSV(filename);
+		monitors.log("Sweep: " + NumFormat.time(System.nanoTime() - chrono) + ", table saved in " + filename);
+		spectra.clear();
+		return ranking.get(0).params;
+	}
+
+	/**
+	 * Evaluates the direct filters from one set of spectra. The transfer
+	 * function of every candidate is computed by the filter of the algorithm
+	 * applied to a unit spectrum.
+	 */
+	private void evaluateDirect(Monitors monitors, RealSignal image, RealSignal psf, RealSignal reference, ArrayList<Candidate> candidates) {
+		Algorithm algo = Command.decodeAlgorithm(command);
+		Controller controller = Command.decodeController(command);
+		Padding pad = controller.getPadding();
+		RealSignal y = pad.pad(monitors, image);
+		controller.getApodization().apodize(monitors, y);
+		RealSignal h = psf.changeSizeAs(y);
+		h.normalize(controller.getNormalizationPSF());
+		h.circular();
+		AbstractFFT fft = PlanCache.acquire(monitors, controller.getFFT(), y.nx, y.ny, y.nz);
+		ComplexSignal Y = fft.transform(y);
+		ComplexSignal H = fft.transform(h);
+		SignalCollector.free(y);
+		SignalCollector.free(h);
+		ComplexSignal one = ComplexSignalFactory.identity(Y.nx, Y.ny, Y.nz);
+		double size = (double) Y.nx * Y.ny * Y.nz;
+		for (Candidate candidate : candidates) {
+			algo.setParameters(candidate.params);
+			ComplexSignal T = algo instanceof RegularizedInverseFilter ? 
+					((RegularizedInverseFilter) algo).filter(one, H) : 
+					((TikhonovRegularizedInverseFilter) algo).filter(one, H);
+			double e[] = energies(Y, H, T, true);
+			candidate.residu = Math.sqrt(e[0] / size);
+			candidate.norm = Math.sqrt(e[1] / size);
+			candidate.gcv = e[0] / ((size - e[2]) * (size - e[2]));
+			if (reference != null) {
+				ComplexSignal X = Operations.multiply(Y, T);
+				RealSignal x = fft.inverse(X);
+				RealSignal result = pad.crop(monitors, x);
+				candidate.assess(result, reference);
+				SignalCollector.free(X);
+				SignalCollector.free(x);
+				SignalCollector.free(result);
+			}
+			SignalCollector.free(T);
+		}
+		PlanCache.release(fft);
+		SignalCollector.free(one);
+		SignalCollector.free(Y);
+		SignalCollector.free(H);
+	}
+
+	/**
+	 * Runs the iterative candidates concurrently. They share the padded image,
+	 * its spectrum and the spectra of the PSF through the cache of spectra of
+	 * the sweep. The residu and the norm of the L-curve are computed at the
+	 * size of the image, only for the L-curve.
+	 */
+	private void evaluateIterative(final Monitors monitors, final RealSignal image, final RealSignal psf, final RealSignal reference, ArrayList<Candidate> candidates, final boolean lcurve) {
+		Algorithm algo = Command.decodeAlgorithm(command);
+		final Controller controller = Command.decodeController(command);
+		final int nx = image.nx;
+		final int ny = image.ny;
+		final int nz = image.nz;
+		ComplexSignal Y = null;
+		ComplexSignal H = null;
+		if (lcurve) {
+			RealSignal h = psf.changeSizeAs(image);
+			h.normalize(controller.getNormalizationPSF());
+			h.circular();
+			AbstractFFT fft = PlanCache.acquire(monitors, controller.getFFT(), nx, ny, nz);
+			Y = fft.transform(image);
+			H = fft.transform(h);
+			PlanCache.release(fft);
+			SignalCollector.free(h);
+		}
+		final ComplexSignal Ys = Y;
+		final ComplexSignal Hs = H;
+
+		// A candidate holds its working signals, its result and the spectrum of
+		// its result; the padded image and the spectra are shared
+		double ratio = Math.max(1.0, algo.getMemoryFootprintRatio());
+		long sizeImage = (long) nx * ny * nz * 4L;
+		long shared = (lcurve ? 4L : 0L) * sizeImage + 4L * sizeImage;
+		int processors = Parallel.getAvailableProcessors();
+		int concurrency = (int) Math.max(1, Math.min(processors, (budget - shared) / (long) ((ratio + 3) * sizeImage)));
+		monitors.log("Sweep: " + concurrency + " concurrent (budget " + NumFormat.bytes(budget) + ")");
+
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		ArrayList<Future<Candidate>> futures = new ArrayList<Future<Candidate>>();
+		for (final Candidate candidate : candidates) {
+			futures.add(executor.submit(new Callable<Candidate>() {
+				@Override
+				public Candidate call() throws Exception {
+					double chrono = System.nanoTime();
+					Algorithm algo = Command.decodeSilentAlgorithm(command);
+					algo.setParameters(candidate.params);
+					algo.getController().setSpectra(spectra);
+					// The image and the PSF are read by all the candidates, they are not offloaded
+					algo.getController().setStorage(Storage.getDefault());
+					RealSignal result = algo.run(image, psf);
+					if (lcurve) {
+						AbstractFFT fft = PlanCache.acquire(monitors, controller.getFFT(), nx, ny, nz);
+						ComplexSignal X = fft.transform(result);
+						PlanCache.release(fft);
+						double e[] = energies(Ys, Hs, X, false);
+						double size = (double) nx * ny * nz;
+						candidate.residu = Math.sqrt(e[0] / size);
+						candidate.norm = Math.sqrt(e[1] / size);
+						SignalCollector.free(X);
+					}
+					if (reference != null)
+						candidate.assess(result, reference);
+					SignalCollector.free(result);
+					monitors.log("Sweep: (" + candidate + ") in " + NumFormat.time(System.nanoTime() - chrono));
+					return candidate;
+				}
+			}));
+		}
+		executor.shutdown();
+		for (Future<Candidate> future : futures) {
+			try {
+				future.get();
+			}
+			catch (InterruptedException ex) {
+				monitors.error("Sweep: interrupted");
+			}
+			catch (ExecutionException ex) {
+				monitors.error("Sweep: " + ex.getCause());
+			}
+		}
+		if (lcurve) {
+			SignalCollector.free(Y);
+			SignalCollector.free(H);
+		}
+	}
+
+	/**
+	 * Computes, in one pass over the spectra, the energy of the residu Y - HX,
+	 * the energy of X and the trace of the influence HT, with X = TY if T is a
+	 * transfer function or X = T otherwise. The energies are the ones of the
+	 * spectra, N times the ones of the signals.
+	 */
+	private static double[] energies(final ComplexSignal Y, final ComplexSignal H, final ComplexSignal T, final boolean transfer) {
+		return Parallel.reduce(Y.nx, Y.ny, Y.nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] y = Y.data[k];
+				float[] h = H.data[k];
+				float[] t = T.data[k];
+				double residu = 0.0;
+				double norm = 0.0;
+				double trace = 0.0;
+				for (int i = 2 * from; i < 2 * to; i += 2) {
+					double xa = t[i];
+					double xb = t[i + 1];
+					if (transfer) {
+						trace += h[i] * xa - h[i + 1] * xb;
+						xa = t[i] * y[i] - t[i + 1] * y[i + 1];
+						xb = t[i] * y[i + 1] + t[i + 1] * y[i];
+					}
+					double ra = y[i] - (h[i] * xa - h[i + 1] * xb);
+					double rb = y[i + 1] - (h[i] * xb + h[i + 1] * xa);
+					residu += ra * ra + rb * rb;
+					norm += xa * xa + xb * xb;
+				}
+				return new double[] { residu, norm, trace };
+			}
+		});
+	}
+
+	/**
+	 * Computes the curvature of the L-curve (log residu, log norm) at every
+	 * candidate, in the order of the values. The corner has the largest
+	 * curvature.
+	 */
+	private static void curvature(ArrayList<Candidate> candidates) {
+		int n = candidates.size();
+		for (int i = 1; i < n - 1; i++) {
+			double a0 = Math.log(candidates.get(i - 1).residu);
+			double a1 = Math.log(candidates.get(i).residu);
+			double a2 = Math.log(candidates.get(i + 1).residu);
+			double b0 = Math.log(candidates.get(i - 1).norm);
+			double b1 = Math.log(candidates.get(i).norm);
+			double b2 = Math.log(candidates.get(i + 1).norm);
+			double da = (a2 - a0) * 0.5;
+			double db = (b2 - b0) * 0.5;
+			double dda = a2 - 2 * a1 + a0;
+			double ddb = b2 - 2 * b1 + b0;
+			double speed = Math.pow(da * da + db * db, 1.5);
+			if (speed > 0 && !Double.isNaN(speed))
+				candidates.get(i).curvature = Math.abs(da * ddb - dda * db) / speed;
+		}
+	}
+
+	private static class Candidate {
+		private double	params[];
+		private double	score		= Double.POSITIVE_INFINITY;
+		private double	residu		= Double.NaN;
+		private double	norm		= Double.NaN;
+		private double	gcv			= Double.NaN;
+		private double	curvature	= Double.NEGATIVE_INFINITY;
+		private double	snr			= Double.NaN;
+		private double	psnr		= Double.NaN;
+		private double	rmse		= Double.NaN;
+
+		public Candidate(double params[]) {
+			this.params = params;
+		}
+
+		public void assess(RealSignal result, RealSignal reference) {
+			double measures[] = Assessment.measure(result, reference);
+			snr = measures[0];
+			psnr = measures[1];
+			rmse = measures[3];
+		}
+
+		public double getValue(Criterion criterion) {
+			switch (criterion) {
+			case SNR:
+				return snr;
+			case PSNR:
+				return psnr;
+			case RMSE:
+				return rmse;
+			case GCV:
+				return gcv;
+			default:
+				return curvature;
+			}
+		}
+
+		/**
+		 * @return the score, the lowest is the best and the failed
+		 *         candidates are the last
+		 */
+		public double getScore(Criterion criterion) {
+			double value = getValue(criterion);
+			boolean higher = criterion == Criterion.SNR || criterion == Criterion.PSNR || criterion == Criterion.LCURVE;
+			if (Double.isNaN(value))
+				return Double.POSITIVE_INFINITY;
+			return higher ? -value : value;
+		}
+
+		public Object[] getRow(int rank) {
+			return new Object[] { rank, toString(), score, residu, norm, gcv, curvature, snr, psnr, rmse };
+		}
+
+		@Override
+		public String toString() {
+			String s = "";
+			for (int i = 0; i < params.length; i++)
+				s += (i == 0 ? "" : ", ") + NumFormat.nice(params[i]);
+			return s;
+		}
+	}
+}
@@ -0,0 +1,525 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import bilib.tools.NumFormat;
+import deconvolution.algorithm.Algorithm;
+import deconvolutionlab.monitor.Monitors;
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+import signal.apodization.AbstractApodization;
+import signal.apodization.HannApodization;
+import signal.storage.AbstractStorage;
+
+/**
+ * This class runs a deconvolution block by block, for volumes which are too
+ * large to be processed at once.
+ * 
+ * The image is split in overlapping blocks, the overlap is derived from the
+ * support of the PSF. Every block is deconvolved by its own algorithm, decoded
+ * from the same command line, then the blocks are blended with apodized seams
+ * and accumulated in a raw file (float32, big-endian), the result is never
+ * assembled in memory.
+ * 
+ * The blocks are processed in parallel as long as their working sets fit in
+ * the memory budget. Every block is read with its margins when it runs, from
+ * the image, from the storage of an offloaded image, or from a raw file which
+ * is never loaded in memory.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class Tiling {
+
+	/** Relative threshold on the PSF defining its support. */
+	public static double		supportThreshold	= 0.01;
+
+	private int					tx;
+	private int					ty;
+	private int					tz;
+	private long				budget;
+	private AbstractApodization	seam				= new HannApodization();
+
+	/**
+	 * @param tx
+	 *            size of the tiles in X, 0 for the whole axis
+	 * @param ty
+	 *            size of the tiles in Y, 0 for the whole axis
+	 * @param tz
+	 *            size of the tiles in Z, 0 for the whole axis
+	 * @param budget
+	 *            memory budget in bytes, 0 for the half of the maximum memory
+	 */
+	public Tiling(int tx, int ty, int tz, long budget) {
+		this.tx = tx;
+		this.ty = ty;
+		this.tz = tz;
+		this.budget = budget > 0 ? budget : Runtime.getRuntime().maxMemory() / 2;
+	}
+
+	public void setSeam(AbstractApodization seam) {
+		this.seam = seam;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Deconvolves the image block by block. The blocks of an offloaded image
+	 * are read from its storage.
+	 * 
+	 * @param monitors
+	 *            the monitors of the whole deconvolution
+	 * @param command
+	 *            the command line used to create the algorithm of every block
+	 * @param image
+	 *            the input image
+	 * @param psf
+	 *            the PSF
+	 * @param path
+	 *            the directory of the output file
+	 * @param name
+	 *            the name of the output file
+	 * @return the output raw file, or null if it can not be written
+	 */
+	public File run(Monitors monitors, String command, final RealSignal image, RealSignal psf, String path, String name) {
+		return run(monitors, command, new Source() {
+			@Override
+			public RealSignal getBlock(int x0, int y0, int z0, int sx, int sy, int sz) {
+				return image.getBlock(x0, y0, z0, sx, sy, sz);
+			}
+		}, image.nx, image.ny, image.nz, psf, path, name);
+	}
+
+	/**
+	 * Deconvolves a raw image (float32, big-endian) block by block, every
+	 * block is read from the file when it runs, the image is never loaded in
+	 * memory. The size of the image is given by the name of the file, as the
+	 * output of the tiling: name_NXxNYxNZ_float32.raw.
+	 * 
+	 * @param monitors
+	 *            the monitors of the whole deconvolution
+	 * @param command
+	 *            the command line used to create the algorithm of every block
+	 * @param raw
+	 *            the input raw file
+	 * @param psf
+	 *            the PSF
+	 * @param path
+	 *            the directory of the output file
+	 * @param name
+	 *            the name of the output file
+	 * @return the output raw file, or null if it can not be read or written
+	 */
+	public File run(Monitors monitors, String command, File raw, RealSignal psf, String path, String name) {
+		int size[] = getRawSize(raw);
+		if (size == null) {
+			monitors.error("Tiling: the size of the image is not in the name " + raw.getName());
+			return null;
+		}
+		RawReader reader;
+		try {
+			reader = new RawReader(raw, size[0], size[1], size[2]);
+		}
+		catch (IOException ex) {
+			monitors.error("Tiling: " + ex.getMessage());
+			return null;
+		}
+		monitors.log("Tiling: blocks read from " + raw.getAbsolutePath());
+		File file = run(monitors, command, reader, size[0], size[1], size[2], psf, path, name);
+		try {
+			reader.close();
+		}
+		catch (IOException ex) {
+			monitors.error("Tiling: " + ex.getMessage());
+		}
+		return file;
+	}
+
+	/**
+	 * Returns the size of a raw image from its name, name_NXxNYxNZ_float32.raw.
+	 * 
+	 * @param raw
+	 *            the raw file
+	 * @return the size in X, Y, Z, or null if the name does not give it
+	 */
+	public static int[] getRawSize(File raw) {
+		Matcher matcher = Pattern.compile("_(\\d+)x(\\d+)x(\\d+)_float32\\.raw$").matcher(raw.getName());
+		if (!matcher.find())
+			return null;
+		return new int[] { Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)) };
+	}
+
+	private File run(final Monitors monitors, final String command, final Source image, int nx, int ny, int nz, final RealSignal psf, String path, String name) {
+		if (Command.extractAll(command, "-image").size() > 1) {
+			monitors.error("Tiling: not available with several views");
+			return null;
+		}
+		int support[] = getMargins(psf);
+		Axis ax = new Axis(nx, tx, support[0], seam);
+		Axis ay = new Axis(ny, ty, support[1], seam);
+		Axis az = new Axis(nz, tz, support[2], seam);
+
+		Algorithm model = Command.decodeAlgorithm(command);
+		double ratio = Math.max(1.0, model.getMemoryFootprintRatio());
+		long sizeBlock = (long) ax.getMaxSize() * ay.getMaxSize() * az.getMaxSize() * 4L;
+		long sizePSF = (long) psf.nx * psf.ny * psf.nz * 4L;
+		int processors = Parallel.getAvailableProcessors();
+		// A running block holds its working signals, its input, its result and a copy of the PSF
+		int concurrency = (int) Math.max(1, Math.min(processors, budget / (long) ((ratio + 2) * sizeBlock + sizePSF)));
+		int count = ax.count * ay.count * az.count;
+		
+		monitors.log("Tiling: " + ax.count + "x" + ay.count + "x" + az.count + " blocks, margins " + support[0] + " " + support[1] + " " + support[2]);
+		monitors.log("Tiling: " + concurrency + " concurrent blocks of " + NumFormat.bytes(sizeBlock) + " (budget " + NumFormat.bytes(budget) + ")");
+
+		File file = new File(path + File.separator + name + "_" + nx + "x" + ny + "x" + nz + "_float32.raw");
+		final Accumulator accumulator;
+		try {
+			accumulator = new Accumulator(file, nx, ny, nz);
+		}
+		catch (IOException ex) {
+			monitors.error("Tiling: " + ex.getMessage());
+			return null;
+		}
+
+		// The blocks are ordered along Z first to keep the writes local
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+		ArrayList<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (int bz = 0; bz < az.count; bz++)
+		for (int by = 0; by < ay.count; by++)
+		for (int bx = 0; bx < ax.count; bx++) {
+			final int x0 = ax.start[bx];
+			final int y0 = ay.start[by];
+			final int z0 = az.start[bz];
+			final int sx = ax.size[bx];
+			final int sy = ay.size[by];
+			final int sz = az.size[bz];
+			final float wx[] = ax.weights[bx];
+			final float wy[] = ay.weights[by];
+			final float wz[] = az.weights[bz];
+			final int index = futures.size() + 1;
+			final int total = count;
+			futures.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws IOException {
+					// The block is read when it runs, only the running blocks are in memory
+					RealSignal block = image.getBlock(x0, y0, z0, sx, sy, sz);
+					RealSignal result = Command.decodeSilentAlgorithm(command).run(block, psf.duplicate());
+					SignalCollector.free(block);
+					accumulator.add(result, x0, y0, z0, wx, wy, wz);
+					SignalCollector.free(result);
+					monitors.log("Tiling: block " + index + "/" + total + " at (" + x0 + ", " + y0 + ", " + z0 + ")");
+					return true;
+				}
+			}));
+		}
+		executor.shutdown();
+		boolean valid = true;
+		for (Future<Boolean> future : futures) {
+			try {
+				future.get();
+			}
+			catch (InterruptedException ex) {
+				monitors.error("Tiling: interrupted");
+				valid = false;
+			}
+			catch (ExecutionException ex) {
+				monitors.error("Tiling: " + ex.getCause());
+				valid = false;
+			}
+		}
+		try {
+			accumulator.close();
+		}
+		catch (IOException ex) {
+			monitors.error("Tiling: " + ex.getMessage());
+			valid = false;
+		}
+		if (!valid)
+			return null;
+		monitors.log("Tiling: output in " + file.getAbsolutePath());
+		return file;
+	}
+
+	/**
+	 * Returns a tiling for an image whose working set does not fit in the
+	 * free memory, if the storage is off-heap. The working set is then
+	 * streamed through the storage: the blocks are read from the offloaded
+	 * image and the result is accumulated in a raw file. The tiles are halved
+	 * along their largest axis until the working set of a block fits.
+	 * 
+	 * @param algo
+	 *            the algorithm
+	 * @param image
+	 *            the input image
+	 * @param psf
+	 *            the PSF
+	 * @param storage
+	 *            the storage of the controller
+	 * @return the tiling, or null if the working set fits in the free memory
+	 *         or if the storage is on the heap
+	 */
+	public static Tiling getOutOfCore(Algorithm algo, RealSignal image, RealSignal psf, AbstractStorage storage) {
+		if (storage == null || !storage.isOffHeap())
+			return null;
+		Runtime runtime = Runtime.getRuntime();
+		long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		double ratio = Math.max(1.0, algo.getMemoryFootprintRatio());
+		long sizePSF = (long) psf.nx * psf.ny * psf.nz * 4L;
+		int n[] = { image.nx, image.ny, image.nz };
+		if (ratio * getBlockSize(n, n, new int[3]) + sizePSF <= free)
+			return null;
+		int margins[] = getMargins(psf);
+		int tile[] = { image.nx, image.ny, image.nz };
+		while ((ratio + 2) * getBlockSize(n, tile, margins) + sizePSF > free) {
+			int axis = -1;
+			for (int a = 0; a < 3; a++)
+				if (tile[a] > Math.max(1, 2 * margins[a]) && (axis < 0 || tile[a] > tile[axis]))
+					axis = a;
+			if (axis < 0)
+				break;
+			tile[axis] = (tile[axis] + 1) / 2;
+		}
+		return new Tiling(tile[0], tile[1], tile[2], free);
+	}
+
+	private static long getBlockSize(int n[], int tile[], int margins[]) {
+		long size = 4L;
+		for (int a = 0; a < 3; a++)
+			size *= Math.min(n[a], tile[a] + 2 * margins[a]);
+		return size;
+	}
+
+	/**
+	 * Computes the margins from the support of the PSF, the half size of the
+	 * bounding box of the values above a fraction of the maximum, around the
+	 * center of the PSF.
+	 * 
+	 * @param psf
+	 *            the PSF
+	 * @return the margins in X, Y, Z
+	 */
+	public static int[] getMargins(RealSignal psf) {
+		float max = psf.getExtrema()[1];
+		float threshold = (float) (max * supportThreshold);
+		int cx = psf.nx / 2;
+		int cy = psf.ny / 2;
+		int cz = psf.nz / 2;
+		int mx = 0, my = 0, mz = 0;
+		for (int k = 0; k < psf.nz; k++)
+		for (int j = 0; j < psf.ny; j++)
+		for (int i = 0; i < psf.nx; i++)
+			if (psf.data[k][i + j * psf.nx] >= threshold) {
+				mx = Math.max(mx, Math.abs(i - cx));
+				my = Math.max(my, Math.abs(j - cy));
+				mz = Math.max(mz, Math.abs(k - cz));
+			}
+		return new int[] { mx, my, mz };
+	}
+
+	/**
+	 * Block grid along one axis. The core tiles are extended by the margin
+	 * on both sides, clipped to the image. The weights are ramps over the
+	 * overlaps, normalized such that the sum over the blocks is 1.
+	 */
+	private static class Axis {
+		private int		count;
+		private int		start[];
+		private int		size[];
+		private float	weights[][];
+
+		public Axis(int n, int tile, int margin, AbstractApodization seam) {
+			margin = Math.min(margin, n);
+			if (tile <= 0 || tile >= n)
+				tile = n;
+			tile = Math.min(n, Math.max(tile, 2 * margin));
+			count = (n + tile - 1) / tile;
+			start = new int[count];
+			size = new int[count];
+			weights = new float[count][];
+			int L = 2 * margin;
+			float sum[] = new float[n];
+			for (int b = 0; b < count; b++) {
+				int c0 = b * tile;
+				start[b] = Math.max(0, c0 - margin);
+				size[b] = Math.min(n, c0 + tile + margin) - start[b];
+				weights[b] = new float[size[b]];
+				for (int i = 0; i < size[b]; i++) {
+					int p = start[b] + i;
+					float w = 1f;
+					if (b > 0 && p < c0 + margin)
+						w *= seam.apodize(p - c0 + margin + 1, 2 * L + 2);
+					if (b < count - 1 && p >= c0 + tile - margin)
+						w *= seam.apodize(c0 + tile + margin - p, 2 * L + 2);
+					weights[b][i] = w;
+					sum[p] += w;
+				}
+			}
+			for (int b = 0; b < count; b++)
+				for (int i = 0; i < size[b]; i++)
+					weights[b][i] /= sum[start[b] + i];
+		}
+
+		public int getMaxSize() {
+			int max = 0;
+			for (int s : size)
+				max = Math.max(max, s);
+			return max;
+		}
+	}
+
+	/**
+	 * Provides the blocks of the input image.
+	 */
+	private interface Source {
+		public RealSignal getBlock(int x0, int y0, int z0, int sx, int sy, int sz) throws IOException;
+	}
+
+	/**
+	 * Reads the blocks of a raw file row by row, the reads are positional,
+	 * the blocks running in parallel share the channel.
+	 */
+	private static class RawReader implements Source {
+		private RandomAccessFile	raf;
+		private FileChannel			channel;
+		private int					nx;
+		private int					ny;
+
+		public RawReader(File file, int nx, int ny, int nz) throws IOException {
+			this.nx = nx;
+			this.ny = ny;
+			raf = new RandomAccessFile(file, "r");
+			if (raf.length() < (long) nx * ny * nz * 4L) {
+				raf.close();
+				throw new IOException("The file " + file.getName() + " is shorter than " + nx + "x" + ny + "x" + nz + " float");
+			}
+			channel = raf.getChannel();
+		}
+
+		@Override
+		public RealSignal getBlock(int x0, int y0, int z0, int sx, int sy, int sz) throws IOException {
+			RealSignal block = new RealSignal("block", sx, sy, sz);
+			ByteBuffer bytes = ByteBuffer.allocate(sx * 4);
+			FloatBuffer floats = bytes.asFloatBuffer();
+			for (int k = 0; k < sz; k++)
+				for (int j = 0; j < sy; j++) {
+					long offset = (((long) (z0 + k) * ny + (y0 + j)) * nx + x0) * 4L;
+					bytes.clear();
+					while (bytes.hasRemaining())
+						if (channel.read(bytes, offset + bytes.position()) < 0)
+							throw new IOException("Unexpected end of the raw file");
+					floats.clear();
+					floats.get(block.data[k], j * sx, sx);
+				}
+			return block;
+		}
+
+		public void close() throws IOException {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Accumulates the weighted blocks in a raw file, the rows of every slice
+	 * are read, updated and written back under the lock of the slice.
+	 */
+	private static class Accumulator {
+		private RandomAccessFile	raf;
+		private FileChannel			channel;
+		private int					nx;
+		private int					ny;
+		private Object				locks[];
+
+		public Accumulator(File file, int nx, int ny, int nz) throws IOException {
+			this.nx = nx;
+			this.ny = ny;
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0);
+			raf.setLength((long) nx * ny * nz * 4L);
+			channel = raf.getChannel();
+			locks = new Object[nz];
+			for (int k = 0; k < nz; k++)
+				locks[k] = new Object();
+		}
+
+		public void add(RealSignal block, int x0, int y0, int z0, float wx[], float wy[], float wz[]) throws IOException {
+			int mx = block.nx;
+			ByteBuffer bytes = ByteBuffer.allocate(mx * 4);
+			FloatBuffer floats = bytes.asFloatBuffer();
+			float row[] = new float[mx];
+			for (int k = 0; k < block.nz; k++) {
+				synchronized (locks[z0 + k]) {
+					for (int j = 0; j < block.ny; j++) {
+						long offset = (((long) (z0 + k) * ny + (y0 + j)) * nx + x0) * 4L;
+						bytes.clear();
+						while (bytes.hasRemaining())
+							if (channel.read(bytes, offset + bytes.position()) < 0)
+								break;
+						floats.clear();
+						floats.get(row);
+						float w = wy[j] * wz[k];
+						for (int i = 0; i < mx; i++)
+							row[i] += w * wx[i] * block.data[k][i + j * mx];
+						floats.clear();
+						floats.put(row);
+						bytes.clear();
+						while (bytes.hasRemaining())
+							channel.write(bytes, offset + bytes.position());
+					}
+				}
+			}
+		}
+
+		public void close() throws IOException {
+			channel.force(false);
+			raf.close();
+		}
+	}
+}
@@ -31,6 +31,7 @@
 
 package deconvolution.algorithm;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -46,11 +47,17 @@ import deconvolutionlab.monitor.Monitors;
 import deconvolutionlab.monitor.Verbose;
 import deconvolutionlab.output.Output;
 import fft.AbstractFFT;
+import fft.Autotuner;
 import fft.FFT;
+import fft.PlanCache;
+import signal.ComplexSignal;
+import signal.Parallel;
 import signal.RealSignal;
+import signal.Signal;
 import signal.SignalCollector;
 import signal.apodization.Apodization;
 import signal.padding.Padding;
+import signal.storage.AbstractStorage;
 
 /**
  * This class is the common part of every algorithm of deconvolution.
@@ -109,6 +116,22 @@ public abstract class Algorithm implements Callable<RealSignal> {
 
 	public abstract double[] getDefaultParameters();
 
+	/**
+	 * @return true if the algorithm works on the Hermitian half-spectrum, the
+	 *         autotuner times the same kind of transforms
+	 */
+	public boolean isHermitianSpectrum() {
+		return false;
+	}
+
+	/**
+	 * @return the constraint which is part of the algorithm itself, set on
+	 *         the controller before its start, or Constraint.NO
+	 */
+	public Constraint getBuiltinConstraint() {
+		return Constraint.NO;
+	}
+
 	public RealSignal run(RealSignal image, RealSignal psf, RealSignal ref) {
 		if (ref!=null)
 			setReference(ref);
@@ -129,6 +152,7 @@ public abstract class Algorithm implements Callable<RealSignal> {
 		controller.setAlgoName(algoParam);
 		fft = controller.getFFT();
 		controller.setIterationsMax(iterMax);
+		Parallel.setParallelism(controller.getParallelism());
 
 		if (image == null)
 			return null;
@@ -141,16 +165,41 @@ public abstract class Algorithm implements Callable<RealSignal> {
 		monitors.log("Path: " + controller.toStringPath());
 		monitors.log("Algorithm: " + getName());
 		
+		// Autotuning of the FFT and of the padded size
+		if (controller.isAutotuneFFT() || controller.isAutotunePadding()) {
+			Autotuner.Tuning tuning = Autotuner.tune(monitors, sn, image.nx, image.ny, image.nz, 
+					controller.isAutotuneFFT() ? null : fft, controller.isAutotunePadding() ? null : pad, isHermitianSpectrum());
+			if (controller.isAutotuneFFT()) {
+				fft = tuning.createFFT();
+				controller.setFFT(fft);
+			}
+			if (controller.isAutotunePadding()) {
+				pad = tuning.createPadding();
+				controller.setPadding(pad);
+			}
+		}
+		
 		// Prepare the signal and the PSF
-		y = pad.pad(monitors, image);
-		y.setName("y");
-		apo.apodize(monitors, y);
+		y = prepareImage(monitors, image, pad, apo);
 		monitors.log("Input: " + y.dimAsString());
-		h = psf.changeSizeAs(y);
-		h.setName("h");
-		h.normalize(norm);
+		h = preparePSF(psf, norm);
 		monitors.log("PSF: " + h.dimAsString() + " normalized " + (norm <= 0 ? "no" : norm));
 
+		// The image and the PSF are not used during the iterations
+		AbstractStorage storage = controller.getStorage();
+		if (storage != null && storage.isOffHeap()) {
+			try {
+				image.offload(storage);
+				psf.offload(storage);
+				monitors.log("Storage: image and PSF offloaded to " + storage.toString());
+			}
+			catch (IOException ex) {
+				monitors.error("Storage: " + ex.getMessage());
+				image.reload();
+				psf.reload();
+			}
+		}
+
 		String iterations = (isIterative() ? iterMax + " iterations" : "direct");
 
 		controller.setIterationsMax(iterMax);
@@ -158,11 +207,13 @@ public abstract class Algorithm implements Callable<RealSignal> {
 		monitors.log(sn + " is starting (" + iterations + ")");
 		controller.setMonitors(monitors);
 
+		if (getBuiltinConstraint() != Constraint.NO)
+			controller.setConstraint(getBuiltinConstraint());
+		controller.getConvergence().setModel(y, h);
 		controller.start(y);
-		h.circular();
 
-		// FFT
-		fft.init(monitors, y.nx, y.ny, y.nz);
+		// FFT, reused from the plan cache for a known shape
+		fft = PlanCache.acquire(monitors, fft, y.nx, y.ny, y.nz);
 		controller.setFFT(fft);
 		
 		monitors.log(sn + " data ready");
@@ -192,8 +243,11 @@ public abstract class Algorithm implements Callable<RealSignal> {
 			e.printStackTrace();
 			x = y.duplicate();
 		}
-		SignalCollector.free(y);
-		SignalCollector.free(h);
+		PlanCache.release(fft);
+		release(y);
+		release(h);
+		image.reload();
+		psf.reload();
 		x.setName("x");
 		RealSignal result = pad.crop(monitors, x);
 		
@@ -202,7 +256,7 @@ public abstract class Algorithm implements Callable<RealSignal> {
 
 		SignalCollector.free(x);
 		
-		if (controller.getOuts().size() == 0)
+		if (controller.getOuts().size() == 0 && controller.isDisplayFinal())
 		if (Lab.getPlatform() == Platform.IMAGEJ || Lab.getPlatform() == Platform.ICY)
 			Lab.show(monitors, result, "Final Display of " + sn);
 
@@ -213,6 +267,138 @@ public abstract class Algorithm implements Callable<RealSignal> {
 		return result;
 	}
 
+	/**
+	 * Pads and apodizes the image. The padded image y is shared through the
+	 * cache of spectra of the controller when all the runs of the cache have
+	 * the same image.
+	 */
+	private RealSignal prepareImage(final Monitors monitors, final RealSignal image, final Padding pad, final Apodization apo) {
+		SpectrumCache spectra = controller.getSpectra();
+		if (spectra == null || !spectra.isSameImage())
+			return createImage(monitors, image, pad, apo);
+		int size[] = pad.pad(image.nx, image.ny, image.nz);
+		String key = SpectrumCache.key("y " + pad + " " + apo, size[0], size[1], size[2], null);
+		return (RealSignal) spectra.get(key, new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				return createImage(monitors, image, pad, apo);
+			}
+		});
+	}
+
+	private RealSignal createImage(Monitors monitors, RealSignal image, Padding pad, Apodization apo) {
+		RealSignal y = pad.pad(monitors, image);
+		y.setName("y");
+		apo.apodize(monitors, y);
+		return y;
+	}
+
+	/**
+	 * Prepares the PSF h at the size of y: cropped or padded, normalized and
+	 * circularly shifted. It is shared through the cache of spectra of the
+	 * controller when there is one.
+	 */
+	private RealSignal preparePSF(final RealSignal psf, final double norm) {
+		SpectrumCache spectra = controller.getSpectra();
+		if (spectra == null)
+			return createPSF(psf, norm);
+		String key = SpectrumCache.key("h", y.nx, y.ny, y.nz, null, norm);
+		return (RealSignal) spectra.get(key, new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				return createPSF(psf, norm);
+			}
+		});
+	}
+
+	private RealSignal createPSF(RealSignal psf, double norm) {
+		RealSignal h = psf.changeSizeAs(y);
+		h.setName("h");
+		h.normalize(norm);
+		h.circular();
+		return h;
+	}
+
+	/**
+	 * Returns the spectrum H of the PSF, from the cache of spectra of the
+	 * controller when there is one. It has to be released by release().
+	 * 
+	 * @param hermitian
+	 *            true for the Hermitian half-spectrum
+	 * @return the spectrum of h
+	 */
+	protected ComplexSignal transformPSF(final boolean hermitian) {
+		return spectrum(hermitian ? "Hh" : "H", new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				return hermitian ? fft.transformHermitian(h) : fft.transform(h);
+			}
+		});
+	}
+
+	/**
+	 * Returns the spectrum Y of the padded image, from the cache of spectra
+	 * of the controller when all the runs of the cache have the same image.
+	 * It has to be released by release() and never modified.
+	 * 
+	 * @param hermitian
+	 *            true for the Hermitian half-spectrum
+	 * @return the spectrum of y
+	 */
+	protected ComplexSignal transformImage(final boolean hermitian) {
+		SpectrumCache spectra = controller.getSpectra();
+		if (spectra == null || !spectra.isSameImage())
+			return hermitian ? fft.transformHermitian(y) : fft.transform(y);
+		return spectrum(hermitian ? "Yh" : "Y", new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				return hermitian ? fft.transformHermitian(y) : fft.transform(y);
+			}
+		});
+	}
+
+	/**
+	 * Returns a spectrum derived from the PSF, from the cache of spectra of
+	 * the controller when there is one. It has to be released by release()
+	 * and never modified.
+	 * 
+	 * @param kind
+	 *            name of the spectrum
+	 * @param factory
+	 *            computes the spectrum
+	 * @param params
+	 *            parameters on which the spectrum depends
+	 * @return the spectrum
+	 */
+	protected ComplexSignal spectrum(String kind, SpectrumCache.Factory factory, double... params) {
+		SpectrumCache spectra = controller.getSpectra();
+		if (spectra == null)
+			return (ComplexSignal) factory.create();
+		String key = SpectrumCache.key(kind, y.nx, y.ny, y.nz, fft, params);
+		return (ComplexSignal) spectra.get(key, factory);
+	}
+
+	/**
+	 * @return an empty checkpoint of this algorithm at the current iteration,
+	 *         to be filled with its state
+	 */
+	protected Checkpoint checkpoint() {
+		return new Checkpoint(getShortnames()[0], controller.getIterations());
+	}
+
+	/**
+	 * Frees a signal unless it is held by the cache of spectra.
+	 * 
+	 * @param signal
+	 *            the signal to free
+	 */
+	protected void release(Signal signal) {
+		SpectrumCache spectra = controller.getSpectra();
+		if (spectra != null && spectra.contains(signal))
+			return;
+		SignalCollector.free(signal);
+	}
+
 	public Algorithm setController(Controller controller) {
 		this.controller = controller;
 		return this;
@@ -226,6 +412,11 @@ public abstract class Algorithm implements Callable<RealSignal> {
 		return iterMax;
 	}
 
+	public Algorithm setIterationsMax(int iterMax) {
+		this.iterMax = iterMax;
+		return this;
+	}
+
 	public int getIterations() {
 		return controller.getIterations();
 	}
@@ -357,6 +548,15 @@ public abstract class Algorithm implements Callable<RealSignal> {
 		return this;
 	}
 
+	public AbstractStorage getStorage() {
+		return controller.getStorage();
+	}
+
+	public Algorithm setStorage(AbstractStorage storage) {
+		controller.setStorage(storage);
+		return this;
+	}
+
 	public Monitors getMonitors() {
 		return controller.getMonitors();
 	}
@@ -50,6 +50,8 @@ public class AlgorithmList {
 		list.add(new StarkParkerPanel());
 		list.add(new RichardsonLucyPanel());
 		list.add(new RichardsonLucyTVPanel());
+		list.add(new RichardsonLucyAcceleratedPanel());
+		list.add(new RichardsonLucyMultiViewPanel());
 		list.add(new TikhonovMillerPanel());
 		list.add(new ICTMPanel());
 		list.add(new VanCittertPanel());
@@ -98,6 +100,10 @@ public class AlgorithmList {
 			algo =  new RichardsonLucy(10);
 		else if (list.get(i++).isNamed(n))
 			algo =  new RichardsonLucyTV(10, 1);
+		else if (list.get(i++).isNamed(n))
+			algo =  new RichardsonLucyAccelerated(10, 2);
+		else if (list.get(i++).isNamed(n))
+			algo =  new RichardsonLucyMultiView(10, 1);
 		else if (list.get(i++).isNamed(n))
 			algo =  new TikhonovMiller(10, 1, 0.1);
 		else if (list.get(i++).isNamed(n))
@@ -0,0 +1,231 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution.algorithm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import signal.Signal;
+
+/**
+ * This class is a snapshot of the state of an iterative algorithm: the
+ * iteration, the signals (estimate, momentum, auxiliary signals) and the
+ * scalar values, to resume a run.
+ * 
+ * The signals are copied when they are added, the snapshot can be written by
+ * an other thread while the algorithm goes on. The binary file is big-endian:
+ * a header (magic, version, algorithm, iteration), the scalars (name, value)
+ * and the signals (name, nx, ny, nz, slices).
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class Checkpoint {
+
+	private static final int				MAGIC	= 0x444C3243;	// DL2C
+	private static final int				VERSION	= 1;
+
+	private String							algorithm;
+	private int								iteration;
+	private LinkedHashMap<String, Double>	values	= new LinkedHashMap<String, Double>();
+	private LinkedHashMap<String, Slices>	signals	= new LinkedHashMap<String, Slices>();
+
+	private static class Slices {
+		private int		nx;
+		private int		ny;
+		private int		nz;
+		private float	data[][];
+
+		public Slices(int nx, int ny, int nz, float data[][]) {
+			this.nx = nx;
+			this.ny = ny;
+			this.nz = nz;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * @param algorithm
+	 *            shortname of the algorithm
+	 * @param iteration
+	 *            number of iterations done
+	 */
+	public Checkpoint(String algorithm, int iteration) {
+		this.algorithm = algorithm;
+		this.iteration = iteration;
+	}
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * Adds a copy of a signal.
+	 */
+	public Checkpoint add(String name, Signal signal) {
+		if (signal == null || signal.data == null)
+			return this;
+		float data[][] = new float[signal.nz][];
+		for (int k = 0; k < signal.nz; k++)
+			data[k] = signal.data[k].clone();
+		signals.put(name, new Slices(signal.nx, signal.ny, signal.nz, data));
+		return this;
+	}
+
+	public Checkpoint add(String name, double value) {
+		values.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Copies a saved signal into a signal of the same size.
+	 * 
+	 * @return false if the signal was not saved or has an other size
+	 */
+	public boolean restore(String name, Signal signal) {
+		Slices slices = signals.get(name);
+		if (slices == null || signal == null)
+			return false;
+		if (slices.nx != signal.nx || slices.ny != signal.ny || slices.nz != signal.nz)
+			return false;
+		for (int k = 0; k < signal.nz; k++) {
+			if (slices.data[k].length != signal.data[k].length)
+				return false;
+			System.arraycopy(slices.data[k], 0, signal.data[k], 0, slices.data[k].length);
+		}
+		return true;
+	}
+
+	public double get(String name, double defaultValue) {
+		Double value = values.get(name);
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Writes the checkpoint in a temporary file renamed at the end, a file
+	 * is never left half written.
+	 */
+	public void write(File file) throws IOException {
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(algorithm);
+			out.writeInt(iteration);
+			out.writeInt(values.size());
+			for (Map.Entry<String, Double> entry : values.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeDouble(entry.getValue());
+			}
+			out.writeInt(signals.size());
+			for (Map.Entry<String, Slices> entry : signals.entrySet()) {
+				Slices s = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeInt(s.nx);
+				out.writeInt(s.ny);
+				out.writeInt(s.nz);
+				for (int k = 0; k < s.nz; k++) {
+					ByteBuffer buffer = ByteBuffer.allocate(4 * s.data[k].length);
+					buffer.asFloatBuffer().put(s.data[k]);
+					out.writeInt(s.data[k].length);
+					out.write(buffer.array());
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+		// The previous checkpoint is replaced in one step, it survives a crash
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException ex) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	public static Checkpoint read(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file.getName() + " is not a checkpoint");
+			if (in.readInt() != VERSION)
+				throw new IOException(file.getName() + " has an unknown version");
+			Checkpoint checkpoint = new Checkpoint(in.readUTF(), in.readInt());
+			int nv = in.readInt();
+			for (int i = 0; i < nv; i++)
+				checkpoint.values.put(in.readUTF(), in.readDouble());
+			int ns = in.readInt();
+			for (int i = 0; i < ns; i++) {
+				String name = in.readUTF();
+				int nx = in.readInt();
+				int ny = in.readInt();
+				int nz = in.readInt();
+				float data[][] = new float[nz][];
+				for (int k = 0; k < nz; k++) {
+					byte bytes[] = new byte[4 * in.readInt()];
+					in.readFully(bytes);
+					data[k] = new float[bytes.length / 4];
+					ByteBuffer.wrap(bytes).asFloatBuffer().get(data[k]);
+				}
+				checkpoint.signals.put(name, new Slices(nx, ny, nz, data));
+			}
+			return checkpoint;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return algorithm + " @" + iteration + " " + signals.keySet() + " " + values.keySet();
+	}
+}
@@ -32,9 +32,16 @@
 package deconvolution.algorithm;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import bilib.tools.Files;
 import bilib.tools.NumFormat;
@@ -51,7 +58,10 @@ import fft.AbstractFFT;
 import fft.FFT;
 import signal.Assessment;
 import signal.ComplexSignal;
+import signal.Parallel;
 import signal.RealSignal;
+import signal.Signal;
+import signal.SignalCollector;
 import signal.apodization.Apodization;
 import signal.padding.Padding;
 import signal.range.AbstractRange;
@@ -60,6 +70,8 @@ import signal.range.IdentityRange;
 import signal.range.NonNegativeRange;
 import signal.range.NormalizedRange;
 import signal.range.RescaledRange;
+import signal.storage.AbstractStorage;
+import signal.storage.Storage;
 
 /**
  * This is an important class to manage all the common task of the algorithm.
@@ -78,11 +90,29 @@ public class Controller {
 	private String				path;
 	private boolean				system;
 	private boolean				multithreading;
+	private int					threads			= 0;
+	private boolean				autotuneFFT		= false;
+	private boolean				autotunePadding	= false;
+	private boolean				displayFinal	= true;
+	private SpectrumCache		spectra			= null;
+	private ConvergenceMonitor	convergence		= new ConvergenceMonitor();
+	private String				checkpointFile	= null;
+	private int					checkpointEvery	= 0;
+	private int					projectionEvery	= 1;
+	private String				resumeFile		= null;
+	private ExecutorService		checkpointer	= null;
+	private Future<?>			checkpointing	= null;
+	private int					outputQueue		= 2;
+	private ExecutorService		outputter		= null;
+	private Semaphore			outputSlots		= null;
+	private AtomicLong			timeOutputs		= new AtomicLong();
+	private long				timeStalled		= 0;
 	private double				normalizationPSF;
 	private double				epsilon;
 	
 	private Padding				padding;
 	private Apodization			apodization;
+	private AbstractStorage		storage;
 	private ArrayList<Output>	outs;
 	private Stats				stats;
 	private Constraint			constraint;
@@ -110,7 +140,6 @@ public class Controller {
 	private double				psnr				= 0;
 
 	private RealSignal			refImage;
-	private RealSignal			prevImage;
 	private RealSignal			x;
 	
 	private Timer				timer;
@@ -137,6 +166,7 @@ public class Controller {
 		setEpsilon(1e-6);
 		setPadding(new Padding());
 		setApodization(new Apodization());
+		setStorage(Storage.getDefault());
 
 		monitors = new Monitors();
 		monitors.add(new ConsoleMonitor());
@@ -168,7 +198,20 @@ public class Controller {
 	}
 
 	public boolean needSpatialComputation() {
-		return doConstraint || doResidu || doReference;
+		return doConstraint || doResidu || doReference || convergence.isActive();
+	}
+
+	/**
+	 * @return true if the estimate is needed in the spatial domain at the
+	 *         current iteration, for the constraint or for the convergence
+	 */
+	private boolean needSpatialComputation(int iteration) {
+		if (isProjection(iteration))
+			return true;
+		boolean residu = doResidu || convergence.isStagnation();
+		if (residu && convergence.isSnapshot(iteration))
+			return true;
+		return (residu || doReference || convergence.isActive()) && convergence.isEvaluated(iteration);
 	}
 
 	/**
@@ -203,8 +246,12 @@ public class Controller {
 			doConstraint = false;
 		}
 		
-		if (doResidu)
-			prevImage = x.duplicate();
+		residu = Double.MAX_VALUE;
+		convergence.start(x, doResidu);
+
+		timeOutputs.set(0);
+		timeStalled = 0;
+		outputSlots = new Semaphore(Math.max(1, outputQueue));
 	}
 
 	public boolean ends(ComplexSignal X) {
@@ -213,11 +260,16 @@ public class Controller {
 		for (Output output : outs)
 			out = out | output.is(iterations);
 
-		if (doConstraint || doResidu || doReference || out) {
+		if (needSpatialComputation(iterations) || out) {
 			if (fft == null)
 				fft = FFT.createDefaultFFT(monitors, X.nx, X.ny, X.nz);
+			boolean projection = isProjection(iterations);
 			x = fft.inverse(X, x);
-			return ends(x);
+			boolean stop = ends(x);
+			// The constraint was applied on x, the iterate is X
+			if (projection && !stop)
+				fft.transform(x, X);
+			return stop;
 		}
 
 		return ends((RealSignal) null);
@@ -226,11 +278,12 @@ public class Controller {
 	public boolean ends(RealSignal x) {
 		this.x = x;
 
-		if (doConstraint || doResidu || doReference)
-			compute(iterations, x, doConstraint, doResidu, doReference);
+		boolean stopConv = false;
+		if (needSpatialComputation(iterations))
+			stopConv = compute(iterations, x, true);
 
-		for (Output out : outs)
-			out.executeIterative(monitors, x, this, iterations);
+		if (x != null)
+			snapshot(x);
 
 		iterations++;
 		double p = iterations * 100.0 / iterationsMax;
@@ -245,7 +298,7 @@ public class Controller {
 		double snrText = doReference ? snr : Double.NEGATIVE_INFINITY;
 		//String residuText = doResidu ? "" + residu : "n/a";
 		double residuText = residu;
-		stats.add(x, ""+iterations, NumFormat.seconds(getTimeNano()), pnsrText, snrText, residuText);
+		stats.add(x, ""+iterations, NumFormat.seconds(getTimeNano()), NumFormat.seconds(timeOutputs.get()), pnsrText, snrText, residuText);
 		
 		String prefix = "Stopped>> by ";
 		if (abort)
@@ -256,21 +309,26 @@ public class Controller {
 			monitors.log(prefix + "time " + timeElapsed + " > " + timeLimit);
 		if (stopResd)
 			monitors.log(prefix + "residu " + NumFormat.nice(residu) + " < " + NumFormat.nice(residuMin));
+		if (stopConv)
+			monitors.log(prefix + convergence.getReason());
 
-		return abort | stopIter | stopTime | stopResd;
+		return abort | stopIter | stopTime | stopResd | stopConv;
 	}
 
 	public void finish(RealSignal x) {
 		this.x = x;
 
-		if (doReference || doConstraint || doResidu)
-			compute(iterations, x, doConstraint, doResidu, doReference);
+		if (doReference || doConstraint)
+			compute(iterations, x, false);
+		convergence.finish();
+		waitCheckpoint();
+		waitOutputs();
 
 		double pnsrText = doReference ? psnr : Double.NEGATIVE_INFINITY;
 		double snrText = doReference ? snr : Double.NEGATIVE_INFINITY;
 		//String residuText = doResidu ? "" + residu : "n/a";
 		double residuText = residu;
-		stats.addOutput(x, algoName, NumFormat.seconds(getTimeNano()), pnsrText, snrText, residuText);
+		stats.addOutput(x, algoName, NumFormat.seconds(getTimeNano()), NumFormat.seconds(timeOutputs.get()), pnsrText, snrText, residuText);
 		
 		stats.save(monitors, path);
 		
@@ -282,28 +340,125 @@ public class Controller {
 			timer.cancel();
 	}
 
-	private void compute(int iterations, RealSignal x, boolean con, boolean res, boolean ref) {
-		if (x == null)
+	/**
+	 * Submits the iterative outputs of the current iteration to a background
+	 * thread. The outputs work on a copy of the estimate, the algorithm only
+	 * pays the copy. At most outputQueue snapshots are pending; when the
+	 * queue is full, the outputs with the policy DROP are skipped and the
+	 * outputs with the policy BLOCK wait for a free place.
+	 * 
+	 * @param x
+	 *            the estimate of the current iteration
+	 */
+	private void snapshot(RealSignal x) {
+		final ArrayList<Output> blocking = new ArrayList<Output>();
+		final ArrayList<Output> dropping = new ArrayList<Output>();
+		for (Output out : outs)
+			if (out.is(iterations))
+				(out.getPolicy() == Output.Policy.DROP ? dropping : blocking).add(out);
+		if (blocking.size() + dropping.size() == 0)
+			return;
+
+		long chrono = System.nanoTime();
+		final ArrayList<Output> selected = new ArrayList<Output>(blocking);
+		if (outputSlots.tryAcquire()) {
+			selected.addAll(dropping);
+		}
+		else {
+			for (Output out : dropping)
+				monitors.log("@" + iterations + " Output " + out.getName() + " dropped, " + outputQueue + " snapshots are pending");
+			if (blocking.size() == 0)
+				return;
+			outputSlots.acquireUninterruptibly();
+		}
+
+		final RealSignal copy = new RealSignal("snapshot-" + iterations, x.nx, x.ny, x.nz);
+		int nxy = x.nx * x.ny;
+		for (int k = 0; k < x.nz; k++)
+			System.arraycopy(x.data[k], 0, copy.data[k], 0, nxy);
+		timeStalled += System.nanoTime() - chrono;
+
+		if (outputter == null)
+			outputter = Executors.newSingleThreadExecutor();
+		final int iter = iterations;
+		final Controller controller = this;
+		outputter.submit(new Runnable() {
+			@Override
+			public void run() {
+				long chrono = System.nanoTime();
+				try {
+					for (Output out : selected)
+						out.executeIterative(monitors, copy, controller, iter);
+				}
+				catch (Exception ex) {
+					monitors.error("Output @" + iter + ": " + ex.getMessage());
+				}
+				finally {
+					SignalCollector.free(copy);
+					timeOutputs.addAndGet(System.nanoTime() - chrono);
+					outputSlots.release();
+				}
+			}
+		});
+	}
+
+	private void waitOutputs() {
+		if (outputter == null)
 			return;
+		outputter.shutdown();
+		try {
+			outputter.awaitTermination(1, TimeUnit.HOURS);
+		}
+		catch (InterruptedException ex) {
+			monitors.error("Output: interrupted");
+		}
+		outputter = null;
+		monitors.log("Outputs: " + NumFormat.seconds(timeOutputs.get()) + " in background, " + NumFormat.seconds(timeStalled) + " in the algorithm");
+	}
+
+	/**
+	 * Applies the constraint, then evaluates the quality and the convergence
+	 * of the estimate when it is an iteration of evaluation.
+	 * 
+	 * @return true if a criterion of the convergence monitor is met
+	 */
+	private boolean compute(int iterations, RealSignal x, boolean iterative) {
+		if (x == null)
+			return false;
 		
-		if (range != null)
+		if (range != null && (!iterative || isProjection(iterations)))
 			range.apply(x);
+
+		boolean residu = doResidu || convergence.isStagnation();
+		if (iterative && residu && convergence.isSnapshot(iterations))
+			convergence.snapshot(x);
 		
-		if (ref && refImage != null) {
+		if (iterative && !convergence.isEvaluated(iterations))
+			return false;
+
+		if (doReference && refImage != null) {
 			String s = "";
 			psnr = Assessment.psnr(x, refImage);
 			snr = Assessment.snr(x, refImage);
 			s += " PSNR: " + NumFormat.nice(psnr);
 			s += " SNR: " + NumFormat.nice(snr);
 			monitors.log("@" + iterations + " " + s);
+			if (iterative)
+				convergence.addPSNR(psnr);
 		}
 
-		residu = Double.MAX_VALUE;
-		if (prevImage != null) {
-			residu = Assessment.relativeResidu(x, prevImage);
-			prevImage = x.duplicate();
-			monitors.log("@" + iterations + " Residu: " + NumFormat.nice(residu));
+		if (!iterative)
+			return false;
+
+		if (residu) {
+			this.residu = convergence.residu(x);
+			monitors.log("@" + iterations + " Residu: " + NumFormat.nice(this.residu));
 		}
+
+		if (convergence.isDiscrepancy())
+			monitors.log("@" + iterations + " Discrepancy: " + NumFormat.nice(convergence.discrepancy(fft, x)));
+
+		return convergence.check();
 	}
 
 	public double getTimeNano() {
@@ -317,6 +472,8 @@ public class Controller {
 	public String getConstraintAsString() {
 		if (!doConstraint)
 			return "no";
+		if (projectionEvery > 1)
+			return constraint.name().toLowerCase() + " every " + projectionEvery;
 		return constraint.name().toLowerCase();
 	}
 
@@ -324,6 +481,7 @@ public class Controller {
 		String stop = algo.isIterative() ? "iterations limit=" + algo.getIterationsMax() + ", " : "direct, ";
 		stop += doTime ? ", time limit=" + NumFormat.nice(timeLimit * 1e-9) : " no time limit" + ", ";
 		stop += doResidu ? ", residu limit=" + NumFormat.nice(residuMin) : " no residu limit";
+		stop += convergence.isActive() || convergence.getEvery() > 1 ? ", convergence " + convergence.toString() : "";
 		return stop;
 	}
 
@@ -404,6 +562,288 @@ public class Controller {
 		this.multithreading = multithreading;
 	}
 
+	/**
+	 * Enables the multithreading with a given number of threads for the
+	 * operations on the signals.
+	 * 
+	 * @param threads
+	 *            number of threads, 0 for all the processors, 1 to disable
+	 *            the multithreading
+	 */
+	public void setMultithreading(int threads) {
+		this.multithreading = threads != 1;
+		this.threads = Math.max(0, threads);
+	}
+
+	/**
+	 * @return the number of threads used by the operations on the signals
+	 */
+	public int getParallelism() {
+		if (!multithreading)
+			return 1;
+		return threads > 0 ? threads : Parallel.getAvailableProcessors();
+	}
+
+	/**
+	 * @return true if the FFT is selected by the autotuner
+	 */
+	public boolean isAutotuneFFT() {
+		return autotuneFFT;
+	}
+
+	/**
+	 * @param autotuneFFT
+	 *            true to select the FFT by the autotuner at the start of the
+	 *            run
+	 */
+	public void setAutotuneFFT(boolean autotuneFFT) {
+		this.autotuneFFT = autotuneFFT;
+	}
+
+	/**
+	 * @return true if the padding is selected by the autotuner
+	 */
+	public boolean isAutotunePadding() {
+		return autotunePadding;
+	}
+
+	/**
+	 * @param autotunePadding
+	 *            true to select the padded size by the autotuner at the start
+	 *            of the run
+	 */
+	public void setAutotunePadding(boolean autotunePadding) {
+		this.autotunePadding = autotunePadding;
+	}
+
+	/**
+	 * @return true to display the result when there is no output
+	 */
+	public boolean isDisplayFinal() {
+		return displayFinal;
+	}
+
+	/**
+	 * @param displayFinal
+	 *            false to never display the result, for example for the
+	 *            blocks of a tiled deconvolution
+	 */
+	public void setDisplayFinal(boolean displayFinal) {
+		this.displayFinal = displayFinal;
+	}
+
+	/**
+	 * Saves a checkpoint every given number of iterations.
+	 * 
+	 * @param filename
+	 *            the file of the checkpoint, relative to the path if it is not
+	 *            absolute, null to disable
+	 * @param every
+	 *            number of iterations between two checkpoints
+	 */
+	public void setCheckpoint(String filename, int every) {
+		this.checkpointFile = filename;
+		this.checkpointEvery = every;
+	}
+
+	/**
+	 * Applies the constraint every given number of iterations only, the
+	 * constraint of an algorithm iterating in the frequency domain costs two
+	 * FFTs.
+	 * 
+	 * @param every
+	 *            number of iterations between two projections, 1 for every
+	 *            iteration
+	 */
+	public void setProjection(int every) {
+		this.projectionEvery = Math.max(1, every);
+	}
+
+	public int getProjection() {
+		return projectionEvery;
+	}
+
+	private boolean isProjection(int iteration) {
+		return doConstraint && iteration % projectionEvery == 0;
+	}
+
+	/**
+	 * Returns the number of the remaining iterations which need neither the
+	 * estimate nor a checkpoint, an output or a stopping test other than the
+	 * number of iterations. A linear algorithm can compute them at once and
+	 * then call skip().
+	 * 
+	 * @return the number of iterations which can be skipped, 0 if the
+	 *         iterations have to be run one by one
+	 */
+	public int getSkippableIterations() {
+		if (needSpatialComputation() || abort)
+			return 0;
+		if (checkpointFile != null && checkpointEvery > 0)
+			return 0;
+		for (Output output : outs)
+			if (output.getSnapshot() > 0)
+				return 0;
+		return Math.max(0, iterationsMax - iterations);
+	}
+
+	/**
+	 * Accounts iterations computed at once by the algorithm, the next call of
+	 * ends() is the last one.
+	 */
+	public void skip(int n) {
+		iterations += n;
+		monitors.log("@" + iterations + " " + n + " iterations in closed form");
+	}
+
+	/**
+	 * @param filename
+	 *            the checkpoint to resume from, null to start from the input
+	 */
+	public void setResume(String filename) {
+		this.resumeFile = filename;
+	}
+
+	/**
+	 * @return true if the algorithm should save a checkpoint after the
+	 *         current iteration
+	 */
+	public boolean isCheckpoint() {
+		return checkpointFile != null && checkpointEvery > 0 && iterations > 0 && iterations % checkpointEvery == 0;
+	}
+
+	/**
+	 * Writes a checkpoint asynchronously. The checkpoint is skipped if the
+	 * previous one is still being written.
+	 * 
+	 * @param checkpoint
+	 *            the state of the algorithm, copied from its signals
+	 */
+	public void checkpoint(final Checkpoint checkpoint) {
+		if (checkpointing != null && !checkpointing.isDone()) {
+			monitors.log("@" + iterations + " Checkpoint skipped, the previous one is being written");
+			return;
+		}
+		if (checkpointer == null)
+			checkpointer = Executors.newSingleThreadExecutor();
+		final File file = getFile(checkpointFile);
+		checkpointing = checkpointer.submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					checkpoint.write(file);
+					monitors.log("Checkpoint " + checkpoint.toString() + " in " + file.getAbsolutePath());
+				}
+				catch (IOException ex) {
+					monitors.error("Checkpoint: " + ex.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads the checkpoint given by setResume() and restores the estimate
+	 * x. The counter of iterations continues from the checkpoint.
+	 * 
+	 * @param algo
+	 *            the algorithm
+	 * @param x
+	 *            the estimate, real or complex, restored from the signal "x"
+	 * @return the checkpoint to restore the other signals, or null if there
+	 *         is nothing to resume
+	 */
+	public Checkpoint resume(Algorithm algo, Signal x) {
+		if (resumeFile == null)
+			return null;
+		File file = getFile(resumeFile);
+		try {
+			Checkpoint checkpoint = Checkpoint.read(file);
+			if (!checkpoint.getAlgorithm().equals(algo.getShortnames()[0])) {
+				monitors.error("Resume: " + file.getName() + " is a checkpoint of " + checkpoint.getAlgorithm());
+				return null;
+			}
+			if (!checkpoint.restore("x", x)) {
+				monitors.error("Resume: " + file.getName() + " has not the size " + x.dimAsString());
+				return null;
+			}
+			iterations = checkpoint.getIteration();
+			monitors.log("Resume from " + checkpoint.toString());
+			return checkpoint;
+		}
+		catch (IOException ex) {
+			monitors.error("Resume: " + ex.getMessage());
+			return null;
+		}
+	}
+
+	private File getFile(String filename) {
+		File file = new File(filename);
+		return file.isAbsolute() ? file : new File(path + File.separator + filename);
+	}
+
+	private void waitCheckpoint() {
+		if (checkpointer == null)
+			return;
+		checkpointer.shutdown();
+		try {
+			checkpointer.awaitTermination(1, TimeUnit.HOURS);
+		}
+		catch (InterruptedException ex) {
+			monitors.error("Checkpoint: interrupted");
+		}
+		checkpointer = null;
+		checkpointing = null;
+	}
+
+	/**
+	 * @return the maximum number of pending snapshots of the iterative
+	 *         outputs
+	 */
+	public int getOutputQueue() {
+		return outputQueue;
+	}
+
+	/**
+	 * @param outputQueue
+	 *            the maximum number of pending snapshots of the iterative
+	 *            outputs, each one holds a copy of the estimate
+	 */
+	public void setOutputQueue(int outputQueue) {
+		this.outputQueue = outputQueue;
+	}
+
+	/**
+	 * @return the monitor of the convergence
+	 */
+	public ConvergenceMonitor getConvergence() {
+		return convergence;
+	}
+
+	/**
+	 * @param convergence
+	 *            the monitor of the convergence
+	 */
+	public void setConvergence(ConvergenceMonitor convergence) {
+		this.convergence = convergence;
+	}
+
+	/**
+	 * @return the cache of the PSF spectra shared between several runs, or
+	 *         null
+	 */
+	public SpectrumCache getSpectra() {
+		return spectra;
+	}
+
+	/**
+	 * @param spectra
+	 *            the cache of the PSF spectra, shared by the deconvolutions
+	 *            of several images with the same PSF, null to disable
+	 */
+	public void setSpectra(SpectrumCache spectra) {
+		this.spectra = spectra;
+	}
+
 	/**
 	 * @return the normalizationPSF
 	 */
@@ -464,6 +904,24 @@ public class Controller {
 		this.apodization = apodization;
 	}
 
+	/**
+	 * @return the storage
+	 */
+	public AbstractStorage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Sets the storage of the idle inputs of the run, the image and the PSF
+	 * during the iterations. The working signals stay on the heap.
+	 * 
+	 * @param storage
+	 *            the storage to set
+	 */
+	public void setStorage(AbstractStorage storage) {
+		this.storage = storage;
+	}
+
 	/**
 	 * @return the monitors
 	 */
@@ -0,0 +1,376 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution.algorithm;
+
+import java.util.ArrayDeque;
+
+import bilib.tools.NumFormat;
+import fft.AbstractFFT;
+import signal.ComplexSignal;
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+
+/**
+ * This class detects the convergence of an iterative algorithm, it is driven
+ * by the Controller.
+ * 
+ * The relative residu ||x(k) - x(k-1)|| / ||x(k-1)|| is computed by one pass
+ * which also copies x(k) into a buffer allocated once, instead of a new copy
+ * at every iteration. The criteria are evaluated every N iterations, then the
+ * previous estimate is only copied at the iteration before the evaluation.
+ * 
+ * The criteria, in addition to the residu limit of the Controller:
+ * <ul>
+ * <li>stagnation: the residu decreases by less than a fraction over a window
+ * of evaluations</li>
+ * <li>discrepancy: the RMS of y - h*x reaches tau times the noise level
+ * sigma</li>
+ * <li>plateau: the PSNR against the reference increases by less than a number
+ * of dB over a window of evaluations</li>
+ * </ul>
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class ConvergenceMonitor {
+
+	private int					every				= 1;
+
+	private int					stagnationWindow	= 0;
+	private double				stagnation			= 0;
+
+	private double				sigma				= -1;
+	private double				tau					= 1;
+
+	private int					plateauWindow		= 0;
+	private double				plateau				= 0;
+
+	private RealSignal			previous;
+	private ArrayDeque<Double>	residus				= new ArrayDeque<Double>();
+	private ArrayDeque<Double>	psnrs				= new ArrayDeque<Double>();
+
+	private RealSignal			y;
+	private RealSignal			h;
+	private ComplexSignal		H;
+	private ComplexSignal		X;
+	private RealSignal			hx;
+	private double				discrepancy			= Double.MAX_VALUE;
+	private String				reason				= "";
+
+	/**
+	 * @param every
+	 *            number of iterations between two evaluations
+	 */
+	public void setEvery(int every) {
+		this.every = Math.max(1, every);
+	}
+
+	public int getEvery() {
+		return every;
+	}
+
+	/**
+	 * @param window
+	 *            number of evaluations
+	 * @param fraction
+	 *            minimal relative decrease of the residu over the window
+	 */
+	public void setStagnation(int window, double fraction) {
+		this.stagnationWindow = Math.max(0, window);
+		this.stagnation = fraction;
+	}
+
+	/**
+	 * @param sigma
+	 *            standard deviation of the noise, negative to disable
+	 * @param tau
+	 *            safety factor of the discrepancy principle, usually a bit
+	 *            above 1
+	 */
+	public void setDiscrepancy(double sigma, double tau) {
+		this.sigma = sigma;
+		this.tau = tau;
+	}
+
+	/**
+	 * @param window
+	 *            number of evaluations
+	 * @param dB
+	 *            minimal increase of PSNR over the window
+	 */
+	public void setPlateau(int window, double dB) {
+		this.plateauWindow = Math.max(0, window);
+		this.plateau = dB;
+	}
+
+	public boolean isStagnation() {
+		return stagnationWindow > 0;
+	}
+
+	public boolean isDiscrepancy() {
+		return sigma > 0;
+	}
+
+	public boolean isPlateau() {
+		return plateauWindow > 0;
+	}
+
+	/**
+	 * @return true if one criterion of this monitor is enabled
+	 */
+	public boolean isActive() {
+		return isStagnation() || isDiscrepancy() || isPlateau();
+	}
+
+	/**
+	 * @param iteration
+	 *            index of the iteration, from 0
+	 * @return true if the criteria are evaluated at this iteration
+	 */
+	public boolean isEvaluated(int iteration) {
+		return (iteration + 1) % every == 0;
+	}
+
+	/**
+	 * @param iteration
+	 *            index of the iteration, from 0
+	 * @return true if the estimate has to be copied at this iteration, for the
+	 *         residu of the next evaluation
+	 */
+	public boolean isSnapshot(int iteration) {
+		return every > 1 && (iteration + 2) % every == 0;
+	}
+
+	/**
+	 * Sets the model y = h*x of the discrepancy principle.
+	 * 
+	 * @param y
+	 *            the padded input
+	 * @param h
+	 *            the PSF, circularly shifted at the size of y
+	 */
+	public void setModel(RealSignal y, RealSignal h) {
+		this.y = y;
+		this.h = h;
+	}
+
+	/**
+	 * Called at the start of the algorithm.
+	 * 
+	 * @param x
+	 *            the initial estimate
+	 * @param residu
+	 *            true if the residu is needed
+	 */
+	public void start(RealSignal x, boolean residu) {
+		residus.clear();
+		psnrs.clear();
+		discrepancy = Double.MAX_VALUE;
+		reason = "";
+		if ((residu || isStagnation()) && every == 1 && x != null)
+			snapshot(x);
+	}
+
+	/**
+	 * Copies the estimate in the buffer of the previous estimate, allocated
+	 * at the first call.
+	 * 
+	 * @param x
+	 *            the estimate
+	 */
+	public void snapshot(final RealSignal x) {
+		if (previous == null || previous.nx != x.nx || previous.ny != x.ny || previous.nz != x.nz) {
+			if (previous != null)
+				SignalCollector.free(previous);
+			previous = new RealSignal("previous", x.nx, x.ny, x.nz);
+		}
+		Parallel.run(x.nx, x.ny, x.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				System.arraycopy(x.data[k], from, previous.data[k], from, to - from);
+			}
+		});
+	}
+
+	/**
+	 * Computes the relative residu against the previous estimate and copies
+	 * the estimate in the same pass.
+	 * 
+	 * @param x
+	 *            the estimate
+	 * @return the relative residu, or Double.MAX_VALUE without previous
+	 *         estimate
+	 */
+	public double residu(final RealSignal x) {
+		if (previous == null || previous.nx != x.nx || previous.ny != x.ny || previous.nz != x.nz) {
+			snapshot(x);
+			return Double.MAX_VALUE;
+		}
+		double[] m = Parallel.reduce(x.nx, x.ny, x.nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] t = x.data[k];
+				float[] p = previous.data[k];
+				double ref = 0.0;
+				double diff = 0.0;
+				for (int i = from; i < to; i++) {
+					double a = p[i];
+					double d = t[i] - a;
+					ref += a * a;
+					diff += d * d;
+					p[i] = t[i];
+				}
+				return new double[] { ref, diff };
+			}
+		});
+		double residu = Math.sqrt(m[1] / Math.max(m[0], 1e-30));
+		residus.addLast(residu);
+		while (residus.size() > stagnationWindow + 1)
+			residus.removeFirst();
+		return residu;
+	}
+
+	/**
+	 * Computes the RMS of the difference between the input and the
+	 * convolution of the estimate by the PSF.
+	 * 
+	 * @param fft
+	 *            the FFT initialized at the size of y
+	 * @param x
+	 *            the estimate
+	 * @return the RMS of y - h*x
+	 */
+	public double discrepancy(AbstractFFT fft, final RealSignal x) {
+		if (y == null || h == null || fft == null)
+			return Double.MAX_VALUE;
+		if (H == null) {
+			H = fft.transformHermitian(h);
+			X = fft.transformHermitian(x);
+			hx = new RealSignal("hx", x.nx, x.ny, x.nz);
+		}
+		else {
+			fft.transform(x, X);
+		}
+		fft.inverse(X, H, false, hx);
+		double[] m = Parallel.reduce(x.nx, x.ny, x.nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] a = y.data[k];
+				float[] b = hx.data[k];
+				double sum = 0.0;
+				for (int i = from; i < to; i++)
+					sum += (a[i] - b[i]) * (a[i] - b[i]);
+				return new double[] { sum };
+			}
+		});
+		discrepancy = Math.sqrt(m[0] / ((double) x.nx * x.ny * x.nz));
+		return discrepancy;
+	}
+
+	/**
+	 * Adds the PSNR of an evaluation.
+	 * 
+	 * @param psnr
+	 *            the PSNR against the reference
+	 */
+	public void addPSNR(double psnr) {
+		psnrs.addLast(psnr);
+		while (psnrs.size() > plateauWindow + 1)
+			psnrs.removeFirst();
+	}
+
+	/**
+	 * Checks the criteria after an evaluation.
+	 * 
+	 * @return true if one criterion is met, the reason is given by getReason()
+	 */
+	public boolean check() {
+		if (isStagnation() && residus.size() > stagnationWindow) {
+			double first = residus.getFirst();
+			double last = residus.getLast();
+			if (last >= (1.0 - stagnation) * first) {
+				reason = "stagnation of the residu " + NumFormat.nice(last) + " over " + stagnationWindow + " evaluations";
+				return true;
+			}
+		}
+		if (isDiscrepancy() && discrepancy <= tau * sigma) {
+			reason = "discrepancy " + NumFormat.nice(discrepancy) + " < " + NumFormat.nice(tau * sigma);
+			return true;
+		}
+		if (isPlateau() && psnrs.size() > plateauWindow) {
+			double gain = psnrs.getLast() - psnrs.getFirst();
+			if (gain < plateau) {
+				reason = "plateau of PSNR, " + NumFormat.nice(gain) + " dB over " + plateauWindow + " evaluations";
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * Frees the buffers at the end of the algorithm.
+	 */
+	public void finish() {
+		if (previous != null)
+			SignalCollector.free(previous);
+		if (H != null)
+			SignalCollector.free(H);
+		if (X != null)
+			SignalCollector.free(X);
+		if (hx != null)
+			SignalCollector.free(hx);
+		previous = null;
+		H = null;
+		X = null;
+		hx = null;
+		y = null;
+		h = null;
+	}
+
+	@Override
+	public String toString() {
+		String s = "every " + every;
+		if (isStagnation())
+			s += ", stagnation " + stagnationWindow + " " + NumFormat.nice(stagnation);
+		if (isDiscrepancy())
+			s += ", discrepancy " + NumFormat.nice(sigma) + " " + NumFormat.nice(tau);
+		if (isPlateau())
+			s += ", plateau " + plateauWindow + " " + NumFormat.nice(plateau);
+		return s;
+	}
+}
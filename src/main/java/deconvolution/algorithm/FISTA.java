@@ -36,8 +36,10 @@ import java.util.concurrent.Callable;
 import signal.ComplexSignal;
 import signal.Operations;
 import signal.RealSignal;
+import signal.Signal;
 import signal.SignalCollector;
 import wavelets.AbstractWavelets;
+import wavelets.CycleSpinningWavelets;
 import wavelets.Wavelets;
 
 public class FISTA extends Algorithm implements Callable<RealSignal> {
@@ -46,6 +48,7 @@ public class FISTA extends Algorithm implements Callable<RealSignal> {
 	private double	lambda			= 0.1;
 	private String	waveletsName	= "Haar";
 	private int		scale			= 3;
+	private int		shifts			= 4;
 
 	public FISTA(int iterMax, double gamma, double lambda, String waveletsName, int scale) {
 		super();
@@ -60,12 +63,19 @@ public class FISTA extends Algorithm implements Callable<RealSignal> {
 	public RealSignal call() throws Exception {
 		AbstractWavelets wavelets = Wavelets.getWaveletsByName(waveletsName);
 		wavelets.setScale(scale);
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal A = Operations.delta(gamma, H);
+		if (wavelets instanceof CycleSpinningWavelets)
+			((CycleSpinningWavelets) wavelets).setShifts(shifts);
+		ComplexSignal Y = transformImage(false);
+		final ComplexSignal H = transformPSF(false);
+		ComplexSignal A = spectrum("A", new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				return Operations.delta(gamma, H);
+			}
+		}, gamma);
 		ComplexSignal G = Operations.multiplyConjugate(gamma, H, Y);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
+		release(Y);
+		release(H);
 		ComplexSignal Z = G.duplicate();
 		RealSignal x = fft.inverse(G);
 		RealSignal s = x.duplicate();
@@ -76,6 +86,13 @@ public class FISTA extends Algorithm implements Callable<RealSignal> {
 		float pk0 = 1f;
 		float threshold = (float) (lambda * gamma * 0.5);
 		RealSignal buffer = y.duplicate();
+		Checkpoint state = controller.resume(this, x);
+		if (state != null) {
+			state.restore("xprev", xprev);
+			state.restore("s", s);
+			pk0 = (float) state.get("pk0", pk0);
+			pk1 = (float) state.get("pk1", pk1);
+		}
 		while (!controller.ends(x)) {
 			fft.transform(s, Z);
 			Z.times(A);
@@ -85,14 +102,17 @@ public class FISTA extends Algorithm implements Callable<RealSignal> {
 			pk0 = pk1;
 			pk1 = (1f + (float) Math.sqrt(1f + 4f * pk0 * pk0)) * 0.5f;
 			update(xprev, x, (pk0 - 1f) / pk1, s);
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", x).add("xprev", xprev).add("s", s).add("pk0", pk0).add("pk1", pk1));
 		}
-		SignalCollector.free(A);
+		release(A);
 		SignalCollector.free(Z);
 		SignalCollector.free(G);
 		SignalCollector.free(s);
 		SignalCollector.free(z);
 		SignalCollector.free(xprev);
 		SignalCollector.free(buffer);
+		wavelets.free();
 		return x;
 	}
 
@@ -123,7 +143,8 @@ public class FISTA extends Algorithm implements Callable<RealSignal> {
 
 	@Override
 	public double getMemoryFootprintRatio() {
-		return 15.0;
+		// One more signal for the shifted copy of the cycle spinning
+		return 15.0 + (CycleSpinningWavelets.isCycleSpinning(waveletsName) ? 1.0 : 0.0);
 	}
 
 	@Override
@@ -163,6 +184,8 @@ public class FISTA extends Algorithm implements Callable<RealSignal> {
 			lambda = (float) params[2];
 		if (params.length > 3)
 			scale = (int) params[3];
+		if (params.length > 4)
+			shifts = (int) params[4];
 		return this;
 	}
 
@@ -50,6 +50,7 @@ import deconvolution.RegularizationPanel;
 import deconvolutionlab.Config;
 import deconvolutionlab.Constants;
 import wavelets.AbstractWavelets;
+import wavelets.CycleSpinningWavelets;
 import wavelets.Wavelets;
 
 public class FISTAPanel extends AlgorithmPanel implements KeyListener, ActionListener, ChangeListener {
@@ -58,6 +59,7 @@ public class FISTAPanel extends AlgorithmPanel implements KeyListener, ActionLis
 	private SpinnerRangeDouble	spnStep		= new SpinnerRangeDouble(1, 0, 2, 0.1, "#.#");
 	private RegularizationPanel	reg;
 	private JComboBox<String>	cmbWav		= new JComboBox<String>(Wavelets.getWaveletsAsArray());
+	private SpinnerRangeInteger	spnShifts	= new SpinnerRangeInteger(4, 1, 4096, 1, "###");
 	private JComboBox<String>	cmbScale	= new JComboBox<String>(new String[] { "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12" });
 
 	private FISTA				algo		= new FISTA(10, 1, 0.1, "Haar", 3);
@@ -72,6 +74,7 @@ public class FISTAPanel extends AlgorithmPanel implements KeyListener, ActionLis
 		spnStep.setPreferredSize(Constants.dimParameters);
 		cmbWav.setPreferredSize(Constants.dimParameters);
 		cmbScale.setPreferredSize(Constants.dimParameters);
+		spnShifts.setPreferredSize(Constants.dimParameters);
 
 		GridPanel pn = new GridPanel(false);
 		pn.place(1, 0, "<html><span \"nowrap\"><b>Iterations</b></span></html>");
@@ -86,11 +89,14 @@ public class FISTAPanel extends AlgorithmPanel implements KeyListener, ActionLis
 		pn.place(5, 2, cmbWav);
 		pn.place(5, 3, "<html>Scale</html>");
 		pn.place(5, 4, cmbScale);
+		pn.place(6, 3, "<html><span \"nowrap\">Shifts</span></html>");
+		pn.place(6, 4, spnShifts);
 
 		Config.register("Algorithm." + algo.getShortnames()[0], "iterations", spnIter, params[0]);
 		Config.register("Algorithm." + algo.getShortnames()[0], "step", spnStep, params[1]);
 		Config.register("Algorithm." + algo.getShortnames()[0], "wavelets", cmbWav, wavdef.getName());
 		Config.register("Algorithm." + algo.getShortnames()[0], "scale", cmbScale, wavdef.getScales());
+		Config.register("Algorithm." + algo.getShortnames()[0], "shifts", spnShifts, 4);
 		Config.register("Algorithm." + algo.getShortnames()[0], "reg", reg.getText(), "0.1");
 		reg.getText().addKeyListener(this);
 		reg.getSlider().addChangeListener(this);
@@ -98,6 +104,8 @@ public class FISTAPanel extends AlgorithmPanel implements KeyListener, ActionLis
 		spnStep.addChangeListener(this);
 		cmbWav.addActionListener(this);
 		cmbScale.addActionListener(this);
+		spnShifts.addChangeListener(this);
+		spnShifts.setEnabled(CycleSpinningWavelets.isCycleSpinning((String) cmbWav.getSelectedItem()));
 		return pn;
 	}
 
@@ -108,11 +116,15 @@ public class FISTAPanel extends AlgorithmPanel implements KeyListener, ActionLis
 		double lambda = reg.getValue();
 		String waveletsName = (String) cmbWav.getSelectedItem();
 		int scale = Integer.parseInt((String) cmbScale.getSelectedItem());
-		return iter + " " + NumFormat.nice(gamma) + " " + NumFormat.nice(lambda) + " " + waveletsName + " " + scale;
+		String command = iter + " " + NumFormat.nice(gamma) + " " + NumFormat.nice(lambda) + " " + waveletsName + " " + scale;
+		if (CycleSpinningWavelets.isCycleSpinning(waveletsName))
+			command += " " + spnShifts.get();
+		return command;
 	}
 
 	@Override
 	public void actionPerformed(ActionEvent e) {
+		spnShifts.setEnabled(CycleSpinningWavelets.isCycleSpinning((String) cmbWav.getSelectedItem()));
 		Command.buildCommand();
 	}
 
@@ -162,6 +174,9 @@ public class FISTAPanel extends AlgorithmPanel implements KeyListener, ActionLis
 		s += "Due to the non-smoothness of the l<sub>1</sub> norm, ";
 		s += "the problem can be solved efficiently by fast iterative soft-thresholding </p>";
 		s += "<p>Reference: A. Beck, M. Teboulle, A fast iterative shrinkage-thresholding algorithm for linear inverse problems, SIAM J. Imag. Sci. 2, 2009. ";
+		s += "<p>The -Spin wavelets average the shrinkage over several circular shifts (cycle spinning), ";
+		s += "which removes the blocky artifacts of the decimated transform. ";
+		s += "Shifts is the number of shifts per iteration, the undecimated transform is reached with 2^scale shifts per axis.</p>";
 		return s;
 	}
 
@@ -0,0 +1,340 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution.algorithm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import deconvolutionlab.monitor.Monitors;
+import fft.AbstractFFT;
+import signal.ComplexSignal;
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+import signal.factory.complex.ComplexSignalFactory;
+
+/**
+ * This class keeps the precomputed terms of the direct inverse filters, H,
+ * |H|^2 and |L|^2, to reuse them when a filter is run again with the same PSF
+ * and a new regularization factor or a new image. The key is a hash of the
+ * prepared PSF, the padded size, the FFT and the regularizer; a hit is only
+ * accepted if the PSF kept by the entry is equal to the PSF of the run, a
+ * collision of the hash is thus a miss.
+ * 
+ * A run with cached terms costs one forward FFT, one fused pointwise filter
+ * computed in place in the spectrum of the image and one inverse FFT.
+ * 
+ * The terms are leased by acquire() and given back by release(), they are
+ * shared by the concurrent runs and freed when they are evicted and no
+ * longer used. The cache is kept from one job to the next, to run a filter
+ * again with a new regularization factor; it is bounded by a number of
+ * entries and by a number of bytes, the least recently used entries are
+ * evicted beyond. The cached terms count in the memory footprint of the
+ * filters.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+public class FilterCache {
+
+	public enum Regularizer {
+		NONE, IDENTITY, LAPLACIAN
+	};
+
+	private static int				capacity	= 2;
+	private static long				budget		= Runtime.getRuntime().maxMemory() / 4;
+	private static int				hits		= 0;
+	private static int				misses		= 0;
+	private static LinkedList<Terms>	entries		= new LinkedList<Terms>();
+
+	/**
+	 * Returns the terms of the filter for the PSF h, the ones of the cache if
+	 * they exist. They have to be given back by release().
+	 * 
+	 * @param monitors
+	 *            monitors
+	 * @param fft
+	 *            FFT initialized at the size of h
+	 * @param h
+	 *            PSF, padded, normalized and circularly shifted
+	 * @param regularizer
+	 *            the regularization operator
+	 * @return the terms of the filter
+	 */
+	public static Terms acquire(Monitors monitors, AbstractFFT fft, RealSignal h, Regularizer regularizer) {
+		String key = getKey(fft, h, regularizer);
+		synchronized (FilterCache.class) {
+			for (Iterator<Terms> it = entries.iterator(); it.hasNext();) {
+				Terms terms = it.next();
+				if (terms.key.equals(key) && terms.matches(h)) {
+					it.remove();
+					entries.addFirst(terms);
+					terms.users++;
+					hits++;
+					monitors.log("Filter reused from the cache [" + regularizer.name().toLowerCase() + "]");
+					return terms;
+				}
+			}
+			misses++;
+		}
+		Terms terms = new Terms(key, h, fft.transform(h), regularizer);
+		synchronized (FilterCache.class) {
+			terms.users++;
+			if (capacity > 0 && terms.getBytes() <= budget) {
+				entries.addFirst(terms);
+				trim();
+			}
+			else {
+				terms.evicted = true;
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * Gives back the terms at the end of a run.
+	 * 
+	 * @param terms
+	 *            terms given by acquire()
+	 */
+	public static synchronized void release(Terms terms) {
+		if (terms == null)
+			return;
+		terms.users--;
+		if (terms.evicted && terms.users <= 0)
+			terms.free();
+	}
+
+	/**
+	 * Filters the signal y with X = conj(H) Y / max(minimum, |H|^2 + lambda
+	 * |L|^2). The filter is applied in place in the spectrum Y.
+	 * 
+	 * @param fft
+	 *            FFT initialized at the size of y
+	 * @param y
+	 *            signal to filter
+	 * @param terms
+	 *            terms of the filter
+	 * @param lambda
+	 *            regularization factor
+	 * @param minimum
+	 *            lower bound of the denominator, 0 for no stabilization
+	 * @return the filtered signal
+	 */
+	public static RealSignal apply(AbstractFFT fft, RealSignal y, Terms terms, double lambda, double minimum) {
+		ComplexSignal Y = fft.transform(y);
+		filter(Y, terms, lambda, minimum);
+		RealSignal x = fft.inverse(Y);
+		SignalCollector.free(Y);
+		return x;
+	}
+
+	/**
+	 * Computes the fused pointwise filter in place in Y.
+	 */
+	public static void filter(final ComplexSignal Y, final Terms terms, double lambda, final double minimum) {
+		final float w = (float) lambda;
+		final float m = (float) minimum;
+		final boolean stabilized = minimum > 0;
+		Parallel.run(Y.nx, Y.ny, Y.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] y = Y.data[k];
+				float[] h = terms.H.data[k];
+				float[] h2 = terms.H2.data[k];
+				float[] l2 = terms.L2 == null ? null : terms.L2.data[k];
+				float ya, yb, d;
+				for (int i = from, j = 2 * from; i < to; i++, j += 2) {
+					d = h2[i] + (l2 == null ? w : w * l2[i]);
+					if (stabilized && d < m)
+						d = m;
+					ya = y[j];
+					yb = y[j + 1];
+					y[j] = (h[j] * ya + h[j + 1] * yb) / d;
+					y[j + 1] = (h[j] * yb - h[j + 1] * ya) / d;
+				}
+			}
+		});
+	}
+
+	public static synchronized void clear() {
+		for (Terms terms : entries) {
+			terms.evicted = true;
+			if (terms.users <= 0)
+				terms.free();
+		}
+		entries.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	public static int getCapacity() {
+		return capacity;
+	}
+
+	public static synchronized void setCapacity(int capacity) {
+		FilterCache.capacity = Math.max(0, capacity);
+		trim();
+	}
+
+	public static long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of the cached terms, the least
+	 * recently used entries are evicted beyond.
+	 */
+	public static synchronized void setBudget(long bytes) {
+		FilterCache.budget = Math.max(0, bytes);
+		trim();
+	}
+
+	public static synchronized long getBytes() {
+		long bytes = 0;
+		for (Terms terms : entries)
+			bytes += terms.getBytes();
+		return bytes;
+	}
+
+	public static int getHits() {
+		return hits;
+	}
+
+	public static int getMisses() {
+		return misses;
+	}
+
+	public static synchronized int getSize() {
+		return entries.size();
+	}
+
+	private static void trim() {
+		while (entries.size() > capacity || (entries.size() > 0 && getBytes() > budget)) {
+			Terms terms = entries.removeLast();
+			terms.evicted = true;
+			if (terms.users <= 0)
+				terms.free();
+		}
+	}
+
+	private static String getKey(AbstractFFT fft, RealSignal h, Regularizer regularizer) {
+		long hash = 17;
+		for (int k = 0; k < h.nz; k++)
+			hash = hash * 1000003L + Arrays.hashCode(h.data[k]);
+		String terms = regularizer == Regularizer.LAPLACIAN ? " H L" : " H";
+		return Long.toHexString(hash) + " " + h.nx + "x" + h.ny + "x" + h.nz + " " + fft.getName() + terms;
+	}
+
+	/**
+	 * Precomputed terms of a filter: the spectrum H of the PSF, |H|^2 and
+	 * |L|^2 for the Laplacian regularizer. The squared moduli are real signals
+	 * indexed by frequency.
+	 */
+	public static class Terms {
+		private String			key;
+		private RealSignal		h;
+		private ComplexSignal	H;
+		private RealSignal		H2;
+		private RealSignal		L2;
+		private int				users	= 0;
+		private boolean			evicted	= false;
+
+		private Terms(String key, RealSignal h, ComplexSignal H, Regularizer regularizer) {
+			this.key = key;
+			this.h = h.duplicate();
+			this.H = H;
+			this.H2 = modulus2(H);
+			if (regularizer == Regularizer.LAPLACIAN) {
+				ComplexSignal L = ComplexSignalFactory.laplacian(H.nx, H.ny, H.nz);
+				L2 = modulus2(L);
+				SignalCollector.free(L);
+			}
+		}
+
+		private static RealSignal modulus2(final ComplexSignal S) {
+			final RealSignal m = new RealSignal("|" + S.name + "|^2", S.nx, S.ny, S.nz);
+			Parallel.run(S.nx, S.ny, S.nz, new Parallel.Stripe() {
+				@Override
+				public void apply(int k, int from, int to) {
+					float[] s = S.data[k];
+					float[] o = m.data[k];
+					for (int i = from, j = 2 * from; i < to; i++, j += 2)
+						o[i] = s[j] * s[j] + s[j + 1] * s[j + 1];
+				}
+			});
+			return m;
+		}
+
+		/**
+		 * Returns true if the PSF of the terms is equal to h, value by value.
+		 */
+		private boolean matches(RealSignal h) {
+			if (this.h == null || this.h.nx != h.nx || this.h.ny != h.ny || this.h.nz != h.nz)
+				return false;
+			for (int k = 0; k < h.nz; k++)
+				if (!Arrays.equals(this.h.data[k], h.data[k]))
+					return false;
+			return true;
+		}
+
+		private long getBytes() {
+			long bytes = 0;
+			if (h != null)
+				bytes += 4L * h.nx * h.ny * h.nz;
+			if (H != null)
+				bytes += 8L * H.nx * H.ny * H.nz;
+			if (H2 != null)
+				bytes += 4L * H2.nx * H2.ny * H2.nz;
+			if (L2 != null)
+				bytes += 4L * L2.nx * L2.ny * L2.nz;
+			return bytes;
+		}
+
+		private void free() {
+			if (h != null)
+				SignalCollector.free(h);
+			if (H != null)
+				SignalCollector.free(H);
+			if (H2 != null)
+				SignalCollector.free(H2);
+			if (L2 != null)
+				SignalCollector.free(L2);
+			h = null;
+			H = null;
+			H2 = null;
+			L2 = null;
+		}
+	}
+}
@@ -36,6 +36,7 @@ import java.util.concurrent.Callable;
 import signal.ComplexSignal;
 import signal.Operations;
 import signal.RealSignal;
+import signal.Signal;
 import signal.SignalCollector;
 import signal.factory.complex.ComplexSignalFactory;
 
@@ -54,24 +55,39 @@ public class ICTM extends Algorithm implements Callable<RealSignal> {
 
 	@Override
 	public RealSignal call() throws Exception {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal A = Operations.delta(gamma, H);
-		ComplexSignal L = ComplexSignalFactory.laplacian(Y.nx, Y.ny, Y.nz);
-		ComplexSignal L2 = Operations.multiplyConjugate(lambda * gamma, L, L);
-		SignalCollector.free(L);
-		A.minus(L2);
-		SignalCollector.free(L2);
+		ComplexSignal Y = transformImage(false);
+		final ComplexSignal H = transformPSF(false);
+		ComplexSignal A = spectrum("A-L2", new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				ComplexSignal A = Operations.delta(gamma, H);
+				ComplexSignal L = ComplexSignalFactory.laplacian(Y.nx, Y.ny, Y.nz);
+				ComplexSignal L2 = Operations.multiplyConjugate(lambda * gamma, L, L);
+				SignalCollector.free(L);
+				A.minus(L2);
+				SignalCollector.free(L2);
+				return A;
+			}
+		}, gamma, lambda);
 		ComplexSignal G = Operations.multiplyConjugate(gamma, H, Y);
-		SignalCollector.free(H);
-		SignalCollector.free(Y);
+		release(H);
+		release(Y);
 		ComplexSignal X = G.duplicate();
-		controller.setConstraint(Constraint.NONNEGATIVE);
+		controller.resume(this, X);
+		// Without constraint nor estimate in between, the iterations are a
+		// geometric series computed in one pass
+		int skip = controller.getSkippableIterations();
+		if (skip > 0) {
+			Operations.multiplyAdd(X, A, G, skip);
+			controller.skip(skip);
+		}
 		while (!controller.ends(X)) {
 			X.times(A);
 			X.plus(G);
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", X));
 		}
-		SignalCollector.free(A);
+		release(A);
 		SignalCollector.free(G);
 		RealSignal x = fft.inverse(X);
 		SignalCollector.free(X);
@@ -88,6 +104,11 @@ public class ICTM extends Algorithm implements Callable<RealSignal> {
 		return new String[] {"ICTM"};
 	}
 
+	@Override
+	public Constraint getBuiltinConstraint() {
+		return Constraint.NONNEGATIVE;
+	}
+
 	@Override
 	public int getComplexityNumberofFFT() {
 		return 3 + iterMax * 2;
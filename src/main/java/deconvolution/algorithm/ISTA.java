@@ -36,8 +36,10 @@ import java.util.concurrent.Callable;
 import signal.ComplexSignal;
 import signal.Operations;
 import signal.RealSignal;
+import signal.Signal;
 import signal.SignalCollector;
 import wavelets.AbstractWavelets;
+import wavelets.CycleSpinningWavelets;
 import wavelets.Wavelets;
 
 public class ISTA extends Algorithm implements Callable<RealSignal> {
@@ -46,6 +48,7 @@ public class ISTA extends Algorithm implements Callable<RealSignal> {
 	private double lambda = 1.0;
 	private String waveletsName = "Haar";
 	private int scale = 3;
+	private int shifts = 4;
 	
 	public ISTA(int iterMax, double gamma, double lambda, String waveletsName, int scale) {
 		super();
@@ -60,31 +63,42 @@ public class ISTA extends Algorithm implements Callable<RealSignal> {
 	public RealSignal call() throws Exception {
 		AbstractWavelets wavelets = Wavelets.getWaveletsByName(waveletsName);
 		wavelets.setScale(scale);
+		if (wavelets instanceof CycleSpinningWavelets)
+			((CycleSpinningWavelets) wavelets).setShifts(shifts);
 		
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal A = Operations.delta(gamma, H);
+		ComplexSignal Y = transformImage(false);
+		final ComplexSignal H = transformPSF(false);
+		ComplexSignal A = spectrum("A", new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				return Operations.delta(gamma, H);
+			}
+		}, gamma);
 		ComplexSignal G = Operations.multiplyConjugate(gamma, H, Y);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
+		release(Y);
+		release(H);
 	
 		ComplexSignal Z = G.duplicate();
 		RealSignal x  = fft.inverse(G);
 		RealSignal z = x.duplicate();
 		float threshold = (float)(lambda*gamma*0.5);
 		RealSignal buffer = y.duplicate();
+		controller.resume(this, x);
 		while(!controller.ends(x)) {
 			fft.transform(x, Z);
 			Z.times(A);
 			Z.plus(G);
 			fft.inverse(Z, z);
 			wavelets.shrinkage(threshold, z, x, buffer);
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", x));
 		}
-		SignalCollector.free(A);
+		release(A);
 		SignalCollector.free(Z);
 		SignalCollector.free(G);
 		SignalCollector.free(z);
 		SignalCollector.free(buffer);
+		wavelets.free();
 		return x;
 	}
 	
@@ -116,7 +130,8 @@ public class ISTA extends Algorithm implements Callable<RealSignal> {
 	
 	@Override
 	public double getMemoryFootprintRatio() {
-		return 13.0;
+		// One more signal for the shifted copy of the cycle spinning
+		return 13.0 + (CycleSpinningWavelets.isCycleSpinning(waveletsName) ? 1.0 : 0.0);
 	}
 
 	@Override
@@ -156,6 +171,8 @@ public class ISTA extends Algorithm implements Callable<RealSignal> {
 			lambda = (float)params[2];
 		if (params.length > 3)
 			scale = (int)params[3];
+		if (params.length > 4)
+			shifts = (int)params[4];
 		return this;
 	}
 	
@@ -36,6 +36,7 @@ import java.util.concurrent.Callable;
 import signal.ComplexSignal;
 import signal.Operations;
 import signal.RealSignal;
+import signal.Signal;
 import signal.SignalCollector;
 
 public class Landweber extends Algorithm implements Callable<RealSignal> {
@@ -56,19 +57,34 @@ public class Landweber extends Algorithm implements Callable<RealSignal> {
 	// => pre-compute: A = (I-g*H*H) and G = g*H*Y
 	// => Iteration : X(n+1) = X(n) * A + G with F(0) = G
 	public RealSignal call() {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal A = Operations.delta(gamma, H);
+		ComplexSignal Y = transformImage(false);
+		final ComplexSignal H = transformPSF(false);
+		ComplexSignal A = spectrum("A", new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				return Operations.delta(gamma, H);
+			}
+		}, gamma);
 		ComplexSignal G = Operations.multiplyConjugate(gamma, H, Y);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
+		release(Y);
+		release(H);
 		ComplexSignal X = G.duplicate();
 		X.setName("X");
+		controller.resume(this, X);
+		// Without constraint nor estimate in between, the iterations are a
+		// geometric series computed in one pass
+		int skip = controller.getSkippableIterations();
+		if (skip > 0) {
+			Operations.multiplyAdd(X, A, G, skip);
+			controller.skip(skip);
+		}
 		while (!controller.ends(X)) {
 			X.times(A);
 			X.plus(G);
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", X));
 		}
-		SignalCollector.free(A);
+		release(A);
 		SignalCollector.free(G);
 		RealSignal x = fft.inverse(X);	
 		SignalCollector.free(X);
@@ -33,10 +33,7 @@ package deconvolution.algorithm;
 
 import java.util.concurrent.Callable;
 
-import signal.ComplexSignal;
-import signal.Operations;
 import signal.RealSignal;
-import signal.SignalCollector;
 
 public class NonStabilizedDivision extends Algorithm implements Callable<RealSignal> {
 
@@ -44,15 +41,15 @@ public class NonStabilizedDivision extends Algorithm implements Callable<RealSig
 		super();
 	}
 
+	/**
+	 * Filters with the terms |H|^2 and conj(H) of the filter cache, computed
+	 * once per PSF.
+	 */
 	@Override
 	public RealSignal call() {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal X = Operations.divideNotStabilized(Y, H);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
-		RealSignal x = fft.inverse(X);
-		SignalCollector.free(X);
+		FilterCache.Terms terms = FilterCache.acquire(controller.getMonitors(), fft, h, FilterCache.Regularizer.NONE);
+		RealSignal x = FilterCache.apply(fft, y, terms, 0, 0);
+		FilterCache.release(terms);
 		return x;
 	}
 
@@ -73,7 +70,8 @@ public class NonStabilizedDivision extends Algorithm implements Callable<RealSig
 
 	@Override
 	public double getMemoryFootprintRatio() {
-		return 8.0;
+		// y, h, Y, x and the cached h, H, |H|^2
+		return 9.0;
 	}
 
 	@Override
@@ -57,18 +57,20 @@ public class RegularizedInverseFilter extends Algorithm implements Callable<Real
 	}
 
 	public RealSignal runTextBook() {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal H2 = Operations.multiply(H, H);
+		ComplexSignal Y = transformImage(false);
+		final ComplexSignal H = transformPSF(false);
+		ComplexSignal H2 = Operations.multiplyConjugate(H, H);
 		ComplexSignal L = ComplexSignalFactory.laplacian(Y.nx, Y.ny, Y.nz);
-		ComplexSignal L2 = Operations.multiply(lambda, L, L);
+		ComplexSignal L2 = Operations.multiplyConjugate(lambda, L, L);
 		ComplexSignal FA = Operations.add(H2, L2);
-		ComplexSignal FT = Operations.divideStabilized(H, FA);
+		ComplexSignal HC = Operations.conjugate(H);
+		ComplexSignal FT = Operations.divideStabilized(HC, FA);
 		ComplexSignal X = Operations.multiply(Y, FT);
 		RealSignal x = fft.inverse(X);
 		SignalCollector.free(FT);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
+		release(Y);
+		release(H);
+		SignalCollector.free(HC);
 		SignalCollector.free(FA);
 		SignalCollector.free(L);
 		SignalCollector.free(H2);
@@ -77,39 +79,38 @@ public class RegularizedInverseFilter extends Algorithm implements Callable<Real
 		return x;
 	}
 
+	/**
+	 * Filters with the terms |H|^2, conj(H) and |L|^2 of the filter cache,
+	 * computed once per PSF.
+	 */
 	public RealSignal runOptimizedMemoryFootprint() {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal X = filter(Y, H);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
-		RealSignal x = fft.inverse(X);
-		SignalCollector.free(X);
+		FilterCache.Terms terms = FilterCache.acquire(controller.getMonitors(), fft, h, FilterCache.Regularizer.LAPLACIAN);
+		RealSignal x = FilterCache.apply(fft, y, terms, lambda, Math.sqrt(Operations.epsilon));
+		FilterCache.release(terms);
 		return x;
 	}
 
+	/**
+	 * @return the spectrum conj(H) Y / (|H|^2 + lambda |L|^2)
+	 */
 	public ComplexSignal filter(ComplexSignal Y, ComplexSignal H) {
 		ComplexSignal L = ComplexSignalFactory.laplacian(Y.nx, Y.ny, Y.nz);
 		L.setName("Laplacian");
-		float la, lb, ha, hb, fa, fb, ta, tb, ya, yb;
+		float la, lb, ha, hb, d, ya, yb;
 		int nxy = Y.nx * Y.ny * 2;
 		float w = (float) lambda;
-		float epsilon = (float) Operations.epsilon;
+		float epsilon = (float) Math.sqrt(Operations.epsilon);
 		for (int k = 0; k < Y.nz; k++)
 			for (int i = 0; i < nxy; i += 2) {
 				la = L.data[k][i];
 				lb = L.data[k][i + 1];
 				ha = H.data[k][i];
 				hb = H.data[k][i + 1];
-				fa = w * (la * la - lb * lb) + (ha * ha - hb * hb);
-				fb = w * (2f * la * lb) + (2f * ha * hb);
-				float mag = Math.max(epsilon, fa * fa + fb * fb);
-				ta = (ha * fa + hb * fb) / mag;
-				tb = (hb * fa - ha * fb) / mag;
+				d = Math.max(epsilon, w * (la * la + lb * lb) + (ha * ha + hb * hb));
 				ya = Y.data[k][i];
 				yb = Y.data[k][i + 1];
-				L.data[k][i] = ya * ta - yb * tb;
-				L.data[k][i + 1] = ya * tb + ta * yb;
+				L.data[k][i] = (ha * ya + hb * yb) / d;
+				L.data[k][i + 1] = (ha * yb - hb * ya) / d;
 			}
 		return L;
 	}
@@ -131,7 +132,8 @@ public class RegularizedInverseFilter extends Algorithm implements Callable<Real
 
 	@Override
 	public double getMemoryFootprintRatio() {
-		return 8.0;
+		// y, h, Y, x and the cached h, H, |H|^2, |L|^2
+		return 10.0;
 	}
 
 	@Override
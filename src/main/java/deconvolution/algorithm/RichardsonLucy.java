@@ -34,6 +34,7 @@ package deconvolution.algorithm;
 import java.util.concurrent.Callable;
 
 import signal.ComplexSignal;
+import signal.HermitianSignal;
 import signal.Operations;
 import signal.RealSignal;
 import signal.SignalCollector;
@@ -48,23 +49,21 @@ public class RichardsonLucy extends Algorithm implements Callable<RealSignal> {
 	// x(k+1) = x(k) *. Hconj * ( y /. H x(k))
 	@Override
 	public RealSignal call() {
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal U = new ComplexSignal("RL-U", y.nx, y.ny, y.nz);
+		final ComplexSignal H = transformPSF(true);
+		ComplexSignal U = new HermitianSignal("RL-U", y.nx, y.ny, y.nz);
 		RealSignal x = y.duplicate();
-		RealSignal p = y.duplicate();
 		RealSignal u = y.duplicate();
+		controller.resume(this, x);
 		while (!controller.ends(x)) {
 			fft.transform(x, U);
-			U.times(H);
-			fft.inverse(U, u);
-			Operations.divide(y, u, p);
-			fft.transform(p, U);
-			U.timesConjugate(H);
-			fft.inverse(U, u);
-			x.times(u);
+			fft.inverse(U, H, false, u);
+			fft.transformRatio(y, u, U);
+			fft.inverse(U, H, true, u);
+			Operations.multiplyPositive(x, u);
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", x));
 		}
-		SignalCollector.free(H);
-		SignalCollector.free(p);
+		release(H);
 		SignalCollector.free(u);
 		SignalCollector.free(U);
 		return x;
@@ -110,6 +109,11 @@ public class RichardsonLucy extends Algorithm implements Callable<RealSignal> {
 		return false;
 	}
 
+	@Override
+	public boolean isHermitianSpectrum() {
+		return true;
+	}
+
 	@Override
 	public Algorithm setParameters(double... params) {
 		if (params == null)
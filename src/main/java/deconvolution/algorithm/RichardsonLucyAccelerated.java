@@ -0,0 +1,249 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution.algorithm;
+
+import java.util.concurrent.Callable;
+
+import signal.ComplexSignal;
+import signal.HermitianSignal;
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+
+/**
+ * Richardson-Lucy accelerated by the vector extrapolation of Biggs and
+ * Andrews. Every iteration applies the RL update to a point predicted from
+ * the last steps, the acceleration is estimated from the correlation of the
+ * two last RL corrections.
+ * 
+ * The order of the prediction is adaptive: no prediction while the history
+ * is too short, second order only when the acceleration is stable, first
+ * order otherwise.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class RichardsonLucyAccelerated extends Algorithm implements Callable<RealSignal> {
+
+	/** Upper bound of the acceleration, below 1 to keep the method stable. */
+	public static double	alphaMax	= 0.99;
+
+	private int				order		= 2;
+
+	public RichardsonLucyAccelerated(int iterMax, int order) {
+		super();
+		this.iterMax = iterMax;
+		this.order = Math.max(1, Math.min(2, order));
+	}
+
+	// p(k) = x(k) + a.h(k) + a^2/2 (h(k) - h(k-1)), h(k) = x(k) - x(k-1)
+	// x(k+1) = p(k) *. Hconj * ( y /. H p(k))
+	// a = <g(k), g(k-1)> / <g(k-1), g(k-1)>, g(k) = x(k+1) - p(k)
+	@Override
+	public RealSignal call() {
+		final ComplexSignal H = transformPSF(true);
+		ComplexSignal U = new HermitianSignal("RLA-U", y.nx, y.ny, y.nz);
+		RealSignal x = y.duplicate();
+		RealSignal p = y.duplicate();
+		RealSignal u = y.duplicate();
+		RealSignal xprev = y.duplicate();
+		RealSignal hprev = new RealSignal("RLA-h", y.nx, y.ny, y.nz);
+		RealSignal gprev = new RealSignal("RLA-g", y.nx, y.ny, y.nz);
+		double alpha = 0.0;
+		double alphaPrev = 0.0;
+		int k = 0;
+		Checkpoint state = controller.resume(this, x);
+		if (state != null) {
+			state.restore("xprev", xprev);
+			state.restore("hprev", hprev);
+			state.restore("gprev", gprev);
+			alpha = state.get("alpha", alpha);
+			alphaPrev = state.get("alphaPrev", alphaPrev);
+			k = (int) state.get("k", k);
+		}
+		while (!controller.ends(x)) {
+			int o = 0;
+			if (k >= 2 && alpha > 0)
+				o = (order >= 2 && k >= 3 && alpha >= alphaPrev) ? 2 : 1;
+			predict(x, xprev, hprev, p, (float) alpha, o);
+			fft.transform(p, U);
+			fft.inverse(U, H, false, u);
+			fft.transformRatio(y, u, U);
+			fft.inverse(U, H, true, u);
+			double dot[] = update(x, p, u, gprev);
+			alphaPrev = alpha;
+			alpha = (k >= 1 && dot[1] > 0) ? Math.max(0, Math.min(alphaMax, dot[0] / dot[1])) : 0;
+			k++;
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", x).add("xprev", xprev).add("hprev", hprev).add("gprev", gprev).add("alpha", alpha).add("alphaPrev", alphaPrev).add("k", k));
+		}
+		release(H);
+		SignalCollector.free(U);
+		SignalCollector.free(p);
+		SignalCollector.free(u);
+		SignalCollector.free(xprev);
+		SignalCollector.free(hprev);
+		SignalCollector.free(gprev);
+		return x;
+	}
+
+	/**
+	 * Predicts the point p from the current estimate x and its history, and
+	 * shifts the history.
+	 */
+	private void predict(final RealSignal x, final RealSignal xprev, final RealSignal hprev, final RealSignal p, final float alpha, final int o) {
+		final float a1 = o >= 1 ? alpha : 0f;
+		final float a2 = o >= 2 ? 0.5f * alpha * alpha : 0f;
+		Parallel.run(x.nx, x.ny, x.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] xk = x.data[k];
+				float[] qk = xprev.data[k];
+				float[] hk = hprev.data[k];
+				float[] pk = p.data[k];
+				for (int i = from; i < to; i++) {
+					float h = xk[i] - qk[i];
+					float v = xk[i] + a1 * h + a2 * (h - hk[i]);
+					pk[i] = v > 0f ? v : 0f;
+					hk[i] = h;
+					qk[i] = xk[i];
+				}
+			}
+		});
+	}
+
+	/**
+	 * Updates x = p . u, stores the correction g = x - p in gprev, returns
+	 * the products <g, gprev> and <gprev, gprev> with the previous correction.
+	 */
+	private double[] update(final RealSignal x, final RealSignal p, final RealSignal u, final RealSignal gprev) {
+		return Parallel.reduce(x.nx, x.ny, x.nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] xk = x.data[k];
+				float[] pk = p.data[k];
+				float[] uk = u.data[k];
+				float[] gk = gprev.data[k];
+				double cross = 0.0;
+				double norm = 0.0;
+				for (int i = from; i < to; i++) {
+					float v = pk[i] * uk[i];
+					v = v > 0f ? v : 0f;
+					float g = v - pk[i];
+					cross += g * gk[i];
+					norm += gk[i] * gk[i];
+					gk[i] = g;
+					xk[i] = v;
+				}
+				return new double[] { cross, norm };
+			}
+		});
+	}
+
+	@Override
+	public String getName() {
+		return "Accelerated Richardson-Lucy";
+	}
+
+	@Override
+	public String[] getShortnames() {
+		return new String[] { "RLA" };
+	}
+
+	@Override
+	public int getComplexityNumberofFFT() {
+		return 1 + 4 * iterMax;
+	}
+
+	@Override
+	public double getMemoryFootprintRatio() {
+		return 13.0;
+	}
+
+	@Override
+	public boolean isRegularized() {
+		return false;
+	}
+
+	@Override
+	public boolean isStepControllable() {
+		return false;
+	}
+
+	@Override
+	public boolean isIterative() {
+		return true;
+	}
+
+	@Override
+	public boolean isWaveletsBased() {
+		return false;
+	}
+
+	@Override
+	public boolean isHermitianSpectrum() {
+		return true;
+	}
+
+	@Override
+	public Algorithm setParameters(double... params) {
+		if (params == null)
+			return this;
+		if (params.length > 0)
+			iterMax = (int) Math.round(params[0]);
+		if (params.length > 1)
+			order = Math.max(1, Math.min(2, (int) Math.round(params[1])));
+		return this;
+	}
+
+	@Override
+	public double[] getDefaultParameters() {
+		return new double[] { 10, 2 };
+	}
+
+	@Override
+	public double[] getParameters() {
+		return new double[] { iterMax, order };
+	}
+
+	@Override
+	public double getRegularizationFactor() {
+		return 0.0;
+	}
+
+	@Override
+	public double getStepFactor() {
+		return 0;
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution.algorithm;
+
+import javax.swing.JPanel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import bilib.component.GridPanel;
+import bilib.component.SpinnerRangeInteger;
+import deconvolution.Command;
+import deconvolutionlab.Config;
+
+public class RichardsonLucyAcceleratedPanel extends AlgorithmPanel implements ChangeListener {
+
+	private SpinnerRangeInteger			spnIter		= new SpinnerRangeInteger(10, 1, 99999, 1);
+	private SpinnerRangeInteger			spnOrder	= new SpinnerRangeInteger(2, 1, 2, 1);
+
+	private RichardsonLucyAccelerated	algo		= new RichardsonLucyAccelerated(10, 2);
+
+	@Override
+	public JPanel getPanelParameters() {
+		double[] params = algo.getDefaultParameters();
+		GridPanel pn = new GridPanel(false);
+		pn.place(1, 0, "<html><span \"nowrap\"><b>Iterations</b></span></html>");
+		pn.place(1, 1, "<html><span \"nowrap\"><i>N</i></span></html>");
+		pn.place(1, 2, spnIter);
+		pn.place(2, 0, "<html><span \"nowrap\"><b>Acceleration</b></span></html>");
+		pn.place(2, 1, "<html><span \"nowrap\">Max. order</span></html>");
+		pn.place(2, 2, spnOrder);
+		Config.register("Algorithm." + algo.getShortnames()[0], "iterations", spnIter, params[0]);
+		Config.register("Algorithm." + algo.getShortnames()[0], "order", spnOrder, params[1]);
+		spnIter.addChangeListener(this);
+		spnOrder.addChangeListener(this);
+		return pn;
+	}
+
+	@Override
+	public String getCommand() {
+		return spnIter.get() + " " + spnOrder.get();
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		Command.buildCommand();
+	}
+
+	@Override
+	public String getName() {
+		return algo.getName();
+	}
+
+	@Override
+	public String[] getShortnames() {
+		return algo.getShortnames();
+	}
+
+	@Override
+	public String getDocumentation() {
+		String s = "";
+		s += "<h1>" + getName() + "";
+		s += " [<span style=\"color:#FF3333;font-family:georgia\">RLA</span>]</h1>";
+		s += "<p>Richardson-Lucy accelerated by vector extrapolation.</p>";
+		s += "<p>Every iteration applies the RL update to a point extrapolated from the last estimates. ";
+		s += "The acceleration is estimated from the two last RL corrections, it costs no additional FFT.</p>";
+		s += "<p>The order of the extrapolation is adaptive up to the maximum order: ";
+		s += "second order is only used while the acceleration is stable.</p>";
+		s += "<p>It usually reaches the residu of RL in a fraction of the iterations.</p>";
+		s += "<p>Warning: the input image should have only positive values</p>";
+		s += "<p>Reference:</p>";
+		s += "<p>D.S.C. Biggs, M. Andrews, Acceleration of iterative image restoration algorithms, Applied Optics 36 (8), 1997.";
+		return s;
+	}
+}
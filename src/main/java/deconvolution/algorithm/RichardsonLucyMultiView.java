@@ -0,0 +1,335 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution.algorithm;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import deconvolutionlab.monitor.Monitors;
+import fft.AbstractFFT;
+import fft.PlanCache;
+import signal.ComplexSignal;
+import signal.HermitianSignal;
+import signal.Operations;
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+
+/**
+ * Multi-view Richardson-Lucy with ordered subsets. Every view has its own
+ * image and PSF, the views share the estimate x.
+ * 
+ * One iteration cycles through the subsets of views; every sub-iteration
+ * updates x with the mean RL correction of the views of the subset. The views
+ * of a subset are processed in parallel, the size of the subsets is given or
+ * derived from the free memory. With subsets of one view, one iteration is
+ * roughly worth as many RL iterations as there are views.
+ * 
+ * The views are given by setViews(), the first view is the image and the PSF
+ * of run(); all the views should have the same size.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class RichardsonLucyMultiView extends Algorithm implements Callable<RealSignal> {
+
+	private int						subset	= 1;
+	private ArrayList<RealSignal>	images	= new ArrayList<RealSignal>();
+	private ArrayList<RealSignal>	psfs	= new ArrayList<RealSignal>();
+
+	public RichardsonLucyMultiView(int iterMax, int subset) {
+		super();
+		this.iterMax = iterMax;
+		this.subset = Math.max(0, subset);
+	}
+
+	/**
+	 * Sets the views, the first one is processed by run().
+	 * 
+	 * @param images
+	 *            the images of the views
+	 * @param psfs
+	 *            the PSFs of the views, or one PSF for all the views
+	 */
+	public void setViews(ArrayList<RealSignal> images, ArrayList<RealSignal> psfs) {
+		this.images = images;
+		this.psfs = psfs;
+	}
+
+	public int getNumberOfViews() {
+		return Math.max(1, images.size());
+	}
+
+	@Override
+	public RealSignal call() throws Exception {
+		Monitors monitors = controller.getMonitors();
+		ArrayList<RealSignal> ys = new ArrayList<RealSignal>();
+		ArrayList<ComplexSignal> Hs = new ArrayList<ComplexSignal>();
+		ys.add(y);
+		Hs.add(transformPSF(true));
+		for (int v = 1; v < images.size(); v++) {
+			RealSignal image = images.get(v);
+			RealSignal psf = psfs.get(Math.min(v, psfs.size() - 1));
+			if (image.nx != images.get(0).nx || image.ny != images.get(0).ny || image.nz != images.get(0).nz) {
+				monitors.error("View " + (v + 1) + " is ignored, its size is not " + images.get(0).dimAsString());
+				continue;
+			}
+			RealSignal yv = controller.getPadding().pad(monitors, image);
+			controller.getApodization().apodize(monitors, yv);
+			RealSignal hv = psf.changeSizeAs(yv);
+			hv.normalize(controller.getNormalizationPSF());
+			hv.circular();
+			ys.add(yv);
+			Hs.add(fft.transformHermitian(hv));
+			SignalCollector.free(hv);
+		}
+		int views = ys.size();
+		int size = Math.min(views, subset > 0 ? subset : getAutomaticSubset(views));
+		monitors.log("OSRL: " + views + " views, subsets of " + size + " views");
+
+		// One FFT and one pair of buffers per view of a subset
+		AbstractFFT ffts[] = new AbstractFFT[size];
+		ComplexSignal Us[] = new ComplexSignal[size];
+		RealSignal us[] = new RealSignal[size];
+		ComplexSignal X = null;
+		ExecutorService executor = null;
+		try {
+			for (int w = 0; w < size; w++) {
+				ffts[w] = w == 0 ? fft : PlanCache.acquire(monitors, fft.getClass().getDeclaredConstructor().newInstance(), y.nx, y.ny, y.nz);
+				Us[w] = new HermitianSignal("OSRL-U" + w, y.nx, y.ny, y.nz);
+				us[w] = new RealSignal("OSRL-u" + w, y.nx, y.ny, y.nz);
+			}
+			X = size > 1 ? new HermitianSignal("OSRL-X", y.nx, y.ny, y.nz) : null;
+			executor = size > 1 ? Executors.newFixedThreadPool(size) : null;
+
+			RealSignal x = y.duplicate();
+			controller.resume(this, x);
+			while (!controller.ends(x)) {
+				for (int first = 0; first < views; first += size) {
+					int count = Math.min(size, views - first);
+					if (count == 1) {
+						ComplexSignal H = Hs.get(first);
+						fft.transform(x, Us[0]);
+						fft.inverse(Us[0], H, false, us[0]);
+						fft.transformRatio(ys.get(first), us[0], Us[0]);
+						fft.inverse(Us[0], H, true, us[0]);
+						Operations.multiplyPositive(x, us[0]);
+					}
+					else {
+						fft.transform(x, X);
+						ArrayList<Future<RealSignal>> futures = new ArrayList<Future<RealSignal>>();
+						for (int w = 0; w < count; w++)
+							futures.add(executor.submit(new Correction(ffts[w], X, Hs.get(first + w), ys.get(first + w), Us[w], us[w])));
+						for (Future<RealSignal> future : futures)
+							future.get();
+						multiplyMean(x, us, count);
+					}
+				}
+				if (controller.isCheckpoint())
+					controller.checkpoint(checkpoint().add("x", x));
+			}
+			return x;
+		}
+		finally {
+			// Released also if a correction fails, once no correction runs
+			if (executor != null) {
+				executor.shutdownNow();
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+			}
+			for (int w = 1; w < size; w++)
+				if (ffts[w] != null)
+					PlanCache.release(ffts[w]);
+			for (int w = 0; w < size; w++) {
+				if (Us[w] != null)
+					SignalCollector.free(Us[w]);
+				if (us[w] != null)
+					SignalCollector.free(us[w]);
+			}
+			if (X != null)
+				SignalCollector.free(X);
+			release(Hs.get(0));
+			for (int v = 1; v < views; v++) {
+				SignalCollector.free(ys.get(v));
+				SignalCollector.free(Hs.get(v));
+			}
+		}
+	}
+
+	/**
+	 * RL correction of one view, Hconj * (y / H x), from the spectrum X of
+	 * the estimate.
+	 */
+	private static class Correction implements Callable<RealSignal> {
+		private AbstractFFT		fft;
+		private ComplexSignal	X;
+		private ComplexSignal	H;
+		private RealSignal		y;
+		private ComplexSignal	U;
+		private RealSignal		u;
+
+		public Correction(AbstractFFT fft, ComplexSignal X, ComplexSignal H, RealSignal y, ComplexSignal U, RealSignal u) {
+			this.fft = fft;
+			this.X = X;
+			this.H = H;
+			this.y = y;
+			this.U = U;
+			this.u = u;
+		}
+
+		@Override
+		public RealSignal call() {
+			for (int k = 0; k < X.nz; k++)
+				System.arraycopy(X.data[k], 0, U.data[k], 0, X.data[k].length);
+			fft.inverse(U, H, false, u);
+			fft.transformRatio(y, u, U);
+			fft.inverse(U, H, true, u);
+			return u;
+		}
+	}
+
+	/**
+	 * x = x . mean(u), the mean of the corrections of the views of a subset.
+	 */
+	private void multiplyMean(final RealSignal x, final RealSignal us[], final int count) {
+		final float scale = 1f / count;
+		Parallel.run(x.nx, x.ny, x.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] s = x.data[k];
+				for (int i = from; i < to; i++) {
+					float c = 0f;
+					for (int w = 0; w < count; w++)
+						c += us[w].data[k][i];
+					float v = s[i] * c * scale;
+					s[i] = v > 0f ? v : 0f;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Number of views processed in parallel which fit in the half of the free
+	 * memory, a view needs about 4 volumes (buffers and FFT).
+	 */
+	private int getAutomaticSubset(int views) {
+		Runtime runtime = Runtime.getRuntime();
+		long free = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		long perView = 4L * 4L * y.nx * y.ny * y.nz;
+		int size = (int) Math.max(1, Math.min(views, free / 2 / perView));
+		return Math.min(size, Parallel.getAvailableProcessors());
+	}
+
+	@Override
+	public String getName() {
+		return "Ordered-Subsets Multi-View Richardson-Lucy";
+	}
+
+	@Override
+	public String[] getShortnames() {
+		return new String[] { "OSRL", "MVRL" };
+	}
+
+	@Override
+	public int getComplexityNumberofFFT() {
+		int views = getNumberOfViews();
+		int size = subset > 0 ? Math.min(subset, views) : 1;
+		int subsets = (views + size - 1) / size;
+		return views + iterMax * (subsets + 3 * views);
+	}
+
+	@Override
+	public double getMemoryFootprintRatio() {
+		return 9.0 + 2.0 * (getNumberOfViews() - 1);
+	}
+
+	@Override
+	public boolean isRegularized() {
+		return false;
+	}
+
+	@Override
+	public boolean isStepControllable() {
+		return false;
+	}
+
+	@Override
+	public boolean isIterative() {
+		return true;
+	}
+
+	@Override
+	public boolean isWaveletsBased() {
+		return false;
+	}
+
+	@Override
+	public boolean isHermitianSpectrum() {
+		return true;
+	}
+
+	@Override
+	public Algorithm setParameters(double... params) {
+		if (params == null)
+			return this;
+		if (params.length > 0)
+			iterMax = (int) Math.round(params[0]);
+		if (params.length > 1)
+			subset = Math.max(0, (int) Math.round(params[1]));
+		return this;
+	}
+
+	@Override
+	public double[] getDefaultParameters() {
+		return new double[] { 10, 1 };
+	}
+
+	@Override
+	public double[] getParameters() {
+		return new double[] { iterMax, subset };
+	}
+
+	@Override
+	public double getRegularizationFactor() {
+		return 0.0;
+	}
+
+	@Override
+	public double getStepFactor() {
+		return 0;
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package deconvolution.algorithm;
+
+import javax.swing.JPanel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import bilib.component.GridPanel;
+import bilib.component.SpinnerRangeInteger;
+import deconvolution.Command;
+import deconvolutionlab.Config;
+
+public class RichardsonLucyMultiViewPanel extends AlgorithmPanel implements ChangeListener {
+
+	private SpinnerRangeInteger			spnIter		= new SpinnerRangeInteger(10, 1, 99999, 1);
+	private SpinnerRangeInteger			spnSubset	= new SpinnerRangeInteger(1, 0, 999, 1);
+
+	private RichardsonLucyMultiView	algo		= new RichardsonLucyMultiView(10, 1);
+
+	@Override
+	public JPanel getPanelParameters() {
+		double[] params = algo.getDefaultParameters();
+		GridPanel pn = new GridPanel(false);
+		pn.place(1, 0, "<html><span \"nowrap\"><b>Iterations</b></span></html>");
+		pn.place(1, 1, "<html><span \"nowrap\"><i>N</i></span></html>");
+		pn.place(1, 2, spnIter);
+		pn.place(2, 0, "<html><span \"nowrap\"><b>Subsets</b></span></html>");
+		pn.place(2, 1, "<html><span \"nowrap\">Views per subset</span></html>");
+		pn.place(2, 2, spnSubset);
+		Config.register("Algorithm." + algo.getShortnames()[0], "iterations", spnIter, params[0]);
+		Config.register("Algorithm." + algo.getShortnames()[0], "subset", spnSubset, params[1]);
+		spnIter.addChangeListener(this);
+		spnSubset.addChangeListener(this);
+		return pn;
+	}
+
+	@Override
+	public String getCommand() {
+		return spnIter.get() + " " + spnSubset.get();
+	}
+
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		Command.buildCommand();
+	}
+
+	@Override
+	public String getName() {
+		return algo.getName();
+	}
+
+	@Override
+	public String[] getShortnames() {
+		return algo.getShortnames();
+	}
+
+	@Override
+	public String getDocumentation() {
+		String s = "";
+		s += "<h1>" + getName() + "";
+		s += " [<span style=\"color:#FF3333;font-family:georgia\">OSRL</span> | <span style=\"color:#FF3333;font-family:georgia\">MVRL</span>]</h1>";
+		s += "<p>Joint Richardson-Lucy deconvolution of several views, every view has its own PSF.</p>";
+		s += "<p>The views are given by several -image and -psf keywords in the command line, ";
+		s += "in the same order; one PSF can be shared by all the views.</p>";
+		s += "<p>Every iteration cycles through ordered subsets of views. The estimate is updated by ";
+		s += "the mean correction of the views of a subset, these views are processed in parallel. ";
+		s += "Subsets of one view need about as many times less iterations than there are views. ";
+		s += "0 chooses the size of the subsets from the free memory.</p>";
+		s += "<p>Warning: the views should be registered and have the same size</p>";
+		s += "<p>References:</p>";
+		s += "<p>H.M. Hudson, R.S. Larkin, Accelerated image reconstruction using ordered subsets of projection data, IEEE Trans. Med. Imaging 13 (4), 1994.";
+		s += "<p>S. Preibisch et al., Efficient Bayesian-based multiview deconvolution, Nature Methods 11, 2014.";
+		return s;
+	}
+}
@@ -34,9 +34,11 @@ package deconvolution.algorithm;
 import java.util.concurrent.Callable;
 
 import signal.ComplexSignal;
+import signal.HermitianSignal;
 import signal.Operations;
 import signal.RealSignal;
 import signal.SignalCollector;
+import signal.TotalVariation;
 
 public class RichardsonLucyTV extends Algorithm implements Callable<RealSignal> {
 
@@ -51,118 +53,30 @@ public class RichardsonLucyTV extends Algorithm implements Callable<RealSignal>
 	// x(k+1) = x(k) *. Hconj * ( y /. H x(k))
 	@Override
 	public RealSignal call() {
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal U = new ComplexSignal("RLTV-U",y.nx, y.ny, y.nz);
+		final ComplexSignal H = transformPSF(true);
+		ComplexSignal U = new HermitianSignal("RLTV-U", y.nx, y.ny, y.nz);
 		RealSignal x = y.duplicate();
-		RealSignal gx = y.duplicate();
-		RealSignal gy = y.duplicate();
-		RealSignal gz = y.duplicate();
-		RealSignal ggx = y.duplicate();
-		RealSignal ggy = y.duplicate();
-		RealSignal ggz = y.duplicate();
-
-		RealSignal u  = gx;	// resued memory
-		RealSignal p  = gy;	// resued memory
-		RealSignal tv = gz; // resued memory
+		RealSignal u = y.duplicate();
+		RealSignal tv = y.duplicate();
 
+		controller.resume(this, x);
 		while(!controller.ends(x)) {
-			gradientX(x, gx);
-			gradientY(x, gy);
-			gradientZ(x, gz);
-			normalize(gx, gy, gz);	
-			gradientX(gx, ggx);
-			gradientY(gy, ggy);
-			gradientZ(gz, ggz);
-			compute((float)lambda, ggx, ggy, ggz, tv);
+			TotalVariation.compute(x, tv);
 			fft.transform(x, U);
-			U.times(H);
-			fft.inverse(U, u);
-			Operations.divide(y, u, p);
-			fft.transform(p, U);
-			U.timesConjugate(H);
-			fft.inverse(U, u);
-			x.times(u); 
-			x.times(tv);
+			fft.inverse(U, H, false, u);
+			fft.transformRatio(y, u, U);
+			fft.inverse(U, H, true, u);
+			Operations.multiplyTV(x, u, tv, (float)lambda);
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", x));
 		}
-		SignalCollector.free(H);
+		release(H);
 		SignalCollector.free(U);
-		SignalCollector.free(ggx);
-		SignalCollector.free(ggy);
-		SignalCollector.free(ggz);
-		SignalCollector.free(tv);
 		SignalCollector.free(u);
-		SignalCollector.free(p);
+		SignalCollector.free(tv);
 		return x;
 	}
 	
-	private void compute(float lambda, RealSignal gx, RealSignal gy, RealSignal gz, RealSignal tv) {
-		int nxy = gx.nx * gy.ny;
-		for(int k=0; k<gx.nz; k++)
-		for(int i=0; i< nxy; i++)  {
-			double dx = gx.data[k][i];
-			double dy = gy.data[k][i];
-			double dz = gz.data[k][i];
-			tv.data[k][i] = (float)(1.0 / ( (dx+dy+dz) * lambda + 1.0));
-		}
-	}
-
-	public void gradientX(RealSignal signal, RealSignal output) {
-		int nx = signal.nx;
-		int ny = signal.ny;
-		int nz = signal.nz;
-		for(int k=0; k<nz; k++) 
-		for(int j=0; j<ny; j++) 
-		for(int i=0; i<nx-1; i++) {
-			int index = i + signal.nx*j;
-			output.data[k][index] = signal.data[k][index] - signal.data[k][index+1];
-		}
-	}
-
-	public void gradientY(RealSignal signal, RealSignal output) {
-		int nx = signal.nx;
-		int ny = signal.ny;
-		int nz = signal.nz;
-		for(int k=0; k<nz; k++) 
-		for(int j=0; j<ny-1; j++) 
-		for(int i=0; i<nx; i++) {
-			int index = i + signal.nx*j;
-			output.data[k][index] = signal.data[k][index] - signal.data[k][index+nx];
-		}
-	}
-	
-	public void gradientZ(RealSignal signal, RealSignal output) {
-		int nx = signal.nx;
-		int ny = signal.ny;
-		int nz = signal.nz;
-		for(int k=0; k<nz-1; k++) 
-		for(int j=0; j<ny; j++) 
-		for(int i=0; i<nx; i++) {
-			int index = i + signal.nx*j;
-			output.data[k][index] = signal.data[k][index] - signal.data[k+1][index];
-		}
-	}
-
-	public void normalize(RealSignal x, RealSignal y, RealSignal z) {
-		int nx = x.nx;
-		int ny = y.ny;
-		int nz = z.nz;
-		float e = (float) Operations.epsilon;
-		for(int k=0; k<nz; k++) 
-		for(int i=0; i<nx*ny; i++) {
-			double norm = Math.sqrt(x.data[k][i] * x.data[k][i] + y.data[k][i] * y.data[k][i] + z.data[k][i] * z.data[k][i]);
-			if (norm < e) {
-				x.data[k][i] = e;
-				y.data[k][i] = e;
-				z.data[k][i] = e;
-			}
-			else {
-				x.data[k][i] /= norm;
-				y.data[k][i] /= norm;
-				z.data[k][i] /= norm;
-			}
-		}
-	}
-
 	@Override
 	public int getComplexityNumberofFFT() {
 		return 1 + 7 * iterMax;
@@ -180,7 +94,7 @@ public class RichardsonLucyTV extends Algorithm implements Callable<RealSignal>
 
 	@Override
 	public double getMemoryFootprintRatio() {
-		return 13.0;
+		return 10.0;
 	}
 	
 	@Override
@@ -202,6 +116,11 @@ public class RichardsonLucyTV extends Algorithm implements Callable<RealSignal>
 	public boolean isWaveletsBased() {
 		return false;
 	}
+
+	@Override
+	public boolean isHermitianSpectrum() {
+		return true;
+	}
 	
 	@Override
 	public Algorithm setParameters(double... params) {
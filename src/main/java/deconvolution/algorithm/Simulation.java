@@ -56,11 +56,11 @@ public class Simulation extends Algorithm implements Callable<RealSignal> {
 	
 	@Override
 	public RealSignal call() {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
+		ComplexSignal Y = transformImage(false);
+		final ComplexSignal H = transformPSF(false);
 		ComplexSignal X = Operations.multiply(H, Y);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
+		release(Y);
+		release(H);
 		RealSignal x = fft.inverse(X);
 		SignalCollector.free(X);
 		gaussian(x, mean, stdev);
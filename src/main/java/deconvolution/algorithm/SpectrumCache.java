@@ -0,0 +1,179 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package deconvolution.algorithm;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import fft.AbstractFFT;
+import signal.Signal;
+import signal.SignalCollector;
+
+/**
+ * This class keeps the signals derived from one PSF (the prepared PSF h, its
+ * spectrum H and the spectra derived from H) to share them between the
+ * deconvolutions of several images with the same PSF.
+ * 
+ * A cache is bound to one PSF, the keys only describe the padded shape, the
+ * FFT and the parameters of the derived spectra. The cached signals are
+ * read-only, the algorithms release them with Algorithm.release() which keeps
+ * them alive.
+ * 
+ * A cache can also be bound to one image, for the runs of a sweep: the padded
+ * image y and its spectrum Y are then shared as well.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class SpectrumCache {
+
+	/**
+	 * Creates a signal which is not yet in the cache.
+	 */
+	public interface Factory {
+		public Signal create();
+	}
+
+	private HashMap<String, Signal>				signals	= new HashMap<String, Signal>();
+	private IdentityHashMap<Signal, Boolean>	owned	= new IdentityHashMap<Signal, Boolean>();
+	private long								hits	= 0;
+	private long								misses	= 0;
+	private boolean								sameImage;
+
+	/**
+	 * Creates a cache for the runs of the same PSF.
+	 */
+	public SpectrumCache() {
+		this(false);
+	}
+
+	/**
+	 * @param sameImage
+	 *            true if all the runs of the cache have the same image, the
+	 *            padded image and its spectrum are then shared
+	 */
+	public SpectrumCache(boolean sameImage) {
+		this.sameImage = sameImage;
+	}
+
+	public boolean isSameImage() {
+		return sameImage;
+	}
+
+	/**
+	 * Returns the signal of a key, created by the factory at the first
+	 * request. The creation is done under the lock of the cache, the
+	 * concurrent requests of the same key wait for it.
+	 * 
+	 * @param key
+	 *            the key, see key()
+	 * @param factory
+	 *            the factory of the signal
+	 * @return the cached signal
+	 */
+	public synchronized Signal get(String key, Factory factory) {
+		Signal signal = signals.get(key);
+		if (signal != null) {
+			hits++;
+			return signal;
+		}
+		misses++;
+		signal = factory.create();
+		signals.put(key, signal);
+		owned.put(signal, true);
+		return signal;
+	}
+
+	/**
+	 * @param signal
+	 *            a signal
+	 * @return true if the signal is held by the cache
+	 */
+	public synchronized boolean contains(Signal signal) {
+		return owned.containsKey(signal);
+	}
+
+	/**
+	 * Frees all the cached signals.
+	 */
+	public synchronized void clear() {
+		for (Signal signal : signals.values())
+			SignalCollector.free(signal);
+		signals.clear();
+		owned.clear();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized int size() {
+		return signals.size();
+	}
+
+	/**
+	 * Builds a key from the kind of signal, the padded shape, the FFT and the
+	 * parameters of the signal.
+	 * 
+	 * @param kind
+	 *            kind of signal, for example "H"
+	 * @param nx
+	 *            padded size in X
+	 * @param ny
+	 *            padded size in Y
+	 * @param nz
+	 *            padded size in Z
+	 * @param fft
+	 *            the FFT, or null for a signal in the spatial domain
+	 * @param params
+	 *            the parameters of the signal
+	 * @return the key
+	 */
+	public static String key(String kind, int nx, int ny, int nz, AbstractFFT fft, double... params) {
+		String key = kind + " " + nx + "x" + ny + "x" + nz;
+		if (fft != null)
+			key += " " + fft.getName();
+		for (double param : params)
+			key += " " + param;
+		return key;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return signals.size() + " signals, " + hits + " hits, " + misses + " misses";
+	}
+}
@@ -36,6 +36,7 @@ import java.util.concurrent.Callable;
 import signal.ComplexSignal;
 import signal.Operations;
 import signal.RealSignal;
+import signal.Signal;
 import signal.SignalCollector;
 import signal.factory.complex.ComplexSignalFactory;
 
@@ -53,23 +54,39 @@ public class TikhonovMiller extends Algorithm implements Callable<RealSignal> {
 
 	@Override
 	public RealSignal call() throws Exception {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal A = Operations.delta(gamma, H);
-		ComplexSignal L = ComplexSignalFactory.laplacian(Y.nx, Y.ny, Y.nz);
-		ComplexSignal L2 = Operations.multiplyConjugate(lambda*gamma, L, L);
-		SignalCollector.free(L);
-		A.minus(L2);
-		SignalCollector.free(L2);
+		ComplexSignal Y = transformImage(true);
+		final ComplexSignal H = transformPSF(true);
+		ComplexSignal A = spectrum("A-L2", new SpectrumCache.Factory() {
+			@Override
+			public Signal create() {
+				ComplexSignal A = Operations.delta(gamma, H);
+				ComplexSignal L = ComplexSignalFactory.laplacianHalf(y.nx, y.ny, y.nz);
+				ComplexSignal L2 = Operations.multiplyConjugate(lambda*gamma, L, L);
+				SignalCollector.free(L);
+				A.minus(L2);
+				SignalCollector.free(L2);
+				return A;
+			}
+		}, gamma, lambda);
 		ComplexSignal G = Operations.multiplyConjugate(gamma, H, Y);
-		SignalCollector.free(H);
-		SignalCollector.free(Y);
+		release(H);
+		release(Y);
 		ComplexSignal X = G.duplicate();
+		controller.resume(this, X);
+		// Without constraint nor estimate in between, the iterations are a
+		// geometric series computed in one pass
+		int skip = controller.getSkippableIterations();
+		if (skip > 0) {
+			Operations.multiplyAdd(X, A, G, skip);
+			controller.skip(skip);
+		}
 		while(!controller.ends(X)) {
 			X.times(A);
 			X.plus(G);
+			if (controller.isCheckpoint())
+				controller.checkpoint(checkpoint().add("x", X));
 		}
-		SignalCollector.free(A);
+		release(A);
 		SignalCollector.free(G);
 		RealSignal x = fft.inverse(X);
 		SignalCollector.free(X);
@@ -116,6 +133,11 @@ public class TikhonovMiller extends Algorithm implements Callable<RealSignal> {
 	public boolean isWaveletsBased() {
 		return false;
 	}
+
+	@Override
+	public boolean isHermitianSpectrum() {
+		return true;
+	}
 	
 	@Override
 	public Algorithm setParameters(double... params) {
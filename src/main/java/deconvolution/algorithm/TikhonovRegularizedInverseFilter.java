@@ -57,18 +57,20 @@ public class TikhonovRegularizedInverseFilter extends Algorithm implements Calla
 	}
 
 	public RealSignal runTextBook() {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal H2 = Operations.multiply(H, H);
+		ComplexSignal Y = transformImage(false);
+		final ComplexSignal H = transformPSF(false);
+		ComplexSignal H2 = Operations.multiplyConjugate(H, H);
 		ComplexSignal I = ComplexSignalFactory.identity(Y.nx, Y.ny, Y.nz);
 		I.times((float)lambda);
 		ComplexSignal FA = Operations.add(H2, I);
-		ComplexSignal FT = Operations.divideStabilized(H, FA);
+		ComplexSignal HC = Operations.conjugate(H);
+		ComplexSignal FT = Operations.divideStabilized(HC, FA);
 		ComplexSignal X = Operations.multiply(Y, FT);
 		RealSignal x = fft.inverse(X);
 		SignalCollector.free(FT);
-		SignalCollector.free(Y);
-		SignalCollector.free(H);
+		release(Y);
+		release(H);
+		SignalCollector.free(HC);
 		SignalCollector.free(FA);
 		SignalCollector.free(I);
 		SignalCollector.free(H2);
@@ -76,24 +78,27 @@ public class TikhonovRegularizedInverseFilter extends Algorithm implements Calla
 		return x;
 	}
 	
+	/**
+	 * Filters with the terms |H|^2 and conj(H) of the filter cache, computed
+	 * once per PSF.
+	 */
 	public RealSignal runOptimizedMemoryFootprint() {
-		ComplexSignal Y = fft.transform(y);
-		ComplexSignal H = fft.transform(h);
-		ComplexSignal X = filter(Y, H);
-		SignalCollector.free(H);
-		SignalCollector.free(Y);
-		RealSignal x = fft.inverse(X);
-		SignalCollector.free(X);
+		FilterCache.Terms terms = FilterCache.acquire(controller.getMonitors(), fft, h, FilterCache.Regularizer.IDENTITY);
+		RealSignal x = FilterCache.apply(fft, y, terms, lambda, Operations.epsilon);
+		FilterCache.release(terms);
 		return x;		
 	}
 	
-	private  ComplexSignal filter(ComplexSignal Y, ComplexSignal H) {
+	/**
+	 * @return the spectrum conj(H) Y / (|H|^2 + lambda)
+	 */
+	public ComplexSignal filter(ComplexSignal Y, ComplexSignal H) {
 		int nx = H.nx;
 		int ny = H.ny;
 		int nz = H.nz;
 		int nxy = nx * ny*2;
-		float ya, yb, ha, hb, fa, fb, mag, ta, tb;
-		float epsilon2 = (float)(Operations.epsilon * Operations.epsilon);
+		float ya, yb, ha, hb, d;
+		float epsilon = (float)Operations.epsilon;
 		ComplexSignal result = new ComplexSignal("TRIF", nx, ny, nz);
 		float l = (float)lambda;
 		for(int k=0; k<nz; k++)
@@ -102,13 +107,9 @@ public class TikhonovRegularizedInverseFilter extends Algorithm implements Calla
 			hb = H.data[k][i+1];
 			ya = Y.data[k][i];
 			yb = Y.data[k][i+1];
-			fa = ha*ha - hb*hb + l;
-			fb = 2f * ha * hb;
-			mag = fa*fa + fb*fb;
-			ta = (ha*fa + hb*fb) / (mag >= epsilon2 ? mag : epsilon2);
-			tb = (hb*fa - ha*fb) / (mag >= epsilon2 ? mag : epsilon2);
-			result.data[k][i] = ya*ta - yb*tb;
-			result.data[k][i+1] = ya*tb + ta*yb;
+			d = Math.max(epsilon, ha*ha + hb*hb + l);
+			result.data[k][i] = (ha*ya + hb*yb) / d;
+			result.data[k][i+1] = (ha*yb - hb*ya) / d;
 		}
 		return result;
 	}
@@ -130,7 +131,8 @@ public class TikhonovRegularizedInverseFilter extends Algorithm implements Calla
 
 	@Override
 	public double getMemoryFootprintRatio() {
-		return 8.0;
+		// y, h, Y, x and the cached h, H, |H|^2
+		return 9.0;
 	}
 
 	@Override
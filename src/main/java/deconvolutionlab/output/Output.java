@@ -60,6 +60,15 @@ public class Output {
 		SHOW, SAVE, SHOWSAVE;
 	}
 
+	/**
+	 * Back-pressure of the iterative outputs, executed in background. When
+	 * the queue of pending snapshots is full, DROP skips the snapshot and BLOCK
+	 * waits for a free place, stalling the algorithm.
+	 */
+	public enum Policy {
+		DROP, BLOCK
+	};
+
 	private ContainerImage	container	= null;
 	private int				ox			= 0;
 	private int				oy			= 0;
@@ -73,6 +82,7 @@ public class Output {
 	private View				view			= View.STACK;
 	private Imager.Type		type			= Imager.Type.FLOAT;
 	private Dynamic			dynamic		= Dynamic.INTACT;
+	private Policy			policy		= Policy.BLOCK;
 
 	private String			customPath	= "$";
 
@@ -105,6 +115,13 @@ public class Output {
 				found = true;
 			}
 
+			for (Policy b : Policy.values()) {
+				if (p.equals(b.name().toLowerCase())) {
+					policy = b;
+					found = true;
+				}
+			}
+
 			for (Dynamic d : Dynamic.values()) {
 				if (p.toLowerCase().equals(d.name().toLowerCase())) {
 					dynamic = d;
@@ -186,11 +203,25 @@ public class Output {
 		return this;
 	}
 
+	public Output drop() {
+		this.policy = Policy.DROP;
+		return this;
+	}
+
+	public Output block() {
+		this.policy = Policy.BLOCK;
+		return this;
+	}
+
 	public Output setSnapshot(int snapshot) {
 		this.snapshot = snapshot;
 		return this;
 	}
 
+	public int getSnapshot() {
+		return snapshot;
+	}
+
 	public Output origin(int ox, int oy, int oz) {
 		this.ox = ox;
 		this.oy = oy;
@@ -205,6 +236,10 @@ public class Output {
 		return iterations % snapshot == 0;
 	}
 
+	public Policy getPolicy() {
+		return policy;
+	}
+
 	public View getView() {
 		return view;
 	}
@@ -236,7 +271,7 @@ public class Output {
 			o = " (" + ox + "," + oy + "," + oz + ")";
 		String sa = save ? "\u2612" : "\u2610";
 		String sh = show ? "\u2612" : "\u2610";
-		String fr = snapshot > 0 ? " @" + snapshot : "";
+		String fr = snapshot > 0 ? " @" + snapshot + (policy == Policy.DROP ? " drop" : "") : "";
 		return new String[] { view.name().toLowerCase(), fr, name, d, t, o, sh, sa, "\u232B" };
 	}
 	
@@ -246,6 +281,10 @@ public class Output {
 		execute(monitors, signal, controller, false, 0);
 	}
 
+	/**
+	 * Executes the snapshot of the iteration iter. It is called by the
+	 * controller from a background thread on a copy of the estimate.
+	 */
 	public void executeIterative(Monitors monitors, RealSignal signal, Controller controller, int iter) {
 		if (signal == null)
 			return;
@@ -259,8 +298,8 @@ public class Output {
 				return;
 
 		if (controller != null && live) {
-			if (controller.getIterations() > 0) {
-				title += "@" + controller.getIterations();
+			if (iter > 0) {
+				title += "@" + iter;
 			}
 		}
 		
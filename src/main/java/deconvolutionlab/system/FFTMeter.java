@@ -32,6 +32,8 @@
 package deconvolutionlab.system;
 
 import java.awt.Graphics;
+
+import bilib.tools.NumFormat;
 import fft.FFT;
 
 public class FFTMeter extends AbstractMeter {
@@ -44,7 +46,10 @@ public class FFTMeter extends AbstractMeter {
 	public void paintComponent(Graphics g) {
 	    super.paintComponent(g);
 	    g.setColor(colorText);
-	    g.drawString(prefix + FFT.getFastestFFT().getLibraryName(), 10, 17);
+	    String copy = "";
+	    if (FFT.getTimingCount() > 0)
+	    	copy = " (copy " + NumFormat.time(FFT.getCopyTimePerFFT()) + "/fft)";
+	    g.drawString(prefix + FFT.getFastestFFT().getLibraryName() + copy, 10, 17);
 	}
 
 	@Override
@@ -59,5 +64,10 @@ public class FFTMeter extends AbstractMeter {
 
 	@Override
 	public void setDetail() {
+		int i = 0;
+		add(i++, new String[] { "FFT", "Library", FFT.getFastestFFT().getLibraryName() });
+		add(i++, new String[] { "FFT", "Number of FFT", "" + FFT.getTimingCount() });
+		add(i++, new String[] { "FFT", "Time per FFT", NumFormat.time(FFT.getTimePerFFT()) });
+		add(i++, new String[] { "FFT", "Copy time per FFT", NumFormat.time(FFT.getCopyTimePerFFT()) });
 	}
 }
\ No newline at end of file
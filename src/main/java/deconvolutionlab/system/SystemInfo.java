@@ -53,10 +53,12 @@ import javax.swing.JPanel;
 
 import signal.SignalCollector;
 import bilib.tools.NumFormat;
+import deconvolution.algorithm.FilterCache;
 import deconvolutionlab.Config;
 import deconvolutionlab.Constants;
 import deconvolutionlab.Lab;
 import fft.FFTPanel;
+import fft.PlanCache;
 
 public class SystemInfo extends JDialog implements WindowListener, ActionListener, MouseListener {
 
@@ -189,6 +191,9 @@ public class SystemInfo extends JDialog implements WindowListener, ActionListene
 		}
 
 		if (e.getSource() == bnClear) {
+			// The cached plans and filters hold signals, they are emptied first
+			FilterCache.clear();
+			PlanCache.clear();
 			SignalCollector.clear();
 		}
 
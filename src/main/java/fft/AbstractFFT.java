@@ -33,6 +33,8 @@ package fft;
 
 import deconvolutionlab.monitor.Monitors;
 import signal.ComplexSignal;
+import signal.HermitianSignal;
+import signal.Operations;
 import signal.RealSignal;
 
 public abstract class AbstractFFT {
@@ -42,6 +44,15 @@ public abstract class AbstractFFT {
 	protected int	nz = 2;
 	protected Separability sep;
 	
+	/** Time spent to copy the data in and out of the FFT buffers, in ns. */
+	protected long	chronoCopy = 0;
+	
+	/** Planning mode of the last initialization. */
+	protected PlanCache.Mode planning = PlanCache.Mode.ESTIMATE;
+	
+	/** Full spectrum used by the default half-spectrum transforms. */
+	private ComplexSignal full = null;
+	
 	public AbstractFFT(Separability sep) {
 		this.sep = sep;
 	}
@@ -50,10 +61,16 @@ public abstract class AbstractFFT {
 		return sep;
 	}
 	
+	public PlanCache.Mode getPlanning() {
+		return planning;
+	}
+	
 	public void init(Monitors monitors, int nx, int ny, int nz) {
 		this.nx = nx;
 		this.ny = ny;
 		this.nz = nz;
+		this.full = null;
+		this.planning = PlanCache.getMode();
 		monitors.log(getName() + " initialized for [" + nx + "x" + ny + "x" + nz + "]");
 	}
 	
@@ -63,28 +80,151 @@ public abstract class AbstractFFT {
 	public ComplexSignal transform(RealSignal x, ComplexSignal XAllocated) {
 		if (XAllocated == null)
 			XAllocated = new ComplexSignal("fft(" + x.name + ")", nx, ny, nz);
-		transformInternal(x, XAllocated);
+		long chrono = System.nanoTime();
+		chronoCopy = 0;
+		if (XAllocated instanceof HermitianSignal)
+			transformHermitianInternal(x, (HermitianSignal) XAllocated);
+		else
+			transformInternal(x, XAllocated);
+		FFT.addTiming(System.nanoTime() - chrono, chronoCopy);
 		return XAllocated;
 	}
 
 	public ComplexSignal transform(RealSignal x) {
-		ComplexSignal X = new ComplexSignal("fft(" + x.name + ")", nx, ny, nz);
-		transformInternal(x, X);
-		return X;
+		return transform(x, null);
 	}
 
 	public RealSignal inverse(ComplexSignal X, RealSignal xAllocated) {
 		if (xAllocated == null)
 			xAllocated = new RealSignal("ifft(" + X.name + ")", nx, ny, nz);
-		inverseInternal(X, xAllocated);
+		long chrono = System.nanoTime();
+		chronoCopy = 0;
+		if (X instanceof HermitianSignal)
+			inverseHermitianInternal((HermitianSignal) X, xAllocated);
+		else
+			inverseInternal(X, xAllocated);
+		FFT.addTiming(System.nanoTime() - chrono, chronoCopy);
 		return xAllocated;
 	}
+	
 	public RealSignal inverse(ComplexSignal X) {
-		RealSignal x = new RealSignal("ifft(" + X.name + ")", nx, ny, nz);
-		inverseInternal(X, x);
-		return x;
+		return inverse(X, null);
 	}
 	
+	/**
+	 * Computes the Hermitian half-spectrum of a real signal.
+	 * 
+	 * @param x
+	 *            real signal
+	 * @param XAllocated
+	 *            half-spectrum, allocated if it is null
+	 * @return the half-spectrum of size [nx/2+1, ny, nz]
+	 */
+	public HermitianSignal transformHermitian(RealSignal x, HermitianSignal XAllocated) {
+		if (XAllocated == null)
+			XAllocated = new HermitianSignal("fft(" + x.name + ")", nx, ny, nz);
+		long chrono = System.nanoTime();
+		chronoCopy = 0;
+		transformHermitianInternal(x, XAllocated);
+		FFT.addTiming(System.nanoTime() - chrono, chronoCopy);
+		return XAllocated;
+	}
+
+	public HermitianSignal transformHermitian(RealSignal x) {
+		return transformHermitian(x, null);
+	}
+
+	/**
+	 * Default implementation, through a full spectrum. The libraries override
+	 * it to produce the half-spectrum directly.
+	 */
+	protected void transformHermitianInternal(RealSignal x, HermitianSignal X) {
+		if (full == null)
+			full = new ComplexSignal("full", nx, ny, nz);
+		transformInternal(x, full);
+		long chrono = System.nanoTime();
+		X.crop(full);
+		chronoCopy += System.nanoTime() - chrono;
+	}
+
+	/**
+	 * Default implementation, through a full spectrum. The libraries override
+	 * it to use the half-spectrum directly.
+	 */
+	protected void inverseHermitianInternal(HermitianSignal X, RealSignal x) {
+		if (full == null)
+			full = new ComplexSignal("full", nx, ny, nz);
+		long chrono = System.nanoTime();
+		X.expand(full);
+		chronoCopy += System.nanoTime() - chrono;
+		inverseInternal(full, x);
+	}
+
+	/**
+	 * Computes the inverse transform of the product X.H, or X.conj(H), in one
+	 * step. The libraries multiply the spectra while they fill their buffer.
+	 * 
+	 * @param X
+	 *            spectrum, it may be overwritten
+	 * @param H
+	 *            spectrum of the same size than X
+	 * @param conjugate
+	 *            true to multiply by the conjugate of H
+	 * @param xAllocated
+	 *            real signal, allocated if it is null
+	 * @return the real signal
+	 */
+	public RealSignal inverse(ComplexSignal X, ComplexSignal H, boolean conjugate, RealSignal xAllocated) {
+		if (xAllocated == null)
+			xAllocated = new RealSignal("ifft(" + X.name + ")", nx, ny, nz);
+		long chrono = System.nanoTime();
+		chronoCopy = 0;
+		inverseInternal(X, H, conjugate, xAllocated);
+		FFT.addTiming(System.nanoTime() - chrono, chronoCopy);
+		return xAllocated;
+	}
+
+	protected void inverseInternal(ComplexSignal X, ComplexSignal H, boolean conjugate, RealSignal x) {
+		if (conjugate)
+			X.timesConjugate(H);
+		else
+			X.times(H);
+		if (X instanceof HermitianSignal)
+			inverseHermitianInternal((HermitianSignal) X, x);
+		else
+			inverseInternal(X, x);
+	}
+
+	/**
+	 * Computes the transform of the ratio numerator / denominator in one step.
+	 * The libraries compute the ratio while they fill their buffer.
+	 * 
+	 * @param numerator
+	 *            real signal
+	 * @param denominator
+	 *            real signal, it may be overwritten
+	 * @param XAllocated
+	 *            spectrum, full or half, allocated if it is null
+	 * @return the spectrum
+	 */
+	public ComplexSignal transformRatio(RealSignal numerator, RealSignal denominator, ComplexSignal XAllocated) {
+		if (XAllocated == null)
+			XAllocated = new ComplexSignal("fft(" + numerator.name + ")", nx, ny, nz);
+		long chrono = System.nanoTime();
+		chronoCopy = 0;
+		transformRatioInternal(numerator, denominator, XAllocated);
+		FFT.addTiming(System.nanoTime() - chrono, chronoCopy);
+		return XAllocated;
+	}
+
+	protected void transformRatioInternal(RealSignal numerator, RealSignal denominator, ComplexSignal X) {
+		Operations.divide(numerator, denominator, denominator);
+		if (X instanceof HermitianSignal)
+			transformHermitianInternal(denominator, (HermitianSignal) X);
+		else
+			transformInternal(denominator, X);
+	}
+
 	public abstract String getName();
 	public abstract boolean isMultithreadable();
 
@@ -0,0 +1,296 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fft;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+
+import deconvolutionlab.Config;
+import deconvolutionlab.monitor.Monitors;
+import signal.ComplexSignal;
+import signal.HermitianSignal;
+import signal.RealSignal;
+import signal.SignalCollector;
+import signal.padding.AbstractPadding;
+import signal.padding.Padding;
+import signal.padding.TunedPadding;
+
+/**
+ * This class selects the fastest combination of FFT (library and
+ * separability) and padded size by timing a forward and an inverse transform
+ * of every candidate. A slightly larger size with a faster FFT often beats
+ * the minimal size.
+ * 
+ * The winners are stored in a tuning database, a properties file next to the
+ * configuration file, so the benchmark runs once per image size and
+ * algorithm.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+public class Autotuner {
+
+	/** Number of timed transforms for each candidate. */
+	private static int			trials			= 3;
+
+	/** Candidates larger than this ratio of the image size are ignored. */
+	private static double		maxExtension	= 1.5;
+
+	private static Properties	database		= null;
+
+	/**
+	 * Winner of the autotuning.
+	 */
+	public static class Tuning {
+		public String	fft;
+		public int		lx, ly, lz;
+		public double	time;
+
+		public Tuning(String fft, int lx, int ly, int lz, double time) {
+			this.fft = fft;
+			this.lx = lx;
+			this.ly = ly;
+			this.lz = lz;
+			this.time = time;
+		}
+
+		public AbstractFFT createFFT() {
+			AbstractFFT proto = getFFTByName(fft);
+			try {
+				return proto.getClass().getDeclaredConstructor().newInstance();
+			}
+			catch (Exception ex) {
+				return FFT.getFastestFFT().getDefaultFFT();
+			}
+		}
+
+		public Padding createPadding() {
+			return new Padding(new TunedPadding(lx), new TunedPadding(ly), new TunedPadding(lz), 0, 0, 0);
+		}
+
+		@Override
+		public String toString() {
+			return fft + " on [" + lx + "x" + ly + "x" + lz + "] " + String.format("%.2f", time * 1e-6) + " ms";
+		}
+	}
+
+	/**
+	 * Returns the fastest combination for an image and an algorithm, from the
+	 * tuning database or by a benchmark.
+	 * 
+	 * @param monitors
+	 *            monitors
+	 * @param algorithm
+	 *            shortname of the algorithm
+	 * @param nx
+	 *            size of the image in X
+	 * @param ny
+	 *            size of the image in Y
+	 * @param nz
+	 *            size of the image in Z
+	 * @param fixedFFT
+	 *            FFT to keep, or null to tune it
+	 * @param fixedPadding
+	 *            padding to keep, or null to tune it
+	 * @param hermitian
+	 *            true if the algorithm uses the half-spectrum transforms
+	 * @return the winner
+	 */
+	public static Tuning tune(Monitors monitors, String algorithm, int nx, int ny, int nz, AbstractFFT fixedFFT, Padding fixedPadding, boolean hermitian) {
+		ArrayList<AbstractFFT> ffts = new ArrayList<AbstractFFT>();
+		if (fixedFFT == null) {
+			for (AbstractFFTLibrary library : FFT.getInstalledLibraries())
+				ffts.addAll(library.getFFTs());
+		}
+		else
+			ffts.add(fixedFFT);
+
+		ArrayList<int[]> sizes = new ArrayList<int[]>();
+		if (fixedPadding == null)
+			sizes = getCandidateSizes(nx, ny, nz);
+		else
+			sizes.add(fixedPadding.pad(nx, ny, nz));
+
+		String key = algorithm + " " + nx + "x" + ny + "x" + nz + " " + (hermitian ? "half" : "full") + " " + (fixedFFT == null ? "auto" : fixedFFT.getName()) + " " + (fixedPadding == null ? "auto" : sizes.get(0)[0] + "x" + sizes.get(0)[1] + "x" + sizes.get(0)[2]);
+		key = key.replace(' ', '_');
+
+		Tuning stored = load(key);
+		if (stored != null && getFFTByName(stored.fft) != null) {
+			monitors.log("Autotuning: " + stored.toString() + " (tuning database)");
+			return stored;
+		}
+
+		Tuning best = null;
+		for (int[] size : sizes)
+			for (AbstractFFT proto : ffts) {
+				double time = benchmark(proto, size[0], size[1], size[2], hermitian, best == null ? Double.MAX_VALUE : best.time);
+				monitors.log("Autotuning: " + proto.getName() + " on [" + size[0] + "x" + size[1] + "x" + size[2] + "] " + (time == Double.MAX_VALUE ? "skipped" : String.format("%.2f ms", time * 1e-6)));
+				if (best == null || time < best.time)
+					best = new Tuning(proto.getName(), size[0], size[1], size[2], time);
+			}
+		FFT.resetTiming();
+		monitors.log("Autotuning: " + best.toString());
+		store(key, best);
+		return best;
+	}
+
+	/**
+	 * Times a forward and an inverse transform. The candidate is abandoned as
+	 * soon as its warm-up is twice slower than the best time.
+	 * 
+	 * @return the best time in ns, or Double.MAX_VALUE if the candidate is
+	 *         abandoned
+	 */
+	private static double benchmark(AbstractFFT proto, int lx, int ly, int lz, boolean hermitian, double bestTime) {
+		AbstractFFT fft;
+		try {
+			fft = proto.getClass().getDeclaredConstructor().newInstance();
+		}
+		catch (Exception ex) {
+			return Double.MAX_VALUE;
+		}
+		fft.init(new Monitors(), lx, ly, lz);
+		RealSignal x = new RealSignal("tuning", lx, ly, lz);
+		Random rand = new Random(1);
+		for (int k = 0; k < lz; k++)
+			for (int i = 0; i < lx * ly; i++)
+				x.data[k][i] = rand.nextFloat();
+		ComplexSignal X = null;
+		double best = Double.MAX_VALUE;
+		for (int t = 0; t <= trials; t++) {
+			long chrono = System.nanoTime();
+			X = hermitian ? fft.transformHermitian(x, (HermitianSignal) X) : fft.transform(x, X);
+			fft.inverse(X, x);
+			double time = System.nanoTime() - chrono;
+			if (t == 0) {
+				// Warm-up
+				if (time > 2 * bestTime)
+					break;
+				continue;
+			}
+			best = Math.min(best, time);
+		}
+		SignalCollector.free(x);
+		SignalCollector.free(X);
+		return best;
+	}
+
+	/**
+	 * Returns the padded sizes of the image given by the padding rules, in
+	 * XY and in Z, below the maximal extension.
+	 */
+	private static ArrayList<int[]> getCandidateSizes(int nx, int ny, int nz) {
+		ArrayList<int[]> sizes = new ArrayList<int[]>();
+		for (AbstractPadding padXY : Padding.getPaddings())
+			for (AbstractPadding padZ : Padding.getPaddings()) {
+				int[] size = new Padding(padXY, padXY, padZ, 0, 0, 0).pad(nx, ny, nz);
+				if (size[0] > maxExtension * nx || size[1] > maxExtension * ny || size[2] > maxExtension * nz)
+					continue;
+				boolean exists = false;
+				for (int[] s : sizes)
+					if (s[0] == size[0] && s[1] == size[1] && s[2] == size[2])
+						exists = true;
+				if (!exists)
+					sizes.add(size);
+			}
+		return sizes;
+	}
+
+	private static AbstractFFT getFFTByName(String name) {
+		for (AbstractFFTLibrary library : FFT.getInstalledLibraries())
+			for (AbstractFFT fft : library.getFFTs())
+				if (fft.getName().equals(name))
+					return fft;
+		return null;
+	}
+
+	public static void setTrials(int trials) {
+		Autotuner.trials = Math.max(1, trials);
+	}
+
+	public static void setMaxExtension(double maxExtension) {
+		Autotuner.maxExtension = Math.max(1.0, maxExtension);
+	}
+
+	public static String getDatabaseFilename() {
+		String config = Config.getFilename();
+		String dir = config == null ? System.getProperty("user.home") : new File(config).getAbsoluteFile().getParent();
+		return dir + File.separator + "DeconvolutionLab2.tuning";
+	}
+
+	public static synchronized void clearDatabase() {
+		database = new Properties();
+		new File(getDatabaseFilename()).delete();
+	}
+
+	private static synchronized Tuning load(String key) {
+		if (database == null) {
+			database = new Properties();
+			try {
+				FileInputStream in = new FileInputStream(getDatabaseFilename());
+				database.load(in);
+				in.close();
+			}
+			catch (IOException ex) {
+			}
+		}
+		String value = database.getProperty(key);
+		if (value == null)
+			return null;
+		String[] parts = value.split(";");
+		if (parts.length != 5)
+			return null;
+		try {
+			return new Tuning(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Double.parseDouble(parts[4]));
+		}
+		catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	private static synchronized void store(String key, Tuning tuning) {
+		database.setProperty(key, tuning.fft + ";" + tuning.lx + ";" + tuning.ly + ";" + tuning.lz + ";" + tuning.time);
+		try {
+			FileOutputStream out = new FileOutputStream(getDatabaseFilename());
+			database.store(out, "DeconvolutionLab2 FFT tuning");
+			out.close();
+		}
+		catch (IOException ex) {
+		}
+	}
+}
@@ -46,6 +46,10 @@ public class FFT {
 	private static ArrayList<AbstractFFTLibrary>	libraries	= new ArrayList<AbstractFFTLibrary>();
 	private static ArrayList<AbstractFFTLibrary>	registers		= new ArrayList<AbstractFFTLibrary>();
 
+	private static long	timingCount	= 0;
+	private static long	timingTotal	= 0;
+	private static long	timingCopy	= 0;
+
 	static {
 		Monitors monitors = Monitors.createDefaultMonitor();
 		AcademicLibrary academic = new AcademicLibrary();
@@ -152,4 +156,36 @@ public class FFT {
 		return "Unknown FFT library";
 	}
 
+	/**
+	 * Accumulates the timing of one FFT.
+	 * 
+	 * @param total
+	 *            total time of the FFT in ns
+	 * @param copy
+	 *            time spent to copy the data in and out of the FFT buffers in
+	 *            ns
+	 */
+	public static synchronized void addTiming(long total, long copy) {
+		timingCount++;
+		timingTotal += total;
+		timingCopy += copy;
+	}
+
+	public static synchronized void resetTiming() {
+		timingCount = 0;
+		timingTotal = 0;
+		timingCopy = 0;
+	}
+
+	public static long getTimingCount() {
+		return timingCount;
+	}
+
+	public static double getTimePerFFT() {
+		return timingCount == 0 ? 0 : (double) timingTotal / timingCount;
+	}
+
+	public static double getCopyTimePerFFT() {
+		return timingCount == 0 ? 0 : (double) timingCopy / timingCount;
+	}
 }
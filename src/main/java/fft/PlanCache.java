@@ -0,0 +1,205 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fft;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Set;
+
+import deconvolutionlab.monitor.Monitors;
+
+/**
+ * This class keeps the initialized FFTs, with their plans, twiddle factors
+ * and buffers, to reuse them in the next runs on a volume of the same shape.
+ * The key is the name of the FFT (library and separability), the size and the
+ * planning mode.
+ * 
+ * An FFT is leased by acquire() for the time of a run and given back by
+ * release(), it is never shared by two runs at the same time. An FFT given
+ * to acquire() which is leased by another run is not initialized again, a new
+ * instance of its class is used instead; an FFT which is in the cache under
+ * another shape is removed from the cache before its initialization.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+public class PlanCache {
+
+	/**
+	 * Planning effort. The PATIENT mode is used by the libraries which have
+	 * it, the others fall back to MEASURE.
+	 */
+	public enum Mode {
+		ESTIMATE, MEASURE, PATIENT;
+
+		public static Mode getByName(String name) {
+			String n = name.trim().toLowerCase();
+			if (n.startsWith("mea"))
+				return MEASURE;
+			if (n.startsWith("pat"))
+				return PATIENT;
+			return ESTIMATE;
+		}
+	}
+
+	private static Mode				mode		= Mode.ESTIMATE;
+	private static int				capacity	= 4;
+	private static int				hits		= 0;
+	private static int				misses		= 0;
+	private static LinkedList<Entry>	entries		= new LinkedList<Entry>();
+	private static Set<AbstractFFT>		leased		= Collections.newSetFromMap(new IdentityHashMap<AbstractFFT, Boolean>());
+
+	/**
+	 * Returns an FFT initialized for the size [nx, ny, nz], the one of the
+	 * cache if it exists or the given FFT after its initialization.
+	 * 
+	 * @param monitors
+	 *            monitors
+	 * @param fft
+	 *            FFT to initialize if the cache has not this shape
+	 * @return the FFT ready to be used
+	 */
+	public static AbstractFFT acquire(Monitors monitors, AbstractFFT fft, int nx, int ny, int nz) {
+		String key = getKey(fft, nx, ny, nz, mode);
+		synchronized (PlanCache.class) {
+			for (Iterator<Entry> it = entries.iterator(); it.hasNext();) {
+				Entry entry = it.next();
+				if (entry.key.equals(key)) {
+					it.remove();
+					leased.add(entry.fft);
+					hits++;
+					monitors.log(fft.getName() + " reused from the plan cache [" + nx + "x" + ny + "x" + nz + "]");
+					return entry.fft;
+				}
+			}
+			misses++;
+			// The FFT is initialized for a new shape, its entry would be stale
+			remove(fft);
+			if (leased.contains(fft))
+				fft = newInstance(monitors, fft);
+			leased.add(fft);
+		}
+		fft.init(monitors, nx, ny, nz);
+		return fft;
+	}
+
+	/**
+	 * Gives back an FFT at the end of a run. The least recently used FFTs are
+	 * dropped above the capacity.
+	 * 
+	 * @param fft
+	 *            FFT initialized by acquire()
+	 */
+	public static synchronized void release(AbstractFFT fft) {
+		if (fft == null)
+			return;
+		leased.remove(fft);
+		if (capacity <= 0)
+			return;
+		// Keyed by its current shape, an older entry of the instance is dropped
+		remove(fft);
+		String key = getKey(fft, fft.getSizeX(), fft.getSizeY(), fft.getSizeZ(), fft.getPlanning());
+		entries.addFirst(new Entry(key, fft));
+		while (entries.size() > capacity)
+			entries.removeLast();
+	}
+
+	public static synchronized void clear() {
+		entries.clear();
+		leased.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	public static Mode getMode() {
+		return mode;
+	}
+
+	public static void setMode(Mode mode) {
+		PlanCache.mode = mode;
+	}
+
+	public static int getCapacity() {
+		return capacity;
+	}
+
+	public static synchronized void setCapacity(int capacity) {
+		PlanCache.capacity = Math.max(0, capacity);
+		while (entries.size() > PlanCache.capacity)
+			entries.removeLast();
+	}
+
+	public static int getHits() {
+		return hits;
+	}
+
+	public static int getMisses() {
+		return misses;
+	}
+
+	public static synchronized int getSize() {
+		return entries.size();
+	}
+
+	private static void remove(AbstractFFT fft) {
+		for (Iterator<Entry> it = entries.iterator(); it.hasNext();)
+			if (it.next().fft == fft)
+				it.remove();
+	}
+
+	private static AbstractFFT newInstance(Monitors monitors, AbstractFFT fft) {
+		try {
+			return fft.getClass().getDeclaredConstructor().newInstance();
+		}
+		catch (Exception ex) {
+			monitors.error("Plan cache: " + fft.getName() + " is leased and can not be instantiated");
+			return fft;
+		}
+	}
+
+	private static String getKey(AbstractFFT fft, int nx, int ny, int nz, Mode planning) {
+		return fft.getName() + " " + fft.getSeparability().name() + " " + nx + "x" + ny + "x" + nz + " " + planning.name();
+	}
+
+	private static class Entry {
+		private String		key;
+		private AbstractFFT	fft;
+
+		public Entry(String key, AbstractFFT fft) {
+			this.key = key;
+			this.fft = fft;
+		}
+	}
+}
@@ -31,50 +31,14 @@
 
 package fft.academic;
 
-import deconvolutionlab.monitor.Monitors;
-import fft.AbstractFFT;
-import fft.Separability;
-import signal.ComplexSignal;
-import signal.RealSignal;
-
-public class Academic extends AbstractFFT {
-
-	private AcademicFFT fftXYZ;
-
-	public Academic() {
-		super(Separability.XYZ);
-	}
-	
-	@Override
-	public void init(Monitors monitors, int nx, int ny, int nz) {					
-		super.init(monitors, nx, ny, nz);
-		fftXYZ = new AcademicFFT(nx, ny, nz, 0, 0, 0);
-	}
+/**
+ * Default FFT of the Academic library, it is the 3D transform.
+ */
+public class Academic extends AcademicFFT_XYZ {
 
-	@Override
-	public void transformInternal(RealSignal x, ComplexSignal X) {
-		float imag[] = new float[nx * ny * nz];
-		float real[] = x.getXYZ();
-		fftXYZ.directTransform(real, imag, null, null, AcademicFFT.InputDataType.REALINPUT);
-		X.setXYZ(real, imag);
-	}
-	
-	@Override
-	public void inverseInternal(ComplexSignal X, RealSignal x) {
-		float real[] = X.getRealXYZ();
-		float imag[] = X.getImagXYZ();
-		fftXYZ.inverseTransform(real, imag, null, null);
-		x.setXYZ(real);
-	}
-	
 	@Override
 	public String getName() {
 		return "AcademicFFT";
 	}
-	
-	@Override
-	public boolean isMultithreadable() {
-		return true;
-	}
 
 }
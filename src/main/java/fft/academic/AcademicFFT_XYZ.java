@@ -62,15 +62,24 @@ package fft.academic;
  * DL2. If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.Arrays;
+
 import deconvolutionlab.monitor.Monitors;
 import fft.AbstractFFT;
 import fft.Separability;
 import signal.ComplexSignal;
+import signal.Parallel;
 import signal.RealSignal;
 
 public class AcademicFFT_XYZ extends AbstractFFT {
 
-	private AcademicFFT fftXYZ;
+	private AcademicFFT	fftXYZ;
+
+	// Scratch buffers kept between the calls
+	private float[]		real;
+	private float[]		imag;
+	private float[]		bufferReal;
+	private float[]		bufferImag;
 
 	public AcademicFFT_XYZ() {
 		super(Separability.XYZ);
@@ -80,21 +89,45 @@ public class AcademicFFT_XYZ extends AbstractFFT {
 	public void init(Monitors monitors, int nx, int ny, int nz) {					
 		super.init(monitors, nx, ny, nz);
 		fftXYZ = new AcademicFFT(nx, ny, nz, 0, 0, 0);
+		int n = nx * ny * nz;
+		real = new float[n];
+		imag = new float[n];
+		bufferReal = new float[n];
+		bufferImag = new float[n];
 	}
 
 	@Override
-	public void transformInternal(RealSignal x, ComplexSignal X) {
-		float imag[] = new float[nx * ny * nz];
-		float real[] = x.getXYZ();
-		fftXYZ.directTransform(real, imag, null, null, AcademicFFT.InputDataType.REALINPUT);
-		X.setXYZ(real, imag);
+	public void transformInternal(RealSignal x, final ComplexSignal X) {
+		x.getXYZ(real);
+		Arrays.fill(imag, 0f);
+		fftXYZ.directTransform(real, imag, bufferReal, bufferImag, AcademicFFT.InputDataType.REALINPUT);
+		final int nxy = nx * ny;
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] s = X.data[k];
+				for (int i = from, p = k * nxy + from; i < to; i++, p++) {
+					s[2 * i] = real[p];
+					s[2 * i + 1] = imag[p];
+				}
+			}
+		});
 	}
 	
 	@Override
-	public void inverseInternal(ComplexSignal X, RealSignal x) {
-		float real[] = X.getRealXYZ();
-		float imag[] = X.getImagXYZ();
-		fftXYZ.inverseTransform(real, imag, null, null);
+	public void inverseInternal(final ComplexSignal X, RealSignal x) {
+		final int nxy = nx * ny;
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] s = X.data[k];
+				for (int i = from, p = k * nxy + from; i < to; i++, p++) {
+					real[p] = s[2 * i];
+					imag[p] = s[2 * i + 1];
+				}
+			}
+		});
+		fftXYZ.inverseTransform(real, imag, bufferReal, bufferImag);
 		x.setXYZ(real);
 	}
 	
@@ -103,7 +136,6 @@ public class AcademicFFT_XYZ extends AbstractFFT {
 		return "AcademicFFT XYZ";
 	}
 	
-	
 	@Override
 	public boolean isMultithreadable() {
 		return true;
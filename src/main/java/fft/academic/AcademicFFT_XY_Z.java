@@ -31,16 +31,34 @@
 
 package fft.academic;
 
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import deconvolutionlab.monitor.Monitors;
 import fft.AbstractFFT;
 import fft.Separability;
 import signal.ComplexSignal;
+import signal.HermitianSignal;
+import signal.Parallel;
 import signal.RealSignal;
 
+/**
+ * Separable AcademicFFT computed by 1D transforms along X, Y and Z. Every pass
+ * is distributed on the threads of the signal.Parallel engine, each worker
+ * takes a workspace (its own 1D plans and scratch buffers) which is kept
+ * between the calls. The pass along Z processes tiles of z-lines to read the
+ * slices by contiguous blocks.
+ * 
+ * @author Daniel Sage
+ * 
+ */
 public class AcademicFFT_XY_Z extends AbstractFFT {
 
-	private AcademicFFT	fftXY;
-	private AcademicFFT	fftZ;
+	/** Number of z-lines gathered together by the pass along Z. */
+	private static final int				TILE		= 16;
+
+	private ConcurrentLinkedQueue<Workspace>	workspaces	= new ConcurrentLinkedQueue<Workspace>();
+	private float[][]						work;
 
 	public AcademicFFT_XY_Z() {
 		super(Separability.XY_Z);
@@ -49,49 +67,180 @@ public class AcademicFFT_XY_Z extends AbstractFFT {
 	@Override
 	public void init(Monitors monitors, int nx, int ny, int nz) {					
 		super.init(monitors, nx, ny, nz);
-		fftXY = new AcademicFFT(nx, ny, 0, 0);
-		fftZ = new AcademicFFT(nz, 0);
+		workspaces.clear();
+		workspaces.add(new Workspace(nx, ny, nz));
+		work = null;
 	}
 
 	@Override
-	public void transformInternal(RealSignal x, ComplexSignal X) {
-		for (int k = 0; k < nz; k++) {
-			float real[] = new float[nx * ny];
-			float imag[] = new float[nx * ny];
-			System.arraycopy(x.data[k], 0, real, 0, nx * ny);
-			fftXY.directTransform(real, imag, null, null, AcademicFFT.InputDataType.REALINPUT);
-			X.setRealXY(k, real);
-			X.setImagXY(k, imag);
-		}
-		
-		for (int i = 0; i < nx; i++)
-		for (int j = 0; j < ny; j++) {
-			float real[] = X.getRealZ(i, j);
-			float imag[] = X.getImagZ(i, j);
-			fftZ.directTransform(real, imag, null, null, AcademicFFT.InputDataType.COMPLEXINPUT);
-			X.setRealZ(i, j, real);
-			X.setImagZ(i, j, imag);
-		}
+	public void transformInternal(final RealSignal x, final ComplexSignal X) {
+		passRealX(x, X.data, nx);
+		passY(X.data, nx, false);
+		passZ(X.data, X.data, nx, false);
 	}
 	
 	@Override
-	public void inverseInternal(ComplexSignal X, RealSignal x) {
-		for (int k = 0; k < nz; k++) {
-			float real[] = X.getRealXY(k);
-			float imag[] = X.getImagXY(k);
-			fftXY.inverseTransform(real, imag, null, null);
-			X.setRealXY(k, real);
-			X.setImagXY(k, imag);
-		}
-		for (int i = 0; i < nx; i++)
-		for (int j = 0; j < ny; j++) {
-			float real[] = X.getRealZ(i, j);
-			float imag[] = X.getImagZ(i, j);
-			fftZ.inverseTransform(real, imag, null, null);
-			x.setZ(i, j, real);
-		}
+	public void inverseInternal(ComplexSignal X, final RealSignal x) {
+		float[][] w = getWork(nx);
+		passZ(X.data, w, nx, true);
+		passY(w, nx, true);
+		passComplexX(w, x, nx);
 	}
 	
+	@Override
+	protected void transformHermitianInternal(RealSignal x, HermitianSignal X) {
+		passRealX(x, X.data, X.nx);
+		passY(X.data, X.nx, false);
+		passZ(X.data, X.data, X.nx, false);
+	}
+
+	@Override
+	protected void inverseHermitianInternal(HermitianSignal X, RealSignal x) {
+		float[][] w = getWork(X.nx);
+		passZ(X.data, w, X.nx, true);
+		passY(w, X.nx, true);
+		passComplexX(w, x, X.nx);
+	}
+
+	/**
+	 * Forward transform along X of the real rows of x into the interleaved
+	 * slices of width mx, either nx or the half-width nx/2+1.
+	 */
+	private void passRealX(final RealSignal x, final float[][] out, final int mx) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				Workspace ws = take();
+				float[] s = x.data[k];
+				float[] o = out[k];
+				for (int j = from / nx; j < to / nx; j++) {
+					System.arraycopy(s, j * nx, ws.reX, 0, nx);
+					Arrays.fill(ws.imX, 0f);
+					ws.fftX.directTransform(ws.reX, ws.imX, ws.bufReX, ws.bufImX, AcademicFFT.InputDataType.REALINPUT);
+					for (int i = 0, p = 2 * j * mx; i < mx; i++, p += 2) {
+						o[p] = ws.reX[i];
+						o[p + 1] = ws.imX[i];
+					}
+				}
+				workspaces.add(ws);
+			}
+		});
+	}
+
+	/**
+	 * Inverse transform along X of the interleaved slices of width mx, if mx
+	 * is smaller than nx, the rows are completed by Hermitian symmetry.
+	 */
+	private void passComplexX(final float[][] in, final RealSignal x, final int mx) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				Workspace ws = take();
+				float[] s = in[k];
+				float[] o = x.data[k];
+				for (int j = from / nx; j < to / nx; j++) {
+					int row = 2 * j * mx;
+					for (int i = 0; i < mx; i++) {
+						ws.reX[i] = s[row + 2 * i];
+						ws.imX[i] = s[row + 2 * i + 1];
+					}
+					for (int i = mx; i < nx; i++) {
+						ws.reX[i] = s[row + 2 * (nx - i)];
+						ws.imX[i] = -s[row + 2 * (nx - i) + 1];
+					}
+					ws.fftX.inverseTransform(ws.reX, ws.imX, ws.bufReX, ws.bufImX);
+					System.arraycopy(ws.reX, 0, o, j * nx, nx);
+				}
+				workspaces.add(ws);
+			}
+		});
+	}
+
+	/**
+	 * Transform along Y, in place, of the interleaved slices of width mx. The
+	 * engine is called with the roles of X and Y swapped, so that the ranges
+	 * are columns.
+	 */
+	private void passY(final float[][] data, final int mx, final boolean inverse) {
+		Parallel.run(ny, mx, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				Workspace ws = take();
+				float[] s = data[k];
+				for (int i = from / ny; i < to / ny; i++) {
+					for (int j = 0, p = 2 * i; j < ny; j++, p += 2 * mx) {
+						ws.reY[j] = s[p];
+						ws.imY[j] = s[p + 1];
+					}
+					if (inverse)
+						ws.fftY.inverseTransform(ws.reY, ws.imY, ws.bufReY, ws.bufImY);
+					else
+						ws.fftY.directTransform(ws.reY, ws.imY, ws.bufReY, ws.bufImY, AcademicFFT.InputDataType.COMPLEXINPUT);
+					for (int j = 0, p = 2 * i; j < ny; j++, p += 2 * mx) {
+						s[p] = ws.reY[j];
+						s[p + 1] = ws.imY[j];
+					}
+				}
+				workspaces.add(ws);
+			}
+		});
+	}
+
+	/**
+	 * Transform along Z of the interleaved slices of width mx, from in to out
+	 * which may be the same array. The z-lines are gathered by tiles of
+	 * consecutive pixels, so each slice is read by contiguous blocks.
+	 */
+	private void passZ(final float[][] in, final float[][] out, final int mx, final boolean inverse) {
+		if (nz <= 1) {
+			if (in != out)
+				for (int k = 0; k < nz; k++)
+					System.arraycopy(in[k], 0, out[k], 0, 2 * mx * ny);
+			return;
+		}
+		Parallel.run(mx, ny, 1, new Parallel.Stripe() {
+			@Override
+			public void apply(int unused, int from, int to) {
+				Workspace ws = take();
+				for (int t = from; t < to; t += TILE) {
+					int b = Math.min(TILE, to - t);
+					for (int k = 0; k < nz; k++) {
+						float[] s = in[k];
+						for (int l = 0, p = 2 * t; l < b; l++, p += 2) {
+							ws.reZ[l][k] = s[p];
+							ws.imZ[l][k] = s[p + 1];
+						}
+					}
+					for (int l = 0; l < b; l++) {
+						if (inverse)
+							ws.fftZ.inverseTransform(ws.reZ[l], ws.imZ[l], ws.bufReZ, ws.bufImZ);
+						else
+							ws.fftZ.directTransform(ws.reZ[l], ws.imZ[l], ws.bufReZ, ws.bufImZ, AcademicFFT.InputDataType.COMPLEXINPUT);
+					}
+					for (int k = 0; k < nz; k++) {
+						float[] s = out[k];
+						for (int l = 0, p = 2 * t; l < b; l++, p += 2) {
+							s[p] = ws.reZ[l][k];
+							s[p + 1] = ws.imZ[l][k];
+						}
+					}
+				}
+				workspaces.add(ws);
+			}
+		});
+	}
+
+	private float[][] getWork(int mx) {
+		if (work == null || work.length != nz || work[0].length != 2 * mx * ny)
+			work = new float[nz][2 * mx * ny];
+		return work;
+	}
+
+	private Workspace take() {
+		Workspace ws = workspaces.poll();
+		return ws == null ? new Workspace(nx, ny, nz) : ws;
+	}
+
 	@Override
 	public String getName() {
 		return "AcademicFFT XY and Z";
@@ -102,4 +251,35 @@ public class AcademicFFT_XY_Z extends AbstractFFT {
 		return true;
 	}
 
+	/**
+	 * The 1D plans and the scratch buffers of one worker.
+	 */
+	private static class Workspace {
+		private AcademicFFT	fftX, fftY, fftZ;
+		private float[]		reX, imX, bufReX, bufImX;
+		private float[]		reY, imY, bufReY, bufImY;
+		private float[][]	reZ, imZ;
+		private float[]		bufReZ, bufImZ;
+
+		public Workspace(int nx, int ny, int nz) {
+			// The setups of AcademicFFT are cached in static tables
+			synchronized (AcademicFFT.class) {
+				fftX = new AcademicFFT(nx, 0);
+				fftY = new AcademicFFT(ny, 0);
+				fftZ = new AcademicFFT(nz, 0);
+			}
+			reX = new float[nx];
+			imX = new float[nx];
+			bufReX = new float[nx];
+			bufImX = new float[nx];
+			reY = new float[ny];
+			imY = new float[ny];
+			bufReY = new float[ny];
+			bufImY = new float[ny];
+			reZ = new float[TILE][nz];
+			imZ = new float[TILE][nz];
+			bufReZ = new float[nz];
+			bufImZ = new float[nz];
+		}
+	}
 }
@@ -33,15 +33,22 @@ package fft.fftw;
 
 import deconvolutionlab.monitor.Monitors;
 import fft.AbstractFFT;
+import fft.PlanCache;
 import fft.Separability;
 import jfftw.complex.nd.Plan;
 import signal.ComplexSignal;
+import signal.HermitianSignal;
 import signal.RealSignal;
 
 public class FFTW3D extends AbstractFFT {
 	
 	private Plan planForwardFFTW = null;
 	private Plan planBackwardFFTW = null;
+	private jfftw.real.nd.Plan planRealFFTW = null;
+	private jfftw.real.nd.Plan planRealBackwardFFTW = null;
+	private float[] buffer = null;
+	private float[] real = null;
+	private float[] half = null;
 
 	public FFTW3D() {
 		super(Separability.XYZ);
@@ -51,23 +58,124 @@ public class FFTW3D extends AbstractFFT {
 	public void init(Monitors monitors, int nx, int ny, int nz) {					
 		super.init(monitors, nx, ny, nz);
 		int dim[] = new int[] {nz, ny, nx};
-		planForwardFFTW = new Plan(dim, Plan.FORWARD, Plan.ESTIMATE | Plan.IN_PLACE | Plan.USE_WISDOM);
-		planBackwardFFTW = new Plan(dim, Plan.BACKWARD, Plan.ESTIMATE | Plan.IN_PLACE | Plan.USE_WISDOM);
+		// FFTW2 has no patient planner, MEASURE is its most exhaustive mode
+		int effort = planning == PlanCache.Mode.ESTIMATE ? Plan.ESTIMATE : Plan.MEASURE;
+		planForwardFFTW = new Plan(dim, Plan.FORWARD, effort | Plan.IN_PLACE | Plan.USE_WISDOM);
+		planBackwardFFTW = new Plan(dim, Plan.BACKWARD, effort | Plan.IN_PLACE | Plan.USE_WISDOM);
+		buffer = new float[2 * nx * ny * nz];
+		try {
+			planRealFFTW = new jfftw.real.nd.Plan(dim, jfftw.real.nd.Plan.REAL_TO_COMPLEX, effort | Plan.USE_WISDOM);
+			planRealBackwardFFTW = new jfftw.real.nd.Plan(dim, jfftw.real.nd.Plan.COMPLEX_TO_REAL, effort | Plan.USE_WISDOM);
+			real = new float[nx * ny * nz];
+			half = new float[2 * (nx / 2 + 1) * ny * nz];
+		}
+		catch (Throwable ex) {
+			// The native library is compiled without the real transforms
+			planRealFFTW = null;
+			planRealBackwardFFTW = null;
+			real = null;
+			half = null;
+		}
 	}
 
 	@Override
 	public void transformInternal(RealSignal x, ComplexSignal X) {
-		float interleave[] = x.getInterleaveXYZAtReal();
-		planForwardFFTW.transform(interleave);
-		X.setInterleaveXYZ(interleave);
+		if (planRealFFTW != null) {
+			long chrono = System.nanoTime();
+			x.getXYZ(real);
+			chronoCopy += System.nanoTime() - chrono;
+			float spectrum[] = planRealFFTW.transform(real);
+			chrono = System.nanoTime();
+			expandHermitian(spectrum, X);
+			chronoCopy += System.nanoTime() - chrono;
+			return;
+		}
+		long chrono = System.nanoTime();
+		int nxy = nx * ny;
+		for (int k = 0; k < nz; k++) {
+			float[] slice = x.data[k];
+			int offset = 2 * k * nxy;
+			for (int i = 0; i < nxy; i++) {
+				buffer[offset + 2 * i] = slice[i];
+				buffer[offset + 2 * i + 1] = 0f;
+			}
+		}
+		chronoCopy += System.nanoTime() - chrono;
+		planForwardFFTW.transform(buffer);
+		chrono = System.nanoTime();
+		X.setInterleaveXYZ(buffer);
+		chronoCopy += System.nanoTime() - chrono;
 	}
 	
 	@Override
 	public void inverseInternal(ComplexSignal X, RealSignal x) {
-		float[] interleave = X.getInterleaveXYZ();
-		planBackwardFFTW.transform(interleave);
-		x.setInterleaveXYZAtReal(interleave);
-		x.multiply(1.0/(nx*ny*nz));
+		long chrono = System.nanoTime();
+		X.getInterleaveXYZ(buffer);
+		chronoCopy += System.nanoTime() - chrono;
+		planBackwardFFTW.transform(buffer);
+		chrono = System.nanoTime();
+		x.setInterleaveXYZAtReal(buffer, (float) (1.0 / (nx * ny * nz)));
+		chronoCopy += System.nanoTime() - chrono;
+	}
+	
+	@Override
+	protected void transformHermitianInternal(RealSignal x, HermitianSignal X) {
+		if (planRealFFTW == null) {
+			super.transformHermitianInternal(x, X);
+			return;
+		}
+		long chrono = System.nanoTime();
+		x.getXYZ(real);
+		chronoCopy += System.nanoTime() - chrono;
+		// The output of rfftwnd has already the layout of the half-spectrum
+		float spectrum[] = planRealFFTW.transform(real);
+		chrono = System.nanoTime();
+		X.setInterleaveXYZ(spectrum);
+		chronoCopy += System.nanoTime() - chrono;
+	}
+
+	@Override
+	protected void inverseHermitianInternal(HermitianSignal X, RealSignal x) {
+		if (planRealBackwardFFTW == null) {
+			super.inverseHermitianInternal(X, x);
+			return;
+		}
+		long chrono = System.nanoTime();
+		X.getInterleaveXYZ(half);
+		chronoCopy += System.nanoTime() - chrono;
+		float out[] = planRealBackwardFFTW.transform(half);
+		chrono = System.nanoTime();
+		int nxy = nx * ny;
+		float scale = (float) (1.0 / (nx * ny * nz));
+		for (int k = 0; k < nz; k++) {
+			float[] slice = x.data[k];
+			for (int i = 0; i < nxy; i++)
+				slice[i] = out[k * nxy + i] * scale;
+		}
+		chronoCopy += System.nanoTime() - chrono;
+	}
+
+	/**
+	 * Fills the full spectrum from the half spectrum (nx/2+1 in X) of a
+	 * real-to-complex transform, using the Hermitian symmetry.
+	 */
+	private void expandHermitian(float spectrum[], ComplexSignal X) {
+		int mx = nx / 2 + 1;
+		for (int k = 0; k < nz; k++) {
+			float[] slice = X.data[k];
+			int kk = (nz - k) % nz;
+			for (int j = 0; j < ny; j++) {
+				int jj = (ny - j) % ny;
+				int src = 2 * ((k * ny + j) * mx);
+				System.arraycopy(spectrum, src, slice, 2 * j * nx, 2 * mx);
+				int mirror = 2 * ((kk * ny + jj) * mx);
+				for (int i = mx; i < nx; i++) {
+					int index = mirror + 2 * (nx - i);
+					slice[2 * (i + j * nx)] = spectrum[index];
+					slice[2 * (i + j * nx) + 1] = -spectrum[index + 1];
+				}
+			}
+		}
 	}
 	
 	@Override
@@ -31,65 +31,14 @@
 
 package fft.jtransforms;
 
-import signal.ComplexSignal;
-import signal.RealSignal;
-import deconvolutionlab.monitor.Monitors;
-import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
-import edu.emory.mathcs.jtransforms.fft.FloatFFT_3D;
-import fft.AbstractFFT;
-import fft.Separability;
-
-public class JTransforms extends AbstractFFT {
-
-	private FloatFFT_3D fftXYZ = null;
-	private FloatFFT_2D fftXY = null;
-
-	public JTransforms() {
-		super(Separability.XYZ);
-	}
-
-	@Override
-	public void init(Monitors monitors, int nx, int ny, int nz) {					
-		super.init(monitors, nx, ny, nz);
-		try {
-			if (nz > 1)
-				fftXYZ = new FloatFFT_3D(nz, ny, nx);
-			else 
-				fftXY = new FloatFFT_2D(ny, nx);			
-		}
-		catch (Exception ex) {
-			System.out.println("check " + ex + ". " + nx + " " + ny + " " + nz);			
-		}
-	}
-
-	@Override
-	public void transformInternal(RealSignal x, ComplexSignal X) {
-		float[] interleave = x.getInterleaveXYZAtReal();
-		if (fftXYZ != null)
-			fftXYZ.complexForward(interleave);
-		if (fftXY != null)
-			fftXY.complexForward(interleave);
-		X.setInterleaveXYZ(interleave);
-	}
-	
-	@Override
-	public void inverseInternal(ComplexSignal X, RealSignal x) {
-		float[] interleave = X.getInterleaveXYZ();
-		if (fftXYZ != null)
-			fftXYZ.complexInverse(interleave, true);
-		if (fftXY != null)
-			fftXY.complexInverse(interleave, true);
-		x.setInterleaveXYZAtReal(interleave);
-	}
+/**
+ * Default FFT of the JTransforms library, it is the 3D transform.
+ */
+public class JTransforms extends JTransformsFFT_XYZ {
 
 	@Override
 	public String getName() {
 		return "JTransforms";
 	}
 
-	@Override
-	public boolean isMultithreadable() {
-		return true;
-	}
-
 }
@@ -32,6 +32,8 @@
 package fft.jtransforms;
 
 import signal.ComplexSignal;
+import signal.HermitianSignal;
+import signal.Operations;
 import signal.RealSignal;
 import deconvolutionlab.monitor.Monitors;
 import edu.emory.mathcs.jtransforms.fft.FloatFFT_2D;
@@ -43,6 +45,7 @@ public class JTransformsFFT_XYZ extends AbstractFFT {
 
 	private FloatFFT_3D fftXYZ = null;
 	private FloatFFT_2D fftXY = null;
+	private float[]	buffer = null;
 
 	public JTransformsFFT_XYZ() {
 		super(Separability.XYZ);
@@ -56,6 +59,7 @@ public class JTransformsFFT_XYZ extends AbstractFFT {
 				fftXYZ = new FloatFFT_3D(nz, ny, nx);
 			else 
 				fftXY = new FloatFFT_2D(ny, nx);			
+			buffer = new float[2 * nx * ny * nz];
 		}
 		catch (Exception ex) {
 			System.out.println("check " + ex + ". " + nx + " " + ny + " " + nz);			
@@ -64,22 +68,115 @@ public class JTransformsFFT_XYZ extends AbstractFFT {
 
 	@Override
 	public void transformInternal(RealSignal x, ComplexSignal X) {
-		float[] interleave = x.getInterleaveXYZAtReal();
-		if (fftXYZ != null)
-			fftXYZ.complexForward(interleave);
-		if (fftXY != null)
-			fftXY.complexForward(interleave);
-		X.setInterleaveXYZ(interleave);
+		long chrono = System.nanoTime();
+		x.getXYZ(buffer);
+		chronoCopy += System.nanoTime() - chrono;
+		forward(X);
 	}
 	
 	@Override
 	public void inverseInternal(ComplexSignal X, RealSignal x) {
-		float[] interleave = X.getInterleaveXYZ();
+		load(X, null, false);
+		backward(x);
+	}
+
+	@Override
+	protected void transformHermitianInternal(RealSignal x, HermitianSignal X) {
+		long chrono = System.nanoTime();
+		x.getXYZ(buffer);
+		chronoCopy += System.nanoTime() - chrono;
+		forward(X);
+	}
+
+	@Override
+	protected void inverseHermitianInternal(HermitianSignal X, RealSignal x) {
+		load(X, null, false);
+		backward(x);
+	}
+
+	@Override
+	protected void transformRatioInternal(RealSignal numerator, RealSignal denominator, ComplexSignal X) {
+		long chrono = System.nanoTime();
+		int nxy = nx * ny;
+		for (int k = 0; k < nz; k++)
+			Operations.divide(numerator.data[k], denominator.data[k], buffer, k * nxy);
+		chronoCopy += System.nanoTime() - chrono;
+		forward(X);
+	}
+
+	@Override
+	protected void inverseInternal(ComplexSignal X, ComplexSignal H, boolean conjugate, RealSignal x) {
+		load(X, H, conjugate);
+		backward(x);
+	}
+
+	/**
+	 * Real-to-complex transform of the real data packed in the first half of
+	 * the buffer, the result is stored in X, full or half-spectrum.
+	 */
+	private void forward(ComplexSignal X) {
 		if (fftXYZ != null)
-			fftXYZ.complexInverse(interleave, true);
+			fftXYZ.realForwardFull(buffer);
 		if (fftXY != null)
-			fftXY.complexInverse(interleave, true);
-		x.setInterleaveXYZAtReal(interleave);
+			fftXY.realForwardFull(buffer);
+		long chrono = System.nanoTime();
+		if (X instanceof HermitianSignal) {
+			int mx = X.nx;
+			for (int k = 0; k < nz; k++)
+				for (int j = 0; j < ny; j++)
+					System.arraycopy(buffer, 2 * (k * nx * ny + j * nx), X.data[k], 2 * j * mx, 2 * mx);
+		}
+		else {
+			X.setInterleaveXYZ(buffer);
+		}
+		chronoCopy += System.nanoTime() - chrono;
+	}
+
+	/**
+	 * Complex inverse transform of the buffer, the real part is stored in x.
+	 */
+	private void backward(RealSignal x) {
+		if (fftXYZ != null)
+			fftXYZ.complexInverse(buffer, true);
+		if (fftXY != null)
+			fftXY.complexInverse(buffer, true);
+		long chrono = System.nanoTime();
+		x.setInterleaveXYZAtReal(buffer, 1f);
+		chronoCopy += System.nanoTime() - chrono;
+	}
+
+	/**
+	 * Loads the full spectrum X, or X multiplied by H or by the conjugate of H,
+	 * into the buffer. A half-spectrum is expanded by the Hermitian symmetry.
+	 */
+	private void load(ComplexSignal X, ComplexSignal H, boolean conjugate) {
+		long chrono = System.nanoTime();
+		int mx = X.nx;
+		int nxy = nx * ny;
+		for (int k = 0; k < nz; k++) {
+			if (H == null)
+				for (int j = 0; j < ny; j++)
+					System.arraycopy(X.data[k], 2 * j * mx, buffer, 2 * (k * nxy + j * nx), 2 * mx);
+			else
+				for (int j = 0; j < ny; j++)
+					Operations.multiply(X.data[k], H.data[k], 2 * j * mx, 2 * (j + 1) * mx, conjugate, buffer, 2 * (k * nxy + j * nx));
+		}
+		if (X instanceof HermitianSignal) {
+			for (int k = 0; k < nz; k++) {
+				int kk = (nz - k) % nz;
+				for (int j = 0; j < ny; j++) {
+					int jj = (ny - j) % ny;
+					int offset = 2 * (k * nxy + j * nx);
+					int mirror = 2 * (kk * nxy + jj * nx);
+					for (int i = mx; i < nx; i++) {
+						int index = mirror + 2 * (nx - i);
+						buffer[offset + 2 * i] = buffer[index];
+						buffer[offset + 2 * i + 1] = -buffer[index + 1];
+					}
+				}
+			}
+		}
+		chronoCopy += System.nanoTime() - chrono;
 	}
 
 	@Override
@@ -32,6 +32,8 @@
 package fft.jtransforms;
 
 import signal.ComplexSignal;
+import signal.HermitianSignal;
+import signal.Operations;
 import signal.RealSignal;
 import deconvolutionlab.monitor.Monitors;
 import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
@@ -43,6 +45,9 @@ public class JTransformsFFT_XY_Z extends AbstractFFT {
 
 	private FloatFFT_2D	fftXY	= null;
 	private FloatFFT_1D	fftZ	= null;
+	private float[]		line	= null;
+	private float[][]	work	= null;
+	private float[]		slice	= null;
 
 	public JTransformsFFT_XY_Z() {
 		super(Separability.XY_Z);
@@ -55,6 +60,9 @@ public class JTransformsFFT_XY_Z extends AbstractFFT {
 			fftXY = new FloatFFT_2D(ny, nx);
 			if (nz > 1)
 				fftZ = new FloatFFT_1D(nz);
+			line = new float[2 * nz];
+			work = null;
+			slice = new float[2 * nx * ny];
 		}
 		catch (Exception ex) {
 		}
@@ -62,37 +70,122 @@ public class JTransformsFFT_XY_Z extends AbstractFFT {
 
 	@Override
 	public void transformInternal(RealSignal x, ComplexSignal X) {
-		for (int k = 0; k < nz; k++) {
-			float interleave[] = x.getInterleaveXYAtReal(k);
-			fftXY.complexForward(interleave);
-			X.setInterleaveXY(k, interleave);
-		}
-		if (fftZ == null)
-			return;
-		for (int i = 0; i < nx; i++)
-			for (int j = 0; j < ny; j++) {
-				float interleave[] = X.getInterleaveZ(i, j);
-				fftZ.complexForward(interleave);
-				X.setInterleaveZ(i, j, interleave);
-			}
+		forward(x, null, X);
 	}
 
 	@Override
 	public void inverseInternal(ComplexSignal X, RealSignal x) {
+		load(X, null, false);
+		backward(X, x);
+	}
+
+	@Override
+	protected void transformHermitianInternal(RealSignal x, HermitianSignal X) {
+		forward(x, null, X);
+	}
+
+	@Override
+	protected void inverseHermitianInternal(HermitianSignal X, RealSignal x) {
+		load(X, null, false);
+		backward(X, x);
+	}
+
+	@Override
+	protected void transformRatioInternal(RealSignal numerator, RealSignal denominator, ComplexSignal X) {
+		forward(numerator, denominator, X);
+	}
+
+	@Override
+	protected void inverseInternal(ComplexSignal X, ComplexSignal H, boolean conjugate, RealSignal x) {
+		load(X, H, conjugate);
+		backward(X, x);
+	}
+
+	/**
+	 * Transforms x, or x / denominator, slice by slice. The interleaved slices
+	 * of a full spectrum are transformed in place, a half-spectrum goes through
+	 * a slice buffer. Only the stored columns are transformed along Z.
+	 */
+	private void forward(RealSignal x, RealSignal denominator, ComplexSignal X) {
+		boolean half = X instanceof HermitianSignal;
+		int nxy = nx * ny;
+		int mx = X.nx;
+		for (int k = 0; k < nz; k++) {
+			float[] target = half ? slice : X.data[k];
+			long chrono = System.nanoTime();
+			if (denominator == null)
+				System.arraycopy(x.data[k], 0, target, 0, nxy);
+			else
+				Operations.divide(x.data[k], denominator.data[k], target, 0);
+			chronoCopy += System.nanoTime() - chrono;
+			fftXY.realForwardFull(target);
+			if (half) {
+				chrono = System.nanoTime();
+				for (int j = 0; j < ny; j++)
+					System.arraycopy(slice, 2 * j * nx, X.data[k], 2 * j * mx, 2 * mx);
+				chronoCopy += System.nanoTime() - chrono;
+			}
+		}
+		if (fftZ != null)
+			transformZ(X.data, mx, false);
+	}
+
+	/**
+	 * Copies X, or X multiplied by H or by the conjugate of H, into the work
+	 * volume, X is left unchanged.
+	 */
+	private void load(ComplexSignal X, ComplexSignal H, boolean conjugate) {
+		if (work == null)
+			work = new float[nz][2 * nx * ny];
+		int n = 2 * X.nx * ny;
+		long chrono = System.nanoTime();
+		for (int k = 0; k < nz; k++)
+			if (H == null)
+				System.arraycopy(X.data[k], 0, work[k], 0, n);
+			else
+				Operations.multiply(X.data[k], H.data[k], 0, n, conjugate, work[k], 0);
+		chronoCopy += System.nanoTime() - chrono;
+	}
+
+	/**
+	 * Inverse transform of the work volume, along Z then slice by slice in XY.
+	 */
+	private void backward(ComplexSignal X, RealSignal x) {
+		boolean half = X instanceof HermitianSignal;
+		int nxy = nx * ny;
+		if (fftZ != null)
+			transformZ(work, X.nx, true);
 		for (int k = 0; k < nz; k++) {
-			float interleave[] = X.getInterleaveXY(k);
-			fftXY.complexInverse(interleave, true);
-			X.setInterleaveXY(k, interleave);
+			float[] w = work[k];
+			if (half) {
+				long chrono = System.nanoTime();
+				HermitianSignal.expandXY(work[k], nx, ny, slice);
+				chronoCopy += System.nanoTime() - chrono;
+				w = slice;
+			}
+			fftXY.complexInverse(w, true);
+			float[] s = x.data[k];
+			for (int i = 0; i < nxy; i++)
+				s[i] = w[2 * i];
 		}
-		if (fftZ != null) {
-			for (int i = 0; i < nx; i++)
-				for (int j = 0; j < ny; j++) {
-					float interleave[] = X.getInterleaveZ(i, j);
-					fftZ.complexInverse(interleave, true);
-					X.setInterleaveZ(i, j, interleave);
-				}
+	}
+
+	private void transformZ(float[][] slices, int mx, boolean inverse) {
+		int n = 2 * mx * ny;
+		for (int index = 0; index < n; index += 2) {
+			for (int k = 0; k < nz; k++) {
+				line[2 * k] = slices[k][index];
+				line[2 * k + 1] = slices[k][index + 1];
+			}
+			if (inverse)
+				fftZ.complexInverse(line, true);
+			else
+				fftZ.complexForward(line);
+			for (int k = 0; k < nz; k++) {
+				slices[k][index] = line[2 * k];
+				slices[k][index + 1] = line[2 * k + 1];
+			}
 		}
-		x = X.getRealSignal();
 	}
 
 	@Override
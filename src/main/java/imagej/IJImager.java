@@ -65,6 +65,7 @@ import ij.process.ImageProcessor;
 import signal.ComplexComponent;
 import signal.ComplexSignal;
 import signal.RealSignal;
+import signal.SignalCollector;
 
 public class IJImager extends Imager {
 	
@@ -243,6 +244,9 @@ public class IJImager extends Imager {
 		if (signal == null)
 			return null;
 
+		// The float processors share the slices of the signal
+		SignalCollector.detach(signal);
+
 		ImageStack stack = new ImageStack(signal.nx, signal.ny);
 		for (int k = 0; k < signal.nz; k++) {
 			ImageProcessor ip = new FloatProcessor(signal.nx, signal.ny, signal.getXY(k));
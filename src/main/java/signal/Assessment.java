@@ -61,25 +61,41 @@ public class Assessment {
 	 * @param ref	RealSignal
 	 * @return	an array of double containing
 	 */
-	public static double[] measure(RealSignal test, RealSignal ref) {
-		int nxy = Math.min(test.nx * test.ny, ref.nx * ref.ny);
+	public static double[] measure(final RealSignal test, final RealSignal ref) {
+		int nx = Math.min(test.nx, ref.nx);
+		int ny = Math.min(test.ny, ref.ny);
 		int nz = Math.min(test.nz, ref.nz);
-		double max = -Double.MAX_VALUE;
-		double sref = 0.0;
-		double rmse = 0.0;
-		double a = 0.0;
-		for (int k = 0; k < nz; k++)
-		for (int i = 0; i < nxy; i++) {
-if (ref.name.equals("y"))
-	System.out.println("" + i + " " + k + " : " + ref.data[0].length + " " + ref.data.length);
-			a = ref.data[k][i];
-			if (max < a)
-				max = a;
-			sref += a * a;
-			rmse += (a-test.data[k][i]) * (a-test.data[k][i]); 
-		}
-		sref = Math.sqrt(sref / (nz*nxy));
-		rmse = Math.sqrt(rmse / (nz*nxy));
+		final int nxy = Math.min(test.nx * test.ny, ref.nx * ref.ny);
+		final boolean striped = test.nx == ref.nx && test.ny == ref.ny;
+		double[] m = Parallel.reduce(striped ? nx : nxy, striped ? ny : 1, nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] r = ref.data[k];
+				float[] t = test.data[k];
+				double max = -Double.MAX_VALUE;
+				double sref = 0.0;
+				double rmse = 0.0;
+				double a = 0.0;
+				for (int i = from; i < to; i++) {
+					a = r[i];
+					if (max < a)
+						max = a;
+					sref += a * a;
+					rmse += (a - t[i]) * (a - t[i]);
+				}
+				return new double[] { sref, rmse, max };
+			}
+
+			@Override
+			public void merge(double[] accumulated, double[] partial) {
+				accumulated[0] += partial[0];
+				accumulated[1] += partial[1];
+				accumulated[2] = Math.max(accumulated[2], partial[2]);
+			}
+		});
+		double max = m[2];
+		double sref = Math.sqrt(m[0] / (nz*nxy));
+		double rmse = Math.sqrt(m[1] / (nz*nxy));
 		if (rmse <= 0)
 			return new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, sref, rmse, max};
 		else
@@ -0,0 +1,161 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package signal;
+
+/**
+ * This class contains the pointwise kernels on interleaved complex arrays
+ * (real, imaginary) used between the FFTs: multiplication, multiplication by
+ * the conjugate, stabilized division and multiply-add.
+ * 
+ * The kernels are selected at runtime: the SIMD implementation of
+ * VectorComplexKernels, based on the Vector API (jdk.incubator.vector), when it
+ * is compiled (profile simd) and the module is added to the JVM with
+ * --add-modules jdk.incubator.vector, otherwise this scalar implementation.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+public class ComplexKernels {
+
+	private static ComplexKernels	scalar	= new ComplexKernels();
+	private static ComplexKernels	vector	= load();
+	private static ComplexKernels	kernels	= vector != null ? vector : scalar;
+
+	/**
+	 * @return the kernels in use
+	 */
+	public static ComplexKernels get() {
+		return kernels;
+	}
+
+	/**
+	 * @return true if the SIMD kernels are available on this JVM
+	 */
+	public static boolean isVectorAvailable() {
+		return vector != null;
+	}
+
+	/**
+	 * Selects the SIMD or the scalar kernels. The scalar kernels are used if
+	 * the SIMD kernels are not available.
+	 * 
+	 * @param simd
+	 *            true to use the SIMD kernels
+	 */
+	public static void setVector(boolean simd) {
+		kernels = simd && vector != null ? vector : scalar;
+	}
+
+	private static ComplexKernels load() {
+		try {
+			Class<?> c = Class.forName("signal.VectorComplexKernels");
+			return (ComplexKernels) c.getDeclaredConstructor().newInstance();
+		}
+		catch (Throwable ex) {
+			return null;
+		}
+	}
+
+	public String getName() {
+		return "scalar";
+	}
+
+	/**
+	 * Multiplies a.b or a.conj(b) on the range [from, to[ and stores the
+	 * product in the output at a given offset. The output can be a.
+	 * 
+	 * @param a
+	 *            interleaved array
+	 * @param b
+	 *            interleaved array
+	 * @param from
+	 *            first index, even
+	 * @param to
+	 *            last index, excluded
+	 * @param conjugate
+	 *            true to multiply by the conjugate of b
+	 * @param output
+	 *            output array
+	 * @param offset
+	 *            first index in the output array
+	 */
+	public void multiply(float[] a, float[] b, int from, int to, boolean conjugate, float[] output, int offset) {
+		float ar, ai, br, bi;
+		float sign = conjugate ? -1f : 1f;
+		for (int i = from, o = offset; i < to; i += 2, o += 2) {
+			ar = a[i];
+			ai = a[i + 1];
+			br = b[i];
+			bi = sign * b[i + 1];
+			output[o] = ar * br - ai * bi;
+			output[o + 1] = ar * bi + br * ai;
+		}
+	}
+
+	/**
+	 * Divides a / b = a.conj(b) / max(minimum, |b|^2) on the range [from, to[.
+	 * The output can be a.
+	 * 
+	 * @param minimum
+	 *            lower bound of |b|^2, 0 for no stabilization
+	 */
+	public void divide(float[] a, float[] b, int from, int to, float minimum, float[] output, int offset) {
+		float ar, ai, br, bi, mag;
+		for (int i = from, o = offset; i < to; i += 2, o += 2) {
+			ar = a[i];
+			ai = a[i + 1];
+			br = b[i];
+			bi = b[i + 1];
+			mag = br * br + bi * bi;
+			if (mag < minimum)
+				mag = minimum;
+			output[o] = (ar * br + ai * bi) / mag;
+			output[o + 1] = (ai * br - ar * bi) / mag;
+		}
+	}
+
+	/**
+	 * Computes x = x.a + g in place on the range [from, to[.
+	 */
+	public void multiplyAdd(float[] x, float[] a, float[] g, int from, int to) {
+		float xr, xi, ar, ai;
+		for (int i = from; i < to; i += 2) {
+			xr = x[i];
+			xi = x[i + 1];
+			ar = a[i];
+			ai = a[i + 1];
+			x[i] = xr * ar - xi * ai + g[i];
+			x[i + 1] = xr * ai + xi * ar + g[i + 1];
+		}
+	}
+}
@@ -36,10 +36,12 @@ public class ComplexSignal extends Signal implements SignalListener {
 	public ComplexSignal(String name, int nx, int ny, int nz) {
 		super(name, nx, ny, nz);
 		int step = Math.max(1, nz/SignalCollector.NOTIFICATION_RATE);
-		this.data = new float[nz][];
+		float[][] pooled = SignalCollector.lease(nx, ny, nz, true);
+		this.data = pooled == null ? new float[nz][] : pooled;
 		notify(name, 0);
 		for(int k=0; k<nz; k++) {
-			data[k] = new float[nx * ny * 2];
+			if (pooled == null)
+				data[k] = new float[nx * ny * 2];
 			if (k % step == 0)
 				notify(name, k*100.0/nz);
 		}
@@ -74,27 +76,14 @@ public class ComplexSignal extends Signal implements SignalListener {
 		}
 	}
 
-	public void divide(ComplexSignal denominator) {
-		float a1, a2, b1, b2, mag;
-		float epsilon2 = (float)(Operations.epsilon*Operations.epsilon);
-		int nxy = nx * ny * 2;
-
-		for(int k=0; k<nz; k++)
-		for(int i=0; i< nxy; i+=2) {
-			a1 = data[k][i];
-			b1 = data[k][i+1];
-			a2 = denominator.data[k][i];
-			b2 = denominator.data[k][i+1];
-			mag = a2*a2 + b2*b2;
-			if (mag >= epsilon2) {
-				data[k][i] = (a1*a2 + b1*b2) / mag;
-				data[k][i+1] = (b1*a2 - a1*b2) / mag;
+	public void divide(final ComplexSignal denominator) {
+		final float epsilon2 = (float)(Operations.epsilon*Operations.epsilon);
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				ComplexKernels.get().divide(data[k], denominator.data[k], 2 * from, 2 * to, epsilon2, data[k], 2 * from);
 			}
-			else {
-				data[k][i] = (a1*a2 + b1*b2) / epsilon2;
-				data[k][i+1] = (b1*a2 - a1*b2) / epsilon2;
-			}
-		}
+		});
 	}
 
 	public double[][][] getReal3DArrayAsDouble() {
@@ -132,11 +121,15 @@ public class ComplexSignal extends Signal implements SignalListener {
 		}
 	}
 	
-	public ComplexSignal times(float factor) {
-		int nxy = nx * ny * 2;
-		for (int k = 0; k < nz; k++)
-		for (int i = 0; i < nxy; i++)
-			data[k][i] *= factor;
+	public ComplexSignal times(final float factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				for (int i = 2 * from; i < 2 * to; i++)
+					a[i] *= factor;
+			}
+		});
 		return this;
 	}
 	
@@ -150,34 +143,24 @@ public class ComplexSignal extends Signal implements SignalListener {
 		return this;
 	}
 
-	public ComplexSignal times(ComplexSignal factor) {
-		float a1, a2, b1, b2;
-		int nxy = nx * ny * 2;
-		for(int k=0; k<nz; k++)
-		for(int i=0; i< nxy; i+=2) {
-			a1 = data[k][i];
-			b1 = data[k][i+1];
-			a2 = factor.data[k][i];
-			b2 = factor.data[k][i+1];
-			data[k][i] = a1*a2 - b1*b2;
-			data[k][i+1] = a1*b2 + a2*b1;
-		}
+	public ComplexSignal times(final ComplexSignal factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				Operations.multiply(data[k], factor.data[k], 2 * from, 2 * to, false, data[k], 2 * from);
+			}
+		});
 		return this;
 	}
 	
 	// this <- Ht * this
-	public void timesConjugate(ComplexSignal H) {
-		float a1, a2, b1, b2;
-		int nxy = nx * ny * 2;
-		for(int k=0; k<nz; k++)
-		for(int i=0; i< nxy; i+=2) {
-			a1 = data[k][i];
-			b1 = data[k][i+1];
-			a2 = H.data[k][i];
-			b2 = -H.data[k][i+1];
-			data[k][i] = a1*a2 - b1*b2;
-			data[k][i+1] = a1*b2 + a2*b1;
-		}
+	public void timesConjugate(final ComplexSignal H) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				Operations.multiply(data[k], H.data[k], 2 * from, 2 * to, true, data[k], 2 * from);
+			}
+		});
 	}
 
 	public void plus(ComplexSignal term) {
@@ -215,28 +198,28 @@ public class ComplexSignal extends Signal implements SignalListener {
 	}
 
 	public float[] getInterleaveXYZ() {
-		int nxy = nx*ny*2;
-		float[] interleave = new float[nz*nxy];
+		return getInterleaveXYZ(new float[nz * nx * ny * 2]);
+	}
+	
+	/**
+	 * Copies the signal into a contiguous interleaved buffer. The slices are
+	 * already interleaved so they are copied as blocks.
+	 * 
+	 * @param interleave
+	 *            buffer of size 2*nx*ny*nz
+	 * @return the filled buffer
+	 */
+	public float[] getInterleaveXYZ(float[] interleave) {
+		int nxy = nx * ny * 2;
 		for (int k = 0; k < nz; k++)
-		for (int i = 0; i < nx; i++)
-		for (int j = 0; j < ny; j++) {
-			int index = 2*(k*nx*ny + j*nx + i);
-			interleave[index] = data[k][(i+j*nx)*2];
-			interleave[index + 1] = data[k][(i+j*nx)*2+1];
-		}
+			System.arraycopy(data[k], 0, interleave, k * nxy, nxy);
 		return interleave;
 	}
 	
 	public void setInterleaveXYZ(float[] interleave) {
 		int nxy = nx * ny * 2;
-		this.data = new float[nz][nxy];		
-		for (int i = 0; i < nx; i++)	
-		for (int j = 0; j < ny; j++) 
-		for (int k = 0; k < nz; k++) {
-			int index = 2*(k*nx*ny + j*nx + i);
-			data[k][(i+j*nx)*2] = interleave[index];
-			data[k][(i+j*nx)*2 + 1] = interleave[index+1];
-		}
+		for (int k = 0; k < nz; k++)
+			System.arraycopy(interleave, k * nxy, data[k], 0, nxy);
 	}
 
 	public RealSignal getRealSignal() {
@@ -287,7 +270,7 @@ public class ComplexSignal extends Signal implements SignalListener {
 	}
 
 	public ComplexSignal duplicate() {
-		ComplexSignal out = new ComplexSignal("copy(" + name + ")", nx, ny, nz);
+		ComplexSignal out = replicate("copy(" + name + ")");
 		int nxy = nx * ny * 2;
 		for (int k = 0; k < nz; k++)
 			System.arraycopy(data[k], 0, out.data[k], 0, nxy);
@@ -295,7 +278,19 @@ public class ComplexSignal extends Signal implements SignalListener {
 	}
 
 	public ComplexSignal replicate() {
-		return new ComplexSignal(">" + name, nx, ny, nz);
+		return replicate(">" + name);
+	}
+
+	/**
+	 * Creates a new signal of the same type and of the same size, filled with
+	 * zeros.
+	 * 
+	 * @param name
+	 *            name of the new signal
+	 * @return a new signal
+	 */
+	public ComplexSignal replicate(String name) {
+		return new ComplexSignal(name, nx, ny, nz);
 	}
 
 	public float getEnergy() {
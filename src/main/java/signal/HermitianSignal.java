@@ -0,0 +1,148 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package signal;
+
+/**
+ * This class stores the spectrum of a real signal in a Hermitian half-spectrum
+ * representation. Only the nx/2+1 first columns along X are stored, the other
+ * ones are given by the symmetry X(i, j, k) = conj(X(nx-i, ny-j, nz-k)).
+ * 
+ * The pointwise operations of ComplexSignal and of Operations apply unchanged
+ * on the stored half, at half of the memory and of the cost. The field nx is
+ * the number of stored columns, nxReal is the size of the real signal.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class HermitianSignal extends ComplexSignal {
+
+	final public int nxReal;
+
+	public HermitianSignal(String name, int nxReal, int ny, int nz) {
+		super(name, nxReal / 2 + 1, ny, nz);
+		this.nxReal = nxReal;
+	}
+
+	@Override
+	public ComplexSignal replicate(String name) {
+		return new HermitianSignal(name, nxReal, ny, nz);
+	}
+
+	/**
+	 * Fills the half-spectrum from a full spectrum.
+	 * 
+	 * @param full
+	 *            full spectrum of size [nxReal, ny, nz]
+	 */
+	public void crop(ComplexSignal full) {
+		for (int k = 0; k < nz; k++)
+			for (int j = 0; j < ny; j++)
+				System.arraycopy(full.data[k], 2 * j * nxReal, data[k], 2 * j * nx, 2 * nx);
+	}
+
+	/**
+	 * Fills a full spectrum using the Hermitian symmetry.
+	 * 
+	 * @param full
+	 *            full spectrum of size [nxReal, ny, nz]
+	 */
+	public void expand(ComplexSignal full) {
+		for (int k = 0; k < nz; k++) {
+			int kk = (nz - k) % nz;
+			for (int j = 0; j < ny; j++) {
+				int jj = (ny - j) % ny;
+				System.arraycopy(data[k], 2 * j * nx, full.data[k], 2 * j * nxReal, 2 * nx);
+				for (int i = nx; i < nxReal; i++) {
+					int index = 2 * (nxReal - i + jj * nx);
+					full.data[k][2 * (i + j * nxReal)] = data[kk][index];
+					full.data[k][2 * (i + j * nxReal) + 1] = -data[kk][index + 1];
+				}
+			}
+		}
+	}
+
+	public ComplexSignal expand() {
+		ComplexSignal full = new ComplexSignal("full(" + name + ")", nxReal, ny, nz);
+		expand(full);
+		return full;
+	}
+
+	/**
+	 * Expands the slice k of a spectrum which is Hermitian in XY only, as it is
+	 * after an inverse transform along Z.
+	 * 
+	 * @param half
+	 *            interleaved half slice of size 2*(nxReal/2+1)*ny
+	 * @param nxReal
+	 *            size of the real signal along X
+	 * @param ny
+	 *            size along Y
+	 * @param full
+	 *            interleaved full slice of size 2*nxReal*ny
+	 */
+	public static void expandXY(float[] half, int nxReal, int ny, float[] full) {
+		int mx = nxReal / 2 + 1;
+		for (int j = 0; j < ny; j++) {
+			int jj = (ny - j) % ny;
+			System.arraycopy(half, 2 * j * mx, full, 2 * j * nxReal, 2 * mx);
+			for (int i = mx; i < nxReal; i++) {
+				int index = 2 * (nxReal - i + jj * mx);
+				full[2 * (i + j * nxReal)] = half[index];
+				full[2 * (i + j * nxReal) + 1] = -half[index + 1];
+			}
+		}
+	}
+
+	/**
+	 * Returns the sum of the modulus over the full spectrum, the columns which
+	 * are not stored are counted twice through their symmetric.
+	 */
+	@Override
+	public float getEnergy() {
+		float energy = 0.f;
+		int last = (nxReal % 2 == 0) ? nx - 1 : -1;
+		for (int k = 0; k < nz; k++)
+			for (int j = 0; j < ny; j++)
+				for (int i = 0; i < nx; i++) {
+					int index = 2 * (i + j * nx);
+					float m = (float) Math.sqrt(data[k][index] * data[k][index] + data[k][index + 1] * data[k][index + 1]);
+					energy += (i == 0 || i == last) ? m : 2 * m;
+				}
+		return energy;
+	}
+
+	@Override
+	public String toString() {
+		return "Hermitian Signal [" + nx + " of " + nxReal + ", " + ny + ", " + nz + "]";
+	}
+}
@@ -49,18 +49,46 @@ public class Operations {
 		return log;
 	}
 
-	public static void divide(RealSignal numerator, RealSignal denominator, RealSignal output) { 
+	public static void divide(final RealSignal numerator, final RealSignal denominator, RealSignal output) { 
 		String name = numerator.name + "/" + denominator.name;
 		if (output == null)
 			 output = new RealSignal(name, numerator.nx, numerator.ny, numerator.nz);
-		
-		int nxy = numerator.nx * numerator.ny;
-		for(int k=0; k<numerator.nz; k++)
-		for(int i=0; i< nxy; i++) {
-			if (denominator.data[k][i] < epsilon)
-				output.data[k][i] = 0.0f;
-			else
-				output.data[k][i] = numerator.data[k][i] / denominator.data[k][i];
+		final RealSignal out = output;
+		Parallel.run(numerator.nx, numerator.ny, numerator.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] n = numerator.data[k];
+				float[] d = denominator.data[k];
+				float[] o = out.data[k];
+				for (int i = from; i < to; i++) {
+					if (d[i] < epsilon)
+						o[i] = 0.0f;
+					else
+						o[i] = n[i] / d[i];
+				}
+			}
+		});
+	}
+
+	/**
+	 * Divides two arrays and stores the ratio in an output array at a given
+	 * offset, for example the buffer of a FFT.
+	 * 
+	 * @param numerator
+	 *            array of the numerator
+	 * @param denominator
+	 *            array of the denominator, same length
+	 * @param output
+	 *            output array
+	 * @param offset
+	 *            first index in the output array
+	 */
+	public static void divide(float[] numerator, float[] denominator, float[] output, int offset) {
+		float e = (float) epsilon;
+		int n = numerator.length;
+		for (int i = 0; i < n; i++) {
+			float d = denominator[i];
+			output[offset + i] = d < e ? 0.0f : numerator[i] / d;
 		}
 	}
 
@@ -77,7 +105,7 @@ public class Operations {
 		int ny = s.ny;
 		int nz = s.nz;
 		int nxy = nx * ny * 2;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = s.replicate(name);
 		for(int k=0; k<nz; k++)
 		for(int i=0; i< nxy; i+=2) {
 			result.data[k][i] = s.data[k][i];
@@ -86,58 +114,196 @@ public class Operations {
 		return result;
 	}
 
-	public static void multiply(ComplexSignal a, ComplexSignal b, ComplexSignal output) {
+	public static void multiply(final ComplexSignal a, final ComplexSignal b, ComplexSignal output) {
 		String name = a.name + "*" + b.name;
 		if (output == null)
-			 output = new ComplexSignal(name, a.nx, a.ny, a.nz);
-		int nx = a.nx;
-		int ny = a.ny;
-		int nz = a.nz;
-		double ar, ai, br, bi;
-		int nxy = nx * ny * 2;
-		for(int k=0; k<nz; k++)
-		for(int i=0; i< nxy; i+=2) {
-			ar = a.data[k][i];
-			ai = a.data[k][i+1];
-			br = b.data[k][i];
-			bi = b.data[k][i+1];
-			output.data[k][i] = (float)(ar*br - ai*bi);
-			output.data[k][i+1] = (float)(ar*bi + br*ai);
-		}
+			 output = a.replicate(name);
+		final ComplexSignal out = output;
+		Parallel.run(a.nx, a.ny, a.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				ComplexKernels.get().multiply(a.data[k], b.data[k], 2 * from, 2 * to, false, out.data[k], 2 * from);
+			}
+		});
+	}
+
+	/**
+	 * Multiplies two complex interleaved arrays, a.b or a.conj(b), on the range
+	 * [from, to[ and stores the product in an output array at a given offset,
+	 * for example the buffer of a FFT.
+	 * 
+	 * @param a
+	 *            interleaved array
+	 * @param b
+	 *            interleaved array
+	 * @param from
+	 *            first index, even
+	 * @param to
+	 *            last index, excluded
+	 * @param conjugate
+	 *            true to multiply by the conjugate of b
+	 * @param output
+	 *            output array
+	 * @param offset
+	 *            first index in the output array
+	 */
+	public static void multiply(float[] a, float[] b, int from, int to, boolean conjugate, float[] output, int offset) {
+		ComplexKernels.get().multiply(a, b, from, to, conjugate, output, offset);
+	}
+
+	/**
+	 * Computes X = X.A + G in one pass, the iteration of the Landweber-like
+	 * algorithms in the Fourier domain.
+	 * 
+	 * @param X
+	 *            spectrum updated in place
+	 * @param A
+	 *            multiplicative term
+	 * @param G
+	 *            additive term
+	 */
+	public static void multiplyAdd(final ComplexSignal X, final ComplexSignal A, final ComplexSignal G) {
+		Parallel.run(X.nx, X.ny, X.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				ComplexKernels.get().multiplyAdd(X.data[k], A.data[k], G.data[k], 2 * from, 2 * to);
+			}
+		});
+	}
+
+	/**
+	 * Runs n iterations of X = X.A + G at once, pointwise:
+	 * X = A^n X + (1 + A + ... + A^(n-1)) G. The power and the geometric sum
+	 * are computed together by binary exponentiation in double precision, in
+	 * O(log n) complex products per pixel, without any division by 1 - A.
+	 * 
+	 * @param X
+	 *            estimate updated in place
+	 * @param n
+	 *            number of iterations
+	 */
+	public static void multiplyAdd(final ComplexSignal X, final ComplexSignal A, final ComplexSignal G, final int n) {
+		if (n <= 0)
+			return;
+		final int bits = 31 - Integer.numberOfLeadingZeros(n);
+		Parallel.run(X.nx, X.ny, X.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] x = X.data[k];
+				float[] a = A.data[k];
+				float[] g = G.data[k];
+				for (int i = 2 * from; i < 2 * to; i += 2) {
+					double ar = a[i], ai = a[i + 1];
+					// P = A^m and S = 1 + A + ... + A^(m-1), from m = 0
+					double pr = 1.0, pi = 0.0, sr = 0.0, si = 0.0;
+					for (int b = bits; b >= 0; b--) {
+						// m = 2m: S = S (1 + P), P = P P
+						double tr = sr + sr * pr - si * pi;
+						double ti = si + sr * pi + si * pr;
+						sr = tr;
+						si = ti;
+						tr = pr * pr - pi * pi;
+						pi = 2.0 * pr * pi;
+						pr = tr;
+						if (((n >> b) & 1) == 1) {
+							// m = m + 1: S = S + P, P = P A
+							sr += pr;
+							si += pi;
+							tr = pr * ar - pi * ai;
+							pi = pr * ai + pi * ar;
+							pr = tr;
+						}
+					}
+					double xr = x[i], xi = x[i + 1];
+					x[i] = (float) (pr * xr - pi * xi + sr * g[i] - si * g[i + 1]);
+					x[i + 1] = (float) (pr * xi + pi * xr + sr * g[i + 1] + si * g[i]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Multiplicative update x = max(0, x.u) of the Richardson-Lucy algorithm.
+	 * 
+	 * @param x
+	 *            estimate updated in place
+	 * @param u
+	 *            correction factor
+	 */
+	public static void multiplyPositive(final RealSignal x, final RealSignal u) {
+		Parallel.run(x.nx, x.ny, x.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] s = x.data[k];
+				float[] f = u.data[k];
+				for (int i = from; i < to; i++) {
+					float v = s[i] * f[i];
+					s[i] = v > 0f ? v : 0f;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Multiplicative update of the Richardson-Lucy Total Variation algorithm,
+	 * x = x.u / (1 + lambda.(gx + gy + gz)), where (gx, gy, gz) are the terms
+	 * of the divergence of the normalized gradient.
+	 * 
+	 * @param x
+	 *            estimate updated in place
+	 * @param u
+	 *            correction factor
+	 * @param gx
+	 *            divergence term in X
+	 * @param gy
+	 *            divergence term in Y
+	 * @param gz
+	 *            divergence term in Z
+	 * @param lambda
+	 *            regularization factor
+	 */
+	/**
+	 * x = x * u / (1 + lambda * tv), the update of RLTV where tv is the term
+	 * computed by TotalVariation.
+	 */
+	public static void multiplyTV(final RealSignal x, final RealSignal u, final RealSignal tv, final float lambda) {
+		Parallel.run(x.nx, x.ny, x.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] s = x.data[k];
+				float[] f = u.data[k];
+				float[] t = tv.data[k];
+				for (int i = from; i < to; i++)
+					s[i] = (float) (s[i] * f[i] / (t[i] * (double) lambda + 1.0));
+			}
+		});
 	}
 
 	public static ComplexSignal multiply(ComplexSignal a, ComplexSignal b) {
 		String name = a.name + "*" + b.name;
-		ComplexSignal output = new ComplexSignal(name, a.nx, a.ny, a.nz);
+		ComplexSignal output = a.replicate(name);
 		multiply(a, b, output);
 		return output;
 	}
 
 	public static ComplexSignal multiplyConjugate(ComplexSignal aConjugate, ComplexSignal b) {
 		String name = aConjugate.name + "* *" + b.name;
-		ComplexSignal output = new ComplexSignal(name, b.nx, b.ny, b.nz);
+		ComplexSignal output = b.replicate(name);
 		multiplyConjugate(aConjugate, b, output);
 		return output;
 	}
 
-	public static void multiplyConjugate(ComplexSignal aConjugate, ComplexSignal b, ComplexSignal output) {
+	public static void multiplyConjugate(final ComplexSignal aConjugate, final ComplexSignal b, ComplexSignal output) {
 		String name = aConjugate.name + "* *" + b.name;
 		if (output == null)
-			 output = new ComplexSignal(name, b.nx, b.ny, b.nz);
-		int nx = b.nx;
-		int ny = b.ny;
-		int nz = b.nz;
-		double a1, a2, b1, b2;
-		int nxy = nx * ny * 2;
-		for(int k=0; k<nz; k++)
-		for(int i=0; i< nxy; i+=2) {
-			a1 = aConjugate.data[k][i];
-			b1 = -aConjugate.data[k][i+1];
-			a2 = b.data[k][i];
-			b2 = b.data[k][i+1];
-			output.data[k][i] = (float)(a1*a2 - b1*b2);
-			output.data[k][i+1] = (float)(a1*b2 + a2*b1);
-		}
+			 output = b.replicate(name);
+		final ComplexSignal out = output;
+		Parallel.run(b.nx, b.ny, b.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				ComplexKernels.get().multiply(b.data[k], aConjugate.data[k], 2 * from, 2 * to, true, out.data[k], 2 * from);
+			}
+		});
 	}
 	
 	public static ComplexSignal multiply(double w, ComplexSignal a, ComplexSignal b) {
@@ -145,7 +311,7 @@ public class Operations {
 		int nx = a.nx;
 		int ny = a.ny;
 		int nz = a.nz;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = a.replicate(name);
 		double a1, a2, b1, b2;
 		int nxy = nx * ny * 2;
 		for(int k=0; k<nz; k++)
@@ -165,7 +331,7 @@ public class Operations {
 		int nx = b.nx;
 		int ny = b.ny;
 		int nz = b.nz;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = b.replicate(name);
 		double a1, a2, b1, b2;
 		int nxy = nx * ny * 2;
 		for(int k=0; k<nz; k++)
@@ -180,45 +346,27 @@ public class Operations {
 		return result;
 	}
 
-	public static ComplexSignal divideStabilized(ComplexSignal numerator, ComplexSignal denominator) {
+	public static ComplexSignal divideStabilized(final ComplexSignal numerator, final ComplexSignal denominator) {
 		String name = numerator.name + " / " + denominator.name;
-		int nx = numerator.nx;
-		int ny = numerator.ny;
-		int nz = numerator.nz;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
-		double a1, a2, b1, b2, mag;
-		int nxy = nx * ny * 2;
-		for(int k=0; k<nz; k++)
-		for(int i=0; i< nxy; i+=2) {
-			a1 = numerator.data[k][i];
-			b1 = numerator.data[k][i+1];
-			a2 = denominator.data[k][i];
-			b2 = denominator.data[k][i+1];
-			mag = Math.max(epsilon, a2*a2 + b2*b2);
-			result.data[k][i] = (float)((a1*a2 + b1*b2) / mag);
-			result.data[k][i+1] = (float)((b1*a2 - a1*b2) / mag);
-		}
+		final ComplexSignal result = numerator.replicate(name);
+		Parallel.run(numerator.nx, numerator.ny, numerator.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				ComplexKernels.get().divide(numerator.data[k], denominator.data[k], 2 * from, 2 * to, (float) epsilon, result.data[k], 2 * from);
+			}
+		});
 		return result;
 	}
 	
-	public static ComplexSignal divideNotStabilized(ComplexSignal numerator, ComplexSignal denominator) {
+	public static ComplexSignal divideNotStabilized(final ComplexSignal numerator, final ComplexSignal denominator) {
 		String name = numerator.name + " /0/ " + denominator.name;
-		int nx = numerator.nx;
-		int ny = numerator.ny;
-		int nz = numerator.nz;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
-		double a1, a2, b1, b2;
-		int nxy = nx * ny * 2;
-		for(int k=0; k<nz; k++)
-		for(int i=0; i< nxy; i+=2) {
-			a1 = numerator.data[k][i];
-			b1 = numerator.data[k][i+1];
-			a2 = denominator.data[k][i];
-			b2 = denominator.data[k][i+1];
-			double mag = a2*a2 + b2*b2;
-			result.data[k][i] = (float)((a1*a2 + b1*b2) / mag);
-			result.data[k][i+1] = (float)((b1*a2 - a1*b2) / mag);
-		}
+		final ComplexSignal result = numerator.replicate(name);
+		Parallel.run(numerator.nx, numerator.ny, numerator.nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				ComplexKernels.get().divide(numerator.data[k], denominator.data[k], 2 * from, 2 * to, 0f, result.data[k], 2 * from);
+			}
+		});
 		return result;
 	}
 
@@ -228,7 +376,7 @@ public class Operations {
 		int ny = s1.ny;
 		int nz = s1.nz;
 		int nxy = nx * ny * 2;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = s1.replicate(name);
 		for(int k=0; k<nz; k++)
 		for(int i=0; i<nxy; i++)
 			result.data[k][i] = s1.data[k][i] + s2.data[k][i];
@@ -241,7 +389,7 @@ public class Operations {
 		int ny = s1.ny;
 		int nz = s1.nz;
 		int nxy = nx * ny * 2;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = s1.replicate(name);
 		for(int k=0; k<nz; k++)
 		for(int i=0; i<nxy; i++)
 			result.data[k][i] = s1.data[k][i] - s2.data[k][i];
@@ -270,7 +418,7 @@ public class Operations {
 		int nx = h.nx;
 		int ny = h.ny;
 		int nz = h.nz;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = h.replicate(name);
 		double a, b;
 		int nxy = nx * ny * 2;
 		for(int k=0; k<nz; k++)
@@ -289,7 +437,7 @@ public class Operations {
 		int nx = h.nx;
 		int ny = h.ny;
 		int nz = h.nz;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = h.replicate(name);
 		double a, b;
 		int nxy = nx * ny * 2;
 		for(int k=0; k<nz; k++)
@@ -308,7 +456,7 @@ public class Operations {
 		int nx = h.nx;
 		int ny = h.ny;
 		int nz = h.nz;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = h.replicate(name);
 		double a, b;
 		int nxy = nx * ny * 2;
 		for(int k=0; k<nz; k++)
@@ -327,7 +475,7 @@ public class Operations {
 		int ny = s.ny;
 		int nz = s.nz;
 		int nxy = nx * ny * 2;
-		ComplexSignal result = new ComplexSignal(name, nx, ny, nz);
+		ComplexSignal result = s.replicate(name);
 		for(int k=0; k<nz; k++)
 		for(int i=0; i<nxy; i++)
 			result.data[k][i] = (float)(factor * s.data[k][i]);
@@ -0,0 +1,242 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package signal;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class is the shared engine to run the pixelwise loops of the signals in
+ * parallel. The volume is partitioned in units: a z-slab (one slice) for a 3D
+ * signal, a block of rows for a 2D signal. The partition depends only on the
+ * size of the signal, never on the number of threads.
+ * 
+ * The reductions compute one partial result per unit and merge the partials
+ * in the order of the units, the results are thus bit-reproducible whatever
+ * the parallelism level.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+public class Parallel {
+
+	/** Minimal number of pixels of a unit of a 2D signal. */
+	private static int			grain		= 16384;
+
+	/** Signals smaller than this number of pixels are processed sequentially. */
+	private static int			threshold	= 65536;
+
+	private static int			parallelism	= getAvailableProcessors();
+
+	private static ForkJoinPool	pool		= null;
+
+	/**
+	 * Pixelwise processing of a range of a slice.
+	 */
+	public static abstract class Stripe {
+		/**
+		 * @param k
+		 *            index of the slice
+		 * @param from
+		 *            first pixel, multiple of nx
+		 * @param to
+		 *            last pixel, excluded
+		 */
+		public abstract void apply(int k, int from, int to);
+	}
+
+	/**
+	 * Reduction of a range of a slice to a vector of partial results.
+	 */
+	public static abstract class Reduction {
+		/**
+		 * @param k
+		 *            index of the slice
+		 * @param from
+		 *            first pixel, multiple of nx
+		 * @param to
+		 *            last pixel, excluded
+		 * @return the partial results on this range
+		 */
+		public abstract double[] apply(int k, int from, int to);
+
+		/**
+		 * Merges a partial result into the accumulated result, by default a
+		 * sum.
+		 */
+		public void merge(double[] accumulated, double[] partial) {
+			for (int i = 0; i < accumulated.length; i++)
+				accumulated[i] += partial[i];
+		}
+	}
+
+	public static int getAvailableProcessors() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+
+	public static int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of threads of the engine, 1 to run sequentially.
+	 * 
+	 * @param threads
+	 *            number of threads, 0 or negative for all the processors
+	 */
+	public static synchronized void setParallelism(int threads) {
+		int p = threads <= 0 ? getAvailableProcessors() : threads;
+		if (p == parallelism)
+			return;
+		parallelism = p;
+		if (pool != null)
+			pool.shutdown();
+		pool = null;
+	}
+
+	public static void setThreshold(int pixels) {
+		threshold = Math.max(0, pixels);
+	}
+
+	public static int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Runs a pixelwise processing on all the units of a signal.
+	 */
+	public static void run(int nx, int ny, int nz, Stripe stripe) {
+		int rows = getRowsPerUnit(nx, ny, nz);
+		int units = getUnits(ny, nz, rows);
+		execute(new Slab(nx, ny, nz, rows, 0, units, stripe, null, null, grainOf(units)));
+	}
+
+	/**
+	 * Runs a reduction on all the units of a signal. The partial results are
+	 * merged in the order of the units.
+	 * 
+	 * @return the merged result
+	 */
+	public static double[] reduce(int nx, int ny, int nz, Reduction reduction) {
+		int rows = getRowsPerUnit(nx, ny, nz);
+		int units = getUnits(ny, nz, rows);
+		double[][] partials = new double[units][];
+		execute(new Slab(nx, ny, nz, rows, 0, units, null, reduction, partials, grainOf(units)));
+		double[] result = partials[0];
+		for (int u = 1; u < units; u++)
+			reduction.merge(result, partials[u]);
+		return result;
+	}
+
+	private static void execute(Slab slab) {
+		long size = (long) slab.nx * slab.ny * slab.nz;
+		if (parallelism <= 1 || size < threshold || slab.u1 - slab.u0 <= 1) {
+			slab.sequential(slab.u0, slab.u1);
+			return;
+		}
+		if (ForkJoinTask.inForkJoinPool())
+			slab.invoke();
+		else
+			getPool().invoke(slab);
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null)
+			pool = new ForkJoinPool(parallelism);
+		return pool;
+	}
+
+	private static int getRowsPerUnit(int nx, int ny, int nz) {
+		if (nz > 1)
+			return ny;
+		return Math.max(1, Math.min(ny, grain / Math.max(1, nx)));
+	}
+
+	private static int getUnits(int ny, int nz, int rows) {
+		if (nz > 1)
+			return nz;
+		return Math.max(1, (ny + rows - 1) / rows);
+	}
+
+	private static int grainOf(int units) {
+		return Math.max(1, units / (4 * parallelism));
+	}
+
+	private static class Slab extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private int					nx, ny, nz, rows, u0, u1, grain;
+		private Stripe				stripe;
+		private Reduction			reduction;
+		private double[][]			partials;
+
+		public Slab(int nx, int ny, int nz, int rows, int u0, int u1, Stripe stripe, Reduction reduction, double[][] partials, int grain) {
+			this.nx = nx;
+			this.ny = ny;
+			this.nz = nz;
+			this.rows = rows;
+			this.u0 = u0;
+			this.u1 = u1;
+			this.stripe = stripe;
+			this.reduction = reduction;
+			this.partials = partials;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (u1 - u0 <= grain) {
+				sequential(u0, u1);
+				return;
+			}
+			int m = (u0 + u1) / 2;
+			invokeAll(
+					new Slab(nx, ny, nz, rows, u0, m, stripe, reduction, partials, grain), 
+					new Slab(nx, ny, nz, rows, m, u1, stripe, reduction, partials, grain));
+		}
+
+		private void sequential(int from, int to) {
+			for (int u = from; u < to; u++) {
+				int k = nz > 1 ? u : 0;
+				int i0 = nz > 1 ? 0 : u * rows * nx;
+				int i1 = nz > 1 ? nx * ny : Math.min(ny, (u + 1) * rows) * nx;
+				if (stripe != null)
+					stripe.apply(k, i0, i1);
+				else
+					partials[u] = reduction.apply(k, i0, i1);
+			}
+		}
+	}
+}
@@ -32,6 +32,7 @@
 package signal;
 
 import java.awt.image.BufferedImage;
+import java.nio.FloatBuffer;
 
 import deconvolutionlab.monitor.Monitors;
 import signal.range.RescaledRange;
@@ -42,11 +43,13 @@ public class RealSignal extends Signal implements SignalListener {
 	
 	public RealSignal(String name, int nx, int ny, int nz) {
 		super(name, nx, ny, nz);
-		this.data = new float[nz][];
+		float[][] pooled = SignalCollector.lease(nx, ny, nz, false);
+		this.data = pooled == null ? new float[nz][] : pooled;
 		int step = Math.max(1, nz / SignalCollector.NOTIFICATION_RATE);
 		notify(name, 0);
 		for (int k = 0; k < nz; k++) {
-			data[k] = new float[nx * ny];
+			if (pooled == null)
+				data[k] = new float[nx * ny];
 			if (k % step == 0)
 				notify(name, k * 100.0 / nz);
 		}
@@ -101,7 +104,7 @@ public class RealSignal extends Signal implements SignalListener {
 		for (int k = 0; k < nz; k++)
 			for (int i = 0; i < nxy; i++) {
 				if (data[k][i] <= inferiorLimit)
-					data[k][i] += inferiorLimit;
+					data[k][i] -= inferiorLimit;
 				else if (data[k][i] >= superiorLimit)
 					data[k][i] -= superiorLimit;
 				else
@@ -116,12 +119,16 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param factor
 	 * @return the instance of the calling object
 	 */
-	public RealSignal times(RealSignal factor) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] *= factor.data[k][i];
+	public RealSignal times(final RealSignal factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				float[] b = factor.data[k];
+				for (int i = from; i < to; i++)
+					a[i] *= b[i];
 			}
+		});
 		return this;
 	}
 
@@ -131,12 +138,15 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param factor
 	 * @return the instance of the calling object
 	 */
-	public RealSignal times(float factor) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] *= factor;
+	public RealSignal times(final float factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				for (int i = from; i < to; i++)
+					a[i] *= factor;
 			}
+		});
 		return this;
 	}
 
@@ -146,12 +156,16 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param factor
 	 * @return the instance of the calling object
 	 */
-	public RealSignal plus(RealSignal factor) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] += factor.data[k][i];
+	public RealSignal plus(final RealSignal factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				float[] b = factor.data[k];
+				for (int i = from; i < to; i++)
+					a[i] += b[i];
 			}
+		});
 		return this;
 	}
 
@@ -161,12 +175,16 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param factor
 	 * @return the instance of the calling object
 	 */
-	public RealSignal minus(RealSignal factor) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] -= factor.data[k][i];
+	public RealSignal minus(final RealSignal factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				float[] b = factor.data[k];
+				for (int i = from; i < to; i++)
+					a[i] -= b[i];
 			}
+		});
 		return this;
 	}
 
@@ -176,12 +194,15 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param term
 	 * @return the instance of the calling object
 	 */
-	public RealSignal plus(float term) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] += term;
+	public RealSignal plus(final float term) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				for (int i = from; i < to; i++)
+					a[i] += term;
 			}
+		});
 		return this;
 	}
 
@@ -191,12 +212,15 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param term
 	 * @return the instance of the calling object
 	 */
-	public RealSignal minus(float term) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] -= term;
+	public RealSignal minus(final float term) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				for (int i = from; i < to; i++)
+					a[i] -= term;
 			}
+		});
 		return this;
 	}
 
@@ -206,12 +230,16 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param factor
 	 * @return the instance of the calling object
 	 */
-	public RealSignal max(RealSignal factor) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] = Math.max(data[k][i], factor.data[k][i]);
+	public RealSignal max(final RealSignal factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				float[] b = factor.data[k];
+				for (int i = from; i < to; i++)
+					a[i] = Math.max(a[i], b[i]);
 			}
+		});
 		return this;
 	}
 
@@ -221,12 +249,16 @@ public class RealSignal extends Signal implements SignalListener {
 	 * @param factor
 	 * @return the instance of the calling object
 	 */
-	public RealSignal min(RealSignal factor) {
-		int nxy = nx * ny;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				data[k][i] = Math.min(data[k][i], factor.data[k][i]);
+	public RealSignal min(final RealSignal factor) {
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = data[k];
+				float[] b = factor.data[k];
+				for (int i = from; i < to; i++)
+					a[i] = Math.min(a[i], b[i]);
 			}
+		});
 		return this;
 	}
 
@@ -261,12 +293,17 @@ public class RealSignal extends Signal implements SignalListener {
 	}
 
 	public float getEnergy() {
-		int nxy = nx * ny;
-		float energy = 0.f;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++)
-				energy += data[k][i];
-		return energy;
+		double[] energy = Parallel.reduce(nx, ny, nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] a = data[k];
+				double sum = 0.0;
+				for (int i = from; i < to; i++)
+					sum += a[i];
+				return new double[] { sum };
+			}
+		});
+		return (float) energy[0];
 	}
 
 	public float[] getStats() {
@@ -279,45 +316,74 @@ public class RealSignal extends Signal implements SignalListener {
 	
 	public double[] getStatsAsDouble() {
 		int nxy = nx * ny;
-		float min = Float.MAX_VALUE;
-		float max = -Float.MAX_VALUE;
-		double norm1 = 0.0;
-		double norm2 = 0.0;
-		double mean = 0.0;
-		
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				float v = data[k][i];
-				max = Math.max(max, v);
-				min = Math.min(min, v);
-				mean += v;
-				norm1 += (v > 0 ? v : -v);
-				norm2 += v * v;
+		double[] moments = Parallel.reduce(nx, ny, nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] a = data[k];
+				float min = Float.MAX_VALUE;
+				float max = -Float.MAX_VALUE;
+				double sum = 0.0;
+				double norm1 = 0.0;
+				double norm2 = 0.0;
+				for (int i = from; i < to; i++) {
+					float v = a[i];
+					max = Math.max(max, v);
+					min = Math.min(min, v);
+					sum += v;
+					norm1 += (v > 0 ? v : -v);
+					norm2 += v * v;
+				}
+				return new double[] { sum, min, max, norm1, norm2 };
 			}
-		mean = mean / (nz * nxy);
-		norm1 = norm1 / (nz * nxy);
-		norm2 = Math.sqrt(norm2 / (nz * nxy));
-		double stdev = 0.0;
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				stdev += (data[k][i] - mean) * (data[k][i] - mean);
+
+			@Override
+			public void merge(double[] accumulated, double[] partial) {
+				accumulated[0] += partial[0];
+				accumulated[1] = Math.min(accumulated[1], partial[1]);
+				accumulated[2] = Math.max(accumulated[2], partial[2]);
+				accumulated[3] += partial[3];
+				accumulated[4] += partial[4];
 			}
-		stdev = Math.sqrt(stdev / (nz * nxy));
-		return new double[] { mean, min, max, stdev, norm1, norm2 };
+		});
+		final double mean = moments[0] / (nz * nxy);
+		double norm1 = moments[3] / (nz * nxy);
+		double norm2 = Math.sqrt(moments[4] / (nz * nxy));
+		double[] variance = Parallel.reduce(nx, ny, nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] a = data[k];
+				double sum = 0.0;
+				for (int i = from; i < to; i++)
+					sum += (a[i] - mean) * (a[i] - mean);
+				return new double[] { sum };
+			}
+		});
+		double stdev = Math.sqrt(variance[0] / (nz * nxy));
+		return new double[] { mean, moments[1], moments[2], stdev, norm1, norm2 };
 	}
 
 	public float[] getExtrema() {
-		int nxy = nx * ny;
-		float min = Float.MAX_VALUE;
-		float max = -Float.MAX_VALUE;
+		double[] extrema = Parallel.reduce(nx, ny, nz, new Parallel.Reduction() {
+			@Override
+			public double[] apply(int k, int from, int to) {
+				float[] a = data[k];
+				float min = Float.MAX_VALUE;
+				float max = -Float.MAX_VALUE;
+				for (int i = from; i < to; i++) {
+					float v = a[i];
+					max = Math.max(max, v);
+					min = Math.min(min, v);
+				}
+				return new double[] { min, max };
+			}
 
-		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++) {
-				float v = data[k][i];
-				max = Math.max(max, v);
-				min = Math.min(min, v);
+			@Override
+			public void merge(double[] accumulated, double[] partial) {
+				accumulated[0] = Math.min(accumulated[0], partial[0]);
+				accumulated[1] = Math.max(accumulated[1], partial[1]);
 			}
-		return new float[] { min, max };
+		});
+		return new float[] { (float) extrema[0], (float) extrema[1] };
 	}
 
 	public RealSignal normalize(double to) {
@@ -374,6 +440,25 @@ public class RealSignal extends Signal implements SignalListener {
 					data[k][i + nx * j] = interleave[(k * nx * ny + j * nx + i) * 2];
 	}
 
+	/**
+	 * Sets the signal from the real part of a contiguous interleaved buffer and
+	 * multiplies it by a factor in the same pass.
+	 * 
+	 * @param interleave
+	 *            buffer of size 2*nx*ny*nz
+	 * @param factor
+	 *            multiplicative factor, the normalization of an inverse FFT
+	 */
+	public void setInterleaveXYZAtReal(float[] interleave, float factor) {
+		int nxy = nx * ny;
+		for (int k = 0; k < nz; k++) {
+			float[] slice = data[k];
+			int offset = 2 * k * nxy;
+			for (int i = 0; i < nxy; i++)
+				slice[i] = interleave[offset + 2 * i] * factor;
+		}
+	}
+
 	public float[] getInterleaveXYAtReal(int k) {
 		float real[] = new float[nx * ny * 2];
 		for (int i = 0; i < nx; i++)
@@ -393,11 +478,20 @@ public class RealSignal extends Signal implements SignalListener {
 	}
 
 	public float[] getXYZ() {
+		return getXYZ(new float[nz * nx * ny]);
+	}
+
+	/**
+	 * Copies the signal into a contiguous buffer, slice by slice.
+	 * 
+	 * @param d
+	 *            buffer of size at least nx*ny*nz
+	 * @return the filled buffer
+	 */
+	public float[] getXYZ(float[] d) {
 		int nxy = nx * ny;
-		float[] d = new float[nz * nx * ny];
 		for (int k = 0; k < nz; k++)
-			for (int i = 0; i < nxy; i++)
-				d[k * nxy + i] = data[k][i];
+			System.arraycopy(data[k], 0, d, k * nxy, nxy);
 		return d;
 	}
 
@@ -410,12 +504,21 @@ public class RealSignal extends Signal implements SignalListener {
 				this.data[k][i] = data[k * nxy + i];
 	}
 
+	/**
+	 * Returns the slice k itself, not a copy. A caller keeping it beyond the
+	 * life of the signal has to detach the signal from the pool, see
+	 * SignalCollector.detach().
+	 */
 	public float[] getXY(int k) {
 		return data[k];
 	}
 
+	/**
+	 * Copies the values of an array into the slice k, the array is not kept
+	 * by the signal and a pooled slice is never shared with the caller.
+	 */
 	public void setXY(int k, float slice[]) {
-		data[k] = slice;
+		System.arraycopy(slice, 0, data[k], 0, nx * ny);
 	}
 
 	public float[] getX(int j, int k) {
@@ -528,6 +631,47 @@ public class RealSignal extends Signal implements SignalListener {
 		}
 	}
 
+	/**
+	 * Extracts a block, the parts outside of the signal are set to zero. The
+	 * block of an offloaded signal is read from its storage, the rest of the
+	 * signal stays offloaded.
+	 * 
+	 * @param x0
+	 *            origin in X
+	 * @param y0
+	 *            origin in Y
+	 * @param z0
+	 *            origin in Z
+	 * @param mx
+	 *            size of the block in X
+	 * @param my
+	 *            size of the block in Y
+	 * @param mz
+	 *            size of the block in Z
+	 * @return the block
+	 */
+	public RealSignal getBlock(int x0, int y0, int z0, int mx, int my, int mz) {
+		RealSignal block = new RealSignal("block(" + name + ")", mx, my, mz);
+		int vx = Math.min(mx, nx - x0);
+		for (int k = 0; k < mz; k++) {
+			if (z0 + k < 0 || z0 + k >= nz)
+				continue;
+			FloatBuffer slab = getSlab(z0 + k);
+			for (int j = 0; j < my; j++) {
+				if (y0 + j < 0 || y0 + j >= ny)
+					continue;
+				if (slab == null) {
+					System.arraycopy(data[z0 + k], x0 + (y0 + j) * nx, block.data[k], j * mx, vx);
+				}
+				else {
+					slab.position(x0 + (y0 + j) * nx);
+					slab.get(block.data[k], j * mx, vx);
+				}
+			}
+		}
+		return block;
+	}
+
 	public RealSignal changeSizeAs(RealSignal model) {
 		return size(model.nx, model.ny, model.nz);
 	}
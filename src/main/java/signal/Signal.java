@@ -31,6 +31,11 @@
 
 package signal;
 
+import java.io.IOException;
+import java.nio.FloatBuffer;
+
+import signal.storage.AbstractStorage;
+
 /**
  * This class is an abstract class to store a 3D signal in a float array 'data'.
  * The data are store in a 2D array, the first index represents the z direction
@@ -50,6 +55,9 @@ public class Signal {
 	public float	data[][];
 	public String	name = "untitled";
 	
+	private AbstractStorage	storage	= null;
+	private FloatBuffer		slabs[]	= null;
+	
 	public Signal(String name, int nx, int ny, int nz) {
 		this.name = name;
 		this.nx = nx;
@@ -66,4 +74,62 @@ public class Signal {
 		return nx + "x" + ny + "x" + nz + " ";
 	}
 	
+	/**
+	 * Moves the slices of the signal into the storage and releases the
+	 * on-heap arrays. The signal should not be accessed until reload() is
+	 * called.
+	 * 
+	 * @param storage
+	 *            backing store of the slices
+	 * @throws IOException
+	 *             if the storage is not able to allocate the slabs
+	 */
+	public void offload(AbstractStorage storage) throws IOException {
+		if (storage == null || slabs != null)
+			return;
+		FloatBuffer buffers[] = storage.allocate(name, nz, data[0].length);
+		for (int k = 0; k < nz; k++) {
+			buffers[k].clear();
+			buffers[k].put(data[k]);
+		}
+		for (int k = 0; k < nz; k++)
+			data[k] = new float[0];
+		this.storage = storage;
+		this.slabs = buffers;
+	}
+
+	/**
+	 * Brings back the slices of an offloaded signal into on-heap arrays and
+	 * releases the storage.
+	 */
+	public void reload() {
+		if (slabs == null)
+			return;
+		for (int k = 0; k < nz; k++) {
+			float slice[] = new float[slabs[k].capacity()];
+			slabs[k].clear();
+			slabs[k].get(slice);
+			data[k] = slice;
+		}
+		storage.release(slabs);
+		storage = null;
+		slabs = null;
+	}
+
+	public boolean isOffloaded() {
+		return slabs != null;
+	}
+
+	/**
+	 * Returns a view of the slab of one slice of an offloaded signal, the
+	 * view has its own position, several threads can read the same slab.
+	 * 
+	 * @param k
+	 *            index of the slice
+	 * @return the view of the slab, or null if the signal is not offloaded
+	 */
+	protected FloatBuffer getSlab(int k) {
+		FloatBuffer slab[] = slabs;
+		return slab == null ? null : slab[k].duplicate();
+	}
 }
@@ -1,6 +1,10 @@
 package signal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.WeakHashMap;
 
 import javax.swing.JScrollPane;
 
@@ -27,6 +31,15 @@ public class SignalCollector {
 	private static ArrayList<Signal>	signals;
 	protected final static int			NOTIFICATION_RATE	= 25;
 
+	private static long					poolBudget		= 0;
+	private static long					poolBytes		= 0;
+	private static long					poolHits		= 0;
+	private static long					poolMisses		= 0;
+	private static long					poolEvicted		= 0;
+	private static LinkedList<PoolEntry>	pool			= new LinkedList<PoolEntry>();
+	private static WeakHashMap<float[], Boolean> leased	= new WeakHashMap<float[], Boolean>();
+	private static Object				lock			= new Object();
+
 	static {
 		bytesReal = 0;
 		countReal = 0;
@@ -41,6 +54,9 @@ public class SignalCollector {
 		columns.add(new CustomizedColumn("Count", String.class, 100, false));
 		columns.add(new CustomizedColumn("Total", String.class, 100, false));
 		columns.add(new CustomizedColumn("Memory", String.class, 100, false));
+		columns.add(new CustomizedColumn("Hit", String.class, 60, false));
+		columns.add(new CustomizedColumn("Miss", String.class, 60, false));
+		columns.add(new CustomizedColumn("Evicted", String.class, 100, false));
 		table = new CustomizedTable(columns, true);
 		table.getColumnModel().getColumn(4).setMaxWidth(100);
 		table.getColumnModel().getColumn(4).setMinWidth(100);
@@ -60,6 +76,7 @@ public class SignalCollector {
 				signal.data[z] = new float[1];
 		}
 		signals.clear();
+		clearPool();
 		table.removeRows();
 	}
 
@@ -72,24 +89,31 @@ public class SignalCollector {
 	}
 
 	public static void marker(String msg) {
-		String row[] = { "", msg, "", "", "", "" };
+		String row[] = { "", msg, "", "", "", "", "", "", "" };
 		table.append(row);
 	}
 
-	public static void alloc(Signal signal) {
+	public static synchronized void alloc(Signal signal) {
 		if (signal == null) {
 			marker("error in allocating");
 			return;
 		}
 		signals.add(signal);
+		if (poolBudget > 0) {
+			synchronized (lock) {
+				for (int z = 0; z < signal.nz; z++)
+					leased.put(signal.data[z], Boolean.TRUE);
+			}
+		}
 		addTable(signal, 1);
 	}
 
-	public static void free(Signal signal) { 
+	public static synchronized void free(Signal signal) { 
 		if (signal == null) { 
 			marker("error in freeing");
 			return;
 		}
+		recycle(signal);
 		for (int z = 0; z < signal.nz; z++)
 			signal.data[z] = new float[1];
 
@@ -98,7 +122,7 @@ public class SignalCollector {
 		signal = null;
 	}
 
-	public static void addTable(Signal signal, int sign) {
+	public static synchronized void addTable(Signal signal, int sign) {
 		boolean complex = signal instanceof ComplexSignal;
 		int nx = signal.nx;
 		int ny = signal.ny;
@@ -123,7 +147,10 @@ public class SignalCollector {
 		String dim = "" + nx + "x" + ny + "x" + nz;
 		String c = "" + (countReal + countComplex);
 		String a = NumFormat.bytes(bytesReal + bytesComplex);
-		String row[] = { t, (sign > 0 ? "+" : "-") + signal.name, dim, c, a, m };
+		String hit = poolBudget > 0 ? "" + poolHits : "";
+		String miss = poolBudget > 0 ? "" + poolMisses : "";
+		String evicted = poolBudget > 0 ? NumFormat.bytes(poolEvicted) : "";
+		String row[] = { t, (sign > 0 ? "+" : "-") + signal.name, dim, c, a, m, hit, miss, evicted };
 		table.append(row);
 	}
 	
@@ -153,4 +180,160 @@ public class SignalCollector {
 		bytesComplex = 0;
 		bytesReal = 0;
 	}
+
+	/**
+	 * Sets the maximum number of bytes kept in the pool of slices. The pool is
+	 * disabled if the budget is 0.
+	 * 
+	 * @param bytes
+	 *            budget in bytes
+	 */
+	public static void setPoolBudget(long bytes) {
+		synchronized (lock) {
+			poolBudget = Math.max(0, bytes);
+			evict(0);
+			if (poolBudget == 0)
+				leased.clear();
+		}
+	}
+
+	public static long getPoolBudget() {
+		return poolBudget;
+	}
+
+	public static long getPoolBytes() {
+		return poolBytes;
+	}
+
+	public static long getPoolHits() {
+		return poolHits;
+	}
+
+	public static long getPoolMisses() {
+		return poolMisses;
+	}
+
+	public static long getPoolEvictedBytes() {
+		return poolEvicted;
+	}
+
+	public static void clearPool() {
+		synchronized (lock) {
+			pool.clear();
+			leased.clear();
+			poolBytes = 0;
+			poolHits = 0;
+			poolMisses = 0;
+			poolEvicted = 0;
+		}
+	}
+
+	/**
+	 * Leases a set of zeroed slices from the pool. The most recently returned
+	 * set with the same dimensions is reused.
+	 * 
+	 * @param nx
+	 *            size in X
+	 * @param ny
+	 *            size in Y
+	 * @param nz
+	 *            size in Z
+	 * @param complex
+	 *            true for interleaved complex slices
+	 * @return the slices or null if the pool has no matching set
+	 */
+	public static float[][] lease(int nx, int ny, int nz, boolean complex) {
+		if (poolBudget <= 0)
+			return null;
+		float[][] slices = null;
+		synchronized (lock) {
+			Iterator<PoolEntry> iterator = pool.descendingIterator();
+			while (iterator.hasNext()) {
+				PoolEntry entry = iterator.next();
+				if (entry.matches(nx, ny, nz, complex)) {
+					iterator.remove();
+					poolBytes -= entry.bytes;
+					slices = entry.slices;
+					break;
+				}
+			}
+			if (slices == null) {
+				poolMisses++;
+				return null;
+			}
+			poolHits++;
+		}
+		for (int z = 0; z < nz; z++)
+			Arrays.fill(slices[z], 0f);
+		return slices;
+	}
+
+	/**
+	 * Removes the slices of the signal from the pool ownership, they will not
+	 * be recycled when the signal is freed. It has to be called when the slices
+	 * are shared with an other object, for example a displayed image.
+	 * 
+	 * @param signal
+	 *            the signal to detach
+	 */
+	public static void detach(Signal signal) {
+		if (signal == null || signal.data == null)
+			return;
+		synchronized (lock) {
+			for (int z = 0; z < signal.nz; z++)
+				if (signal.data[z] != null)
+					leased.remove(signal.data[z]);
+		}
+	}
+
+	private static void recycle(Signal signal) {
+		if (poolBudget <= 0 || signal.data == null)
+			return;
+		boolean complex = signal instanceof ComplexSignal;
+		long bytes = 4L * signal.nx * signal.ny * signal.nz * (complex ? 2 : 1);
+		float[][] slices = new float[signal.nz][];
+		synchronized (lock) {
+			boolean owned = true;
+			for (int z = 0; z < signal.nz; z++) {
+				slices[z] = signal.data[z];
+				if (slices[z] == null || leased.remove(slices[z]) == null)
+					owned = false;
+			}
+			if (!owned || bytes > poolBudget)
+				return;
+			evict(bytes);
+			pool.addLast(new PoolEntry(signal.nx, signal.ny, signal.nz, complex, slices, bytes));
+			poolBytes += bytes;
+		}
+	}
+
+	private static void evict(long bytes) {
+		while (poolBytes + bytes > poolBudget && pool.size() > 0) {
+			PoolEntry entry = pool.removeFirst();
+			poolBytes -= entry.bytes;
+			poolEvicted += entry.bytes;
+		}
+	}
+
+	private static class PoolEntry {
+		private int			nx;
+		private int			ny;
+		private int			nz;
+		private boolean		complex;
+		private float[][]	slices;
+		private long		bytes;
+
+		public PoolEntry(int nx, int ny, int nz, boolean complex, float[][] slices, long bytes) {
+			this.nx = nx;
+			this.ny = ny;
+			this.nz = nz;
+			this.complex = complex;
+			this.slices = slices;
+			this.bytes = bytes;
+		}
+
+		public boolean matches(int nx, int ny, int nz, boolean complex) {
+			return this.nx == nx && this.ny == ny && this.nz == nz && this.complex == complex;
+		}
+	}
 }
@@ -0,0 +1,164 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package signal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fused stencil of the total variation term of RLTV. For every voxel, the
+ * term is the sum over the axes of the forward difference of the normalized
+ * forward gradient of x:
+ * 
+ * t = (nx - nx[+1,0,0]) + (ny - ny[0,+1,0]) + (nz - nz[0,0,+1]) where n = grad
+ * x / |grad x|
+ * 
+ * The differences are zero on the last sample of an axis. The term is
+ * computed in one parallel sweep of signal.Parallel: a unit normalizes the
+ * gradient of its rows, plus one halo row, and of the next slice in a
+ * workspace of its thread, then writes the term. The normalized gradient of
+ * the next slice is kept for the following slice of the same thread, so a
+ * slice is normalized once if the units of a thread are consecutive. No
+ * signal is allocated except the output.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+public class TotalVariation {
+
+	/** Identifies a sweep, the workspace of an older sweep is stale. */
+	private static AtomicLong				sweeps		= new AtomicLong();
+
+	private static ThreadLocal<Workspace>	workspace	= new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	/**
+	 * Computes the total variation term of x in output.
+	 */
+	public static void compute(final RealSignal x, final RealSignal output) {
+		final int nx = x.nx;
+		final int ny = x.ny;
+		final int nz = x.nz;
+		final long sweep = sweeps.incrementAndGet();
+		final float e = (float) Operations.epsilon;
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				int r0 = from / nx;
+				int r1 = to / nx;
+				int halo = Math.min(r1 + 1, ny);
+				Workspace w = workspace.get();
+				w.allocate((halo - r0) * nx);
+				if (w.sweep == sweep && w.slice == k)
+					w.swap();
+				else
+					normalize(x, k, r0, halo, e, w.current);
+				float[][] n = w.current;
+				float[][] m = null;
+				w.slice = -1;
+				if (k < nz - 1) {
+					normalize(x, k + 1, r0, r1, e, w.next);
+					m = w.next;
+					w.sweep = sweep;
+					w.slice = k + 1;
+				}
+				float[] t = output.data[k];
+				for (int j = r0; j < r1; j++) {
+					int q = (j - r0) * nx;
+					int p = j * nx;
+					for (int i = 0; i < nx; i++, p++, q++) {
+						float a = m == null ? 0f : n[2][q] - m[2][q];
+						if (i < nx - 1)
+							a += n[0][q] - n[0][q + 1];
+						if (j < ny - 1)
+							a += n[1][q] - n[1][q + nx];
+						t[p] = a;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Normalized forward gradient of the rows [r0, r1[ of the slice k.
+	 */
+	private static void normalize(RealSignal x, int k, int r0, int r1, float e, float[][] g) {
+		int nx = x.nx;
+		int ny = x.ny;
+		float[] a = x.data[k];
+		float[] b = k < x.nz - 1 ? x.data[k + 1] : null;
+		for (int j = r0; j < r1; j++) {
+			int q = (j - r0) * nx;
+			int p = j * nx;
+			for (int i = 0; i < nx; i++, p++, q++) {
+				float dx = i < nx - 1 ? a[p] - a[p + 1] : 0f;
+				float dy = j < ny - 1 ? a[p] - a[p + nx] : 0f;
+				float dz = b != null ? a[p] - b[p] : 0f;
+				double norm = Math.sqrt(dx * dx + dy * dy + dz * dz);
+				if (norm < e) {
+					g[0][q] = e;
+					g[1][q] = e;
+					g[2][q] = e;
+				}
+				else {
+					g[0][q] = (float) (dx / norm);
+					g[1][q] = (float) (dy / norm);
+					g[2][q] = (float) (dz / norm);
+				}
+			}
+		}
+	}
+
+	private static class Workspace {
+		private float[][]	current	= new float[3][0];
+		private float[][]	next	= new float[3][0];
+		private long		sweep	= 0;
+		private int			slice	= -1;
+
+		private void allocate(int size) {
+			if (current[0].length >= size)
+				return;
+			current = new float[3][size];
+			next = new float[3][size];
+			slice = -1;
+		}
+
+		private void swap() {
+			float[][] tmp = current;
+			current = next;
+			next = tmp;
+		}
+	}
+}
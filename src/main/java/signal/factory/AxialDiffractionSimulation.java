@@ -36,6 +36,7 @@ import fft.AbstractFFT;
 import fft.FFT;
 import signal.ComplexSignal;
 import signal.RealSignal;
+import signal.SignalCollector;
 import signal.factory.complex.ComplexSignalFactory;
 
 public class AxialDiffractionSimulation extends SignalFactory {
@@ -109,7 +110,8 @@ public class AxialDiffractionSimulation extends SignalFactory {
 			ComplexSignal c = ComplexSignalFactory.createHermitian(""+z, nx, ny, 1, real, imag);
 			RealSignal pz = fft.inverse(c).circular();
 			signal.setXY(z, pz.getXY(0));
-			signal.setXY(nz-1-z, pz.duplicate().getXY(0));
+			signal.setXY(nz-1-z, pz.getXY(0));
+			SignalCollector.free(pz);
 		}
 		signal.rescale(0, amplitude);
 	}
@@ -32,10 +32,19 @@
 package signal.factory.complex;
 
 import signal.ComplexSignal;
+import signal.HermitianSignal;
 
 public class ComplexSignalFactory {
 
 	public static ComplexSignal gaussian(int nx, int ny, int nz, double sigma) {
+		return createHermitian("Gaussian", nx, ny, nz, gaussianFunction(nx, ny, nz, sigma));
+	}
+
+	public static HermitianSignal gaussianHalf(int nx, int ny, int nz, double sigma) {
+		return createHermitianHalf("Gaussian", nx, ny, nz, gaussianFunction(nx, ny, nz, sigma));
+	}
+
+	private static float[][][] gaussianFunction(int nx, int ny, int nz, double sigma) {
 		double K = sigma * sigma / 2.0;
 		int xsize = nx / 2;
 		int ysize = ny / 2;
@@ -51,7 +60,7 @@ public class ComplexSignalFactory {
 					wr = Math.sqrt(wx * wx + wy * wy + wz * wz);
 					function[x][y][z] = (float) Math.exp(-wr * wr * K);
 				}
-		return createHermitian("Gaussian", nx, ny, nz, function);
+		return function;
 	}
 
 	public static ComplexSignal identity(int nx, int ny, int nz) {
@@ -67,6 +76,14 @@ public class ComplexSignalFactory {
 	}
 
 	public static ComplexSignal laplacian(int nx, int ny, int nz) {
+		return createHermitian("Laplacian", nx, ny, nz, laplacianFunction(nx, ny, nz));
+	}
+
+	public static HermitianSignal laplacianHalf(int nx, int ny, int nz) {
+		return createHermitianHalf("Laplacian", nx, ny, nz, laplacianFunction(nx, ny, nz));
+	}
+
+	private static float[][][] laplacianFunction(int nx, int ny, int nz) {
 		int xsize = nx / 2;
 		int ysize = ny / 2;
 		int zsize = nz / 2;
@@ -80,7 +97,7 @@ public class ComplexSignalFactory {
 					wz = (zsize > 0 ? Math.PI * z / zsize : 0);
 					function[x][y][z] = (float) ((wx * wx + wy * wy + wz * wz));
 				}
-		return createHermitian("Laplacian", nx, ny, nz, function);
+		return function;
 	}
 	
 	public static ComplexSignal directionalDerivative(int nx, int ny, int nz, double vx, double vy, double vz) {
@@ -122,6 +139,39 @@ public class ComplexSignalFactory {
 		return createHermitian("Airy", nx, ny, nz, function);
 	}
 
+	/**
+	 * Creates the half-spectrum of a real and symmetric function given on its
+	 * first octant.
+	 * 
+	 * @param name
+	 *            name of the signal
+	 * @param nx
+	 *            size of the real signal in X
+	 * @param ny
+	 *            size in Y
+	 * @param nz
+	 *            size in Z
+	 * @param firstQuadrant
+	 *            function of size [nx/2+1][ny/2+1][nz/2+1]
+	 * @return the half-spectrum of size [nx/2+1, ny, nz]
+	 */
+	public static HermitianSignal createHermitianHalf(String name, int nx, int ny, int nz, float[][][] firstQuadrant) {
+		HermitianSignal signal = new HermitianSignal(name, nx, ny, nz);
+		int xsize = firstQuadrant.length - 1;
+		int ysize = firstQuadrant[0].length - 1;
+		int zsize = firstQuadrant[0][0].length - 1;
+		int mx = signal.nx;
+		for (int z = 0; z < nz; z++) {
+			int qz = Math.min(zsize, Math.min(z, nz - z));
+			for (int y = 0; y < ny; y++) {
+				int qy = Math.min(ysize, Math.min(y, ny - y));
+				for (int x = 0; x < mx; x++)
+					signal.data[z][2 * (x + mx * y)] = firstQuadrant[Math.min(xsize, x)][qy][qz];
+			}
+		}
+		return signal;
+	}
+
 	public static ComplexSignal createHermitian(String name, int nx, int ny, int nz, float[][][] firstQuadrantReal, float[][][] firstQuadrantImag) {
 		ComplexSignal signal = new ComplexSignal(name, nx, ny, nz);
 		int xsize = firstQuadrantReal.length - 1;
@@ -0,0 +1,94 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package signal.storage;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+
+/**
+ * This class is the abstract class of the backing stores of the signals.
+ * 
+ * A storage provides slabs of float outside of the Java heap, they are used to
+ * offload the slices of a signal which is not accessed during a while, for
+ * example the input image and the PSF during the iterations of an algorithm.
+ * 
+ * Only the idle signals are offloaded: the kernels access the slices as
+ * float arrays, so the padded signal, the PSF, the estimate, the spectra and
+ * the working signals of an algorithm stay on the Java heap. When the working
+ * set of a volume is larger than the free memory, an off-heap storage lets
+ * the deconvolution run block by block (see Tiling.getOutOfCore): the image
+ * stays in the storage, only the blocks which are running are on the heap.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public abstract class AbstractStorage {
+
+	public abstract String getName();
+	public abstract String getShortname();
+	
+	/**
+	 * Returns true if the slabs are allocated outside of the Java heap.
+	 * 
+	 * @return true for an off-heap storage
+	 */
+	public abstract boolean isOffHeap();
+	
+	/**
+	 * Allocates a set of slabs, one per slice.
+	 * 
+	 * @param name
+	 *            name of the signal, used as prefix of the scratch files
+	 * @param count
+	 *            number of slabs
+	 * @param length
+	 *            number of float per slab
+	 * @return an array of slabs
+	 * @throws IOException
+	 *             if the storage is not able to allocate the slabs
+	 */
+	public abstract FloatBuffer[] allocate(String name, int count, int length) throws IOException;
+
+	/**
+	 * Releases a set of slabs previously returned by allocate().
+	 * 
+	 * @param slabs
+	 *            array of slabs
+	 */
+	public abstract void release(FloatBuffer[] slabs);
+	
+	@Override
+	public String toString() {
+		return getName();
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package signal.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.IdentityHashMap;
+
+/**
+ * This storage keeps the slabs in memory-mapped scratch files. The operating
+ * system pages the slabs in and out of the physical memory, so the offloaded
+ * signals do not count in the Java heap.
+ * 
+ * @author Daniel Sage
+ *
+ */
+public class MappedStorage extends AbstractStorage {
+
+	private String path;
+	private IdentityHashMap<FloatBuffer[], File> files = new IdentityHashMap<FloatBuffer[], File>();
+
+	public MappedStorage() {
+		this(System.getProperty("java.io.tmpdir"));
+	}
+
+	public MappedStorage(String path) {
+		this.path = path;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public String getName() {
+		return "Memory-mapped";
+	}
+
+	@Override
+	public String getShortname() {
+		return "mmap";
+	}
+
+	@Override
+	public boolean isOffHeap() {
+		return true;
+	}
+
+	@Override
+	public FloatBuffer[] allocate(String name, int count, int length) throws IOException {
+		File dir = new File(path);
+		if (!dir.isDirectory())
+			throw new IOException("Not a valid scratch directory: " + path);
+		String prefix = "dl2-" + name.replaceAll("[^A-Za-z0-9]", "") + "-";
+		File file = File.createTempFile(prefix, ".raw", dir);
+		file.deleteOnExit();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		FloatBuffer[] slabs = new FloatBuffer[count];
+		try {
+			FileChannel channel = raf.getChannel();
+			long bytes = 4L * length;
+			for (int k = 0; k < count; k++)
+				slabs[k] = channel.map(FileChannel.MapMode.READ_WRITE, k * bytes, bytes).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		}
+		finally {
+			// The mapping remains valid after closing the channel
+			raf.close();
+		}
+		synchronized (files) {
+			files.put(slabs, file);
+		}
+		return slabs;
+	}
+
+	@Override
+	public void release(FloatBuffer[] slabs) {
+		File file = null;
+		synchronized (files) {
+			file = files.remove(slabs);
+		}
+		if (file != null)
+			file.delete();
+	}
+
+	@Override
+	public String toString() {
+		return getName() + " (" + path + ")";
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package signal.storage;
+
+import java.util.ArrayList;
+
+public class Storage {
+
+	public static ArrayList<AbstractStorage> getStorages() {
+		ArrayList<AbstractStorage> storages = new ArrayList<AbstractStorage>();
+		storages.add(new HeapStorage());
+		storages.add(new DirectStorage());
+		storages.add(new MappedStorage());
+		return storages;
+	}
+
+	public static String[] getStoragesAsArray() {
+		ArrayList<AbstractStorage> storages = getStorages();
+		String names[] = new String[storages.size()];
+		for (int i = 0; i < storages.size(); i++)
+			names[i] = storages.get(i).getShortname();
+		return names;
+	}
+
+	/**
+	 * Returns the storage from its shortname.
+	 * 
+	 * @param name
+	 *            shortname of the storage: heap, direct or mmap
+	 * @param path
+	 *            scratch directory, only used by the memory-mapped storage
+	 * @return a storage, the heap storage if the name is not known
+	 */
+	public static AbstractStorage getByShortname(String name, String path) {
+		String n = name.trim().toLowerCase();
+		if (n.equals("mmap") || n.equals("mapped")) {
+			if (path == null || path.trim().equals(""))
+				return new MappedStorage();
+			return new MappedStorage(path.trim());
+		}
+		for (AbstractStorage storage : getStorages())
+			if (n.equals(storage.getShortname()))
+				return storage;
+		return getDefault();
+	}
+
+	public static AbstractStorage getDefault() {
+		return new HeapStorage();
+	}
+}
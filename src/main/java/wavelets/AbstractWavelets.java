@@ -31,12 +31,28 @@
 
 package wavelets;
 
+import signal.Parallel;
 import signal.RealSignal;
-import signal.SignalCollector;
 
+/**
+ * Separable wavelet transforms. The transforms are computed in place, scale
+ * after scale, on the coarse box [0, nx[ x [0, ny[ x [0, nz[ of a signal of
+ * the full size. Every pass along X, Y or Z gathers one line in a workspace,
+ * transforms it by split() or merge() and scatters it back. The lines of a
+ * pass are processed in parallel, each thread owns its workspace, so an
+ * algorithm which calls shrinkage() at every iteration does not allocate.
+ */
 public abstract class AbstractWavelets {
 
 	protected int scales;
+
+	/** Line buffers, one pair per thread. */
+	private ThreadLocal<float[][]> workspace = new ThreadLocal<float[][]>() {
+		@Override
+		protected float[][] initialValue() {
+			return new float[][] { new float[0], new float[0] };
+		}
+	};
 	
 	public AbstractWavelets() {
 		this.scales = 3;
@@ -47,46 +63,87 @@ public abstract class AbstractWavelets {
 	}
 	
 	public abstract void setScale(int scale);
-	public abstract void analysis1(RealSignal in, RealSignal out);
-	public abstract void synthesis1(RealSignal in, RealSignal out);
 	public abstract String getName();
 	public abstract String getDocumentation();
+
+	/**
+	 * One scale of the analysis of a line: the n first samples of u are
+	 * transformed in the n first samples of v, lowpass then highpass.
+	 */
+	protected abstract void split(float[] u, float[] v, int n);
+
+	/**
+	 * One scale of the synthesis of a line, the inverse of split().
+	 */
+	protected abstract void merge(float[] u, float[] v, int n);
 	
 	public int getScales() {
 		return scales;
 	}
 	
+	/**
+	 * Soft thresholding of the wavelet coefficients. The threshold is fused
+	 * in the analysis: every coefficient is thresholded in the pass where it
+	 * gets its final value, the coefficients are thus read and written once
+	 * less than with a separate thresholding.
+	 */
 	public void shrinkage(float threshold, RealSignal in, RealSignal out, RealSignal buffer) {
-		analysis(in, buffer);
-		buffer.thresholdSoft(-threshold, threshold);
+		if (scales < 1) {
+			buffer.copy(in);
+			buffer.thresholdSoft(-threshold, threshold);
+		}
+		else {
+			analysis(in, buffer, threshold, true);
+		}
 		synthesis(buffer, out);
 	}
 
+	/**
+	 * Releases the signals kept by the instance between two calls, if any.
+	 */
+	public void free() {
+	}
+
+	public void analysis1(RealSignal in, RealSignal out) {
+		if (out != in)
+			out.copy(in);
+		analysis1(out, in.nx, in.ny, in.nz);
+	}
+
+	public void synthesis1(RealSignal in, RealSignal out) {
+		if (out != in)
+			out.copy(in);
+		synthesis1(out, in.nx, in.ny, in.nz);
+	}
+
 	public void analysis(RealSignal in, RealSignal out) {
+		analysis(in, out, 0f, false);
+	}
+
+	private void analysis(RealSignal in, RealSignal out, float threshold, boolean shrink) {
 		String name = "w(" + in.name + ")";
 
 		if (out == null)
 			out = new RealSignal(name, in.nx, in.ny, in.nz);	
-		int nxfine = in.nx;
-		int nyfine = in.ny;
-		int nzfine = in.nz;
-		int nx = nxfine;
-		int ny = nyfine;
-		int nz = nzfine;
+		if (out != in)
+			out.copy(in);
+		int nx = in.nx;
+		int ny = in.ny;
+		int nz = in.nz;
 		for ( int i=0; i<scales; i++) {
-			RealSignal sub = new RealSignal("sub" + i, nx, ny, nz);
-			if (i==0)
-				in.getSignal(sub);
+			int hx = Math.max(1, nx / 2);
+			int hy = Math.max(1, ny / 2);
+			int hz = Math.max(1, nz / 2);
+			if (shrink) {
+				// The coefficients out of the next box are final at this scale
+				Shrink last = i == scales-1 ? new Shrink(threshold, 0, 0, 0) : new Shrink(threshold, hx, hy, hz);
+				pass(out, nx, ny, nz, true, last);
+			}
 			else
-				out.getSignal(sub);
-			RealSignal subout = new RealSignal("subout" + i, nx, ny, nz);
-			analysis1(sub, subout);
-			out.setSignal(subout);
-			SignalCollector.free(sub);
-			SignalCollector.free(subout);
-			nx = Math.max(1, nx / 2);
-			ny = Math.max(1, ny / 2);
-			nz = Math.max(1, nz / 2);
+				analysis1(out, nx, ny, nz);
+			nx = hx;
+			ny = hy;
+			nz = hz;
 		}
 	}
 
@@ -94,27 +151,159 @@ public abstract class AbstractWavelets {
 		String name = "iw(" + in.name + ")";
 		if (out == null)
 			out = new RealSignal(name, in.nx, in.ny, in.nz);	
-		int div = (int)Math.pow(2.0, (double)(scales-1));
-		int nxcoarse = Math.max(1, in.nx / div);
-		int nycoarse = Math.max(1, in.ny / div);
-		int nzcoarse = Math.max(1, in.nz / div);
-		int nx = nxcoarse;
-		int ny = nycoarse;
-		int nz = nzcoarse;
-		out.copy(in);
+		if (out != in)
+			out.copy(in);
 		
-		for ( int i=0; i<scales; i++) {
-			RealSignal sub = new RealSignal("sub" + i, nx, ny, nz);
-			out.getSignal(sub);
-			RealSignal subout = new RealSignal("subout" + i, nx, ny, nz);
-			synthesis1(sub, subout);
-			out.setSignal(subout);
-			SignalCollector.free(sub);
-			SignalCollector.free(subout);
-			nx = nx * 2;
-			ny = ny * 2;
-			if (nz > 1) 
-				nz = nz * 2;			
+		// Replay the boxes of analysis() backward, so odd sizes are inverted
+		for ( int i=scales-1; i>=0; i--) {
+			int nx = in.nx;
+			int ny = in.ny;
+			int nz = in.nz;
+			for (int k=0; k<i; k++) {
+				nx = Math.max(1, nx / 2);
+				ny = Math.max(1, ny / 2);
+				nz = Math.max(1, nz / 2);
+			}
+			synthesis1(out, nx, ny, nz);
+		}
+	}
+
+	/**
+	 * One scale of the analysis, in place on the box [0, nx[ x [0, ny[ x [0,
+	 * nz[ of the signal.
+	 */
+	protected void analysis1(RealSignal signal, int nx, int ny, int nz) {
+		pass(signal, nx, ny, nz, true, null);
+	}
+
+	/**
+	 * One scale of the synthesis, in place on the box [0, nx[ x [0, ny[ x [0,
+	 * nz[ of the signal.
+	 */
+	protected void synthesis1(RealSignal signal, int nx, int ny, int nz) {
+		pass(signal, nx, ny, nz, false, null);
+	}
+
+	/**
+	 * Runs the X, Y and Z passes of one scale. The lines of a pass are
+	 * independent, they are shared among the threads of signal.Parallel: the X
+	 * pass is partitioned as a signal nx x ny x nz, the Y pass as a signal ny x
+	 * nx x nz and the Z pass as a signal nz x (nx*ny). The soft threshold, if
+	 * any, is applied by the last pass.
+	 */
+	private void pass(RealSignal signal, final int nx, final int ny, final int nz, final boolean analysis, final Shrink shrink) {
+		final int mx = signal.nx;
+		final float[][] data = signal.data;
+		final Shrink shrinkY = nz > 1 ? null : shrink;
+		final Shrink shrinkZ = nz > 1 ? shrink : null;
+
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int z, int from, int to) {
+				float[][] w = workspace(nx);
+				float[] slice = data[z];
+				for (int y = from / nx; y < to / nx; y++) {
+					int offset = y * mx;
+					System.arraycopy(slice, offset, w[0], 0, nx);
+					line(w, analysis, nx);
+					System.arraycopy(w[1], 0, slice, offset, nx);
+				}
+			}
+		});
+
+		Parallel.run(ny, nx, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int z, int from, int to) {
+				float[][] w = workspace(ny);
+				float[] u = w[0];
+				float[] v = w[1];
+				float[] slice = data[z];
+				for (int x = from / ny; x < to / ny; x++) {
+					for (int y = 0, i = x; y < ny; y++, i += mx)
+						u[y] = slice[i];
+					line(w, analysis, ny);
+					if (shrinkY == null)
+						for (int y = 0, i = x; y < ny; y++, i += mx)
+							slice[i] = v[y];
+					else
+						for (int y = 0, i = x; y < ny; y++, i += mx)
+							slice[i] = shrinkY.apply(v[y], x, y, z);
+				}
+			}
+		});
+
+		if (nz > 1) {
+			Parallel.run(nz, nx * ny, 1, new Parallel.Stripe() {
+				@Override
+				public void apply(int k, int from, int to) {
+					float[][] w = workspace(nz);
+					float[] u = w[0];
+					float[] v = w[1];
+					for (int p = from / nz; p < to / nz; p++) {
+						int x = p % nx;
+						int y = p / nx;
+						int i = x + y * mx;
+						for (int z = 0; z < nz; z++)
+							u[z] = data[z][i];
+						line(w, analysis, nz);
+						if (shrinkZ == null)
+							for (int z = 0; z < nz; z++)
+								data[z][i] = v[z];
+						else
+							for (int z = 0; z < nz; z++)
+								data[z][i] = shrinkZ.apply(v[z], x, y, z);
+					}
+				}
+			});
+		}
+	}
+
+	private void line(float[][] w, boolean analysis, int n) {
+		float[] u = w[0];
+		float[] v = w[1];
+		if (analysis)
+			split(u, v, n);
+		else
+			merge(u, v, n);
+		if (n % 2 == 1)
+			v[n - 1] = u[n - 1];
+	}
+
+	/**
+	 * Returns the line buffers of the calling thread, at least n samples.
+	 */
+	private float[][] workspace(int n) {
+		float[][] w = workspace.get();
+		if (w[0].length < n) {
+			w = new float[][] { new float[n], new float[n] };
+			workspace.set(w);
+		}
+		return w;
+	}
+
+	/**
+	 * Soft threshold of the coefficients out of the box [0, hx[ x [0, hy[ x
+	 * [0, hz[, the coefficients which are final at the current scale.
+	 */
+	private static class Shrink {
+		private float	threshold;
+		private int		hx, hy, hz;
+
+		public Shrink(float threshold, int hx, int hy, int hz) {
+			this.threshold = threshold;
+			this.hx = hx;
+			this.hy = hy;
+			this.hz = hz;
+		}
+
+		public float apply(float a, int x, int y, int z) {
+			if (x < hx && y < hy && z < hz)
+				return a;
+			if (a <= -threshold)
+				return a + threshold;
+			if (a >= threshold)
+				return a - threshold;
+			return 0f;
 		}
 	}
 
@@ -0,0 +1,223 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wavelets;
+
+import java.util.Random;
+
+import signal.Parallel;
+import signal.RealSignal;
+import signal.SignalCollector;
+
+/**
+ * Cycle spinning of a decimated wavelet basis. The shrinkage is applied to
+ * several circular shifts of the signal and the unshifted results are
+ * averaged, which removes the blocky artifacts of the decimated transform.
+ * When the number of shifts covers all the shifts modulo 2^scales, the
+ * result is the shrinkage of the undecimated (stationary) transform, otherwise
+ * a random subset of shifts is drawn at every call.
+ * 
+ * The redundant coefficients are never stored: each shift is transformed in
+ * one signal which is allocated at the first call and reused by the next
+ * ones, and the average is accumulated in the output. The analysis and the
+ * synthesis are the ones of the decimated basis.
+ */
+public class CycleSpinningWavelets extends AbstractWavelets {
+
+	/** Suffix of the name of the cycle spinning variant of a basis. */
+	public static final String	SUFFIX	= "-Spin";
+
+	private AbstractWavelets	wavelets;
+	private int					shifts	= 4;
+	private Random				random	= new Random(0);
+	private RealSignal			shifted	= null;
+	private RealSignal			sum		= null;
+
+	public CycleSpinningWavelets(AbstractWavelets wavelets) {
+		super(wavelets.getScales());
+		this.wavelets = wavelets;
+	}
+
+	public static boolean isCycleSpinning(String name) {
+		return name != null && name.endsWith(SUFFIX);
+	}
+
+	@Override
+	public void setScale(int scale) {
+		this.scales = scale;
+		wavelets.setScale(scale);
+	}
+
+	/**
+	 * Sets the number of shifts averaged by each shrinkage, the budget of
+	 * transforms per iteration.
+	 */
+	public void setShifts(int shifts) {
+		this.shifts = Math.max(1, shifts);
+	}
+
+	public int getShifts() {
+		return shifts;
+	}
+
+	@Override
+	public String getName() {
+		return wavelets.getName() + SUFFIX;
+	}
+
+	@Override
+	public String getDocumentation() {
+		return wavelets.getDocumentation() + ", cycle spinning";
+	}
+
+	@Override
+	protected void split(float[] u, float[] v, int n) {
+		wavelets.split(u, v, n);
+	}
+
+	@Override
+	protected void merge(float[] u, float[] v, int n) {
+		wavelets.merge(u, v, n);
+	}
+
+	@Override
+	public void shrinkage(float threshold, RealSignal in, RealSignal out, RealSignal buffer) {
+		int period = 1 << Math.min(scales, 30);
+		int px = Math.min(period, in.nx);
+		int py = Math.min(period, in.ny);
+		int pz = Math.min(period, in.nz);
+		long all = (long) px * py * pz;
+		int count = (int) Math.min(shifts, all);
+
+		shifted = reuse(shifted, in);
+		RealSignal acc = out;
+		if (out == in) {
+			sum = reuse(sum, in);
+			acc = sum;
+		}
+		for (int s = 0; s < count; s++) {
+			int dx, dy, dz;
+			if (count == all) {
+				dx = s % px;
+				dy = (s / px) % py;
+				dz = s / px / py;
+			}
+			else {
+				dx = random.nextInt(px);
+				dy = random.nextInt(py);
+				dz = random.nextInt(pz);
+			}
+			shift(in, shifted, dx, dy, dz);
+			wavelets.shrinkage(threshold, shifted, shifted, buffer);
+			unshift(shifted, acc, dx, dy, dz, s == 0, s == count - 1 ? 1f / count : 1f);
+		}
+		if (acc != out)
+			out.copy(acc);
+	}
+
+	/**
+	 * Releases the signals kept between the calls of shrinkage().
+	 */
+	@Override
+	public void free() {
+		if (shifted != null)
+			SignalCollector.free(shifted);
+		if (sum != null)
+			SignalCollector.free(sum);
+		shifted = null;
+		sum = null;
+	}
+
+	private static RealSignal reuse(RealSignal signal, RealSignal in) {
+		if (signal != null && signal.nx == in.nx && signal.ny == in.ny && signal.nz == in.nz)
+			return signal;
+		if (signal != null)
+			SignalCollector.free(signal);
+		return new RealSignal("spin", in.nx, in.ny, in.nz);
+	}
+
+	/**
+	 * Circular shift, out(x + dx, y + dy, z + dz) = in(x, y, z).
+	 */
+	private static void shift(final RealSignal in, final RealSignal out, final int dx, final int dy, final int dz) {
+		final int nx = in.nx;
+		final int ny = in.ny;
+		final int nz = in.nz;
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = in.data[(k - dz + nz) % nz];
+				float[] b = out.data[k];
+				for (int j = from / nx; j < to / nx; j++) {
+					int source = ((j - dy + ny) % ny) * nx;
+					int target = j * nx;
+					System.arraycopy(a, source, b, target + dx, nx - dx);
+					System.arraycopy(a, source + nx - dx, b, target, dx);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Accumulates the inverse circular shift of in into out, the first shift
+	 * overwrites out and the last one scales the sum.
+	 */
+	private static void unshift(final RealSignal in, final RealSignal out, final int dx, final int dy, final int dz, final boolean first, final float scale) {
+		final int nx = in.nx;
+		final int ny = in.ny;
+		final int nz = in.nz;
+		Parallel.run(nx, ny, nz, new Parallel.Stripe() {
+			@Override
+			public void apply(int k, int from, int to) {
+				float[] a = in.data[(k + dz) % nz];
+				float[] b = out.data[k];
+				for (int j = from / nx; j < to / nx; j++) {
+					int source = ((j + dy) % ny) * nx;
+					int target = j * nx;
+					int split = nx - dx;
+					if (first) {
+						for (int i = 0; i < split; i++)
+							b[target + i] = scale * a[source + i + dx];
+						for (int i = split; i < nx; i++)
+							b[target + i] = scale * a[source + i - split];
+					}
+					else {
+						for (int i = 0; i < split; i++)
+							b[target + i] = scale * (b[target + i] + a[source + i + dx]);
+						for (int i = split; i < nx; i++)
+							b[target + i] = scale * (b[target + i] + a[source + i - split]);
+					}
+				}
+			}
+		});
+	}
+
+}
@@ -46,6 +46,10 @@ public class Wavelets {
 		list.add(new Spline1Wavelets(3));
 		list.add(new Spline3Wavelets(3));
 		list.add(new Spline5Wavelets(3));
+		list.add(new CycleSpinningWavelets(new HaarWavelets(3)));
+		list.add(new CycleSpinningWavelets(new Spline1Wavelets(3)));
+		list.add(new CycleSpinningWavelets(new Spline3Wavelets(3)));
+		list.add(new CycleSpinningWavelets(new Spline5Wavelets(3)));
 		return list;
 	}
 
@@ -73,6 +77,19 @@ public class Wavelets {
 		return names;
 	}
 	
+	/**
+	 * Returns the longest name of wavelets contained in a text, case
+	 * insensitive, or null if there is none.
+	 */
+	public static String findWaveletsName(String text) {
+		String found = null;
+		for (String name : getWaveletsAsArray())
+			if (text.toLowerCase().contains(name.toLowerCase()))
+				if (found == null || name.length() > found.length())
+					found = name;
+		return found;
+	}
+
 	public static AbstractWavelets getDefaultWavelets() {
 		return new HaarWavelets(3);
 	}
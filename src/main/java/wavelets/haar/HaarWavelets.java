@@ -31,12 +31,12 @@
 
 package wavelets.haar;
 
-import signal.RealSignal;
 import wavelets.AbstractWavelets;
 
 public class HaarWavelets extends AbstractWavelets {
 
-	private double	q	= Math.sqrt(2);
+	private static final float	q	= (float) Math.sqrt(2);
+	private static final float	r	= (float) (1.0 / Math.sqrt(2));
 
 	public HaarWavelets(int scales) {
 		super(scales);
@@ -57,94 +57,29 @@ public class HaarWavelets extends AbstractWavelets {
 		return "Haar Wavelets";
 	}
 
+	/**
+	 * Lifting scheme of the orthonormal Haar transform: predict d = a - b,
+	 * update s = b + d / 2, then normalize s by sqrt(2) and d by 1 / sqrt(2).
+	 */
 	@Override
-	public void analysis1(RealSignal in, RealSignal out) {
-		int nx = in.nx;
-		int ny = in.ny;
-		int nz = in.nz;
-
-		float ux[] = new float[nx];
-		float vx[] = new float[nx];
-		for (int z = 0; z < nz; z++)
-			for (int y = 0; y < ny; y++) {
-				ux = in.getX(y, z);
-				split(ux, vx);
-				out.setX(y, z, vx);
-			}
-
-		float uy[] = new float[ny];
-		float vy[] = new float[ny];
-		for (int z = 0; z < nz; z++)
-			for (int x = 0; x < nx; x++) {
-				uy = out.getY(x, z);
-				split(uy, vy);
-				out.setY(x, z, vy);
-			}
-		if (nz > 1) {
-			float uz[] = new float[nz];
-			float vz[] = new float[nz];
-			for (int x = 0; x < nx; x++)
-				for (int y = 0; y < ny; y++) {
-					uz = out.getZ(x, y);
-					split(uz, vz);
-					out.setZ(x, y, vz);
-				}
+	protected void split(float u[], float v[], int n) {
+		int n2 = n / 2;
+		for (int i = 0, j = 0; i < n2; i++, j += 2) {
+			float d = u[j] - u[j + 1];
+			float s = u[j + 1] + 0.5f * d;
+			v[i] = s * q;
+			v[i + n2] = d * r;
 		}
 	}
 
 	@Override
-	public void synthesis1(RealSignal in, RealSignal out) {
-
-		int nx = in.nx;
-		int ny = in.ny;
-		int nz = in.nz;
-
-		float ux[] = new float[nx];
-		float vx[] = new float[nx];
-		for (int z = 0; z < nz; z++)
-			for (int y = 0; y < ny; y++) {
-				ux = in.getX(y, z);
-				merge(ux, vx);
-				out.setX(y, z, vx);
-			}
-
-		float uy[] = new float[ny];
-		float vy[] = new float[ny];
-		for (int z = 0; z < nz; z++)
-			for (int x = 0; x < nx; x++) {
-				uy = out.getY(x, z);
-				merge(uy, vy);
-				out.setY(x, z, vy);
-			}
-		
-		if (nz > 1) {
-			float uz[] = new float[nz];
-			float vz[] = new float[nz];
-			for (int x = 0; x < nx; x++)
-				for (int y = 0; y < ny; y++) {
-					uz = out.getZ(x, y);
-					merge(uz, vz);
-					out.setZ(x, y, vz);
-				}
-		}
-	}
-
-	private void split(float vin[], float vout[]) {
-		int n2 = vin.length / 2;
-		int j;
-		for (int i = 0; i < n2; i++) {
-			j = 2 * i;
-			vout[i] = (float) ((vin[j] + vin[j + 1]) / q);
-			vout[i + n2] = (float) ((vin[j] - vin[j + 1]) / q);
-		}
-
-	}
-
-	private void merge(float vin[], float vout[]) {
-		int n2 = vin.length / 2;
-		for (int i = 0; i < n2; i++) {
-			vout[2 * i] = (float) ((vin[i] + vin[i + n2]) / q);
-			vout[2 * i + 1] = (float) ((vin[i] - vin[i + n2]) / q);
+	protected void merge(float u[], float v[], int n) {
+		int n2 = n / 2;
+		for (int i = 0, j = 0; i < n2; i++, j += 2) {
+			float d = u[i + n2] * q;
+			float b = u[i] * r - 0.5f * d;
+			v[j] = d + b;
+			v[j + 1] = b;
 		}
 	}
 }
@@ -31,7 +31,6 @@
 
 package wavelets.spline;
 
-import signal.RealSignal;
 import wavelets.AbstractWavelets;
 
 public class Spline5Wavelets extends AbstractWavelets {
@@ -46,7 +45,7 @@ public class Spline5Wavelets extends AbstractWavelets {
 	@Override
 	public void setScale(int scale) {
 		this.scales = scale;
-		this.tool = new SplineWaveletsTool(scale, 1);
+		this.tool = new SplineWaveletsTool(scale, 5);
 	}
 
 	@Override
@@ -60,12 +59,12 @@ public class Spline5Wavelets extends AbstractWavelets {
 	}
 
 	@Override
-    public void analysis1(RealSignal in, RealSignal out) {
-		tool.analysis1(in, out);
+	protected void split(float u[], float v[], int n) {
+		tool.split(u, v, n);
 	}
-	
+
 	@Override
-    public void synthesis1(RealSignal in, RealSignal out) {
-		tool.synthesis1(in, out);
+	protected void merge(float u[], float v[], int n) {
+		tool.merge(u, v, n);
 	}
 }
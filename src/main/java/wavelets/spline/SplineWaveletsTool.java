@@ -31,8 +31,6 @@
 
 package wavelets.spline;
 
-import signal.RealSignal;
-
 public class SplineWaveletsTool {
 
 	private SplineFilter	filters;
@@ -41,76 +39,15 @@ public class SplineWaveletsTool {
 		this.filters = new SplineFilter(order);
 	}
 
-	public void analysis1(RealSignal in, RealSignal out) {
-		int nx = in.nx;
-		int ny = in.ny;
-		int nz = in.nz;
-		float ux[] = new float[nx];
-		float vx[] = new float[nx];
-		for (int z = 0; z < nz; z++)
-			for (int y = 0; y < ny; y++) {
-				ux = in.getX(y, z);
-				splitMirror(ux, vx, filters.h, filters.g);
-				out.setX(y, z, vx);
-			}
-
-		float uy[] = new float[ny];
-		float vy[] = new float[ny];
-		for (int z = 0; z < nz; z++)
-			for (int x = 0; x < nx; x++) {
-				uy = out.getY(x, z);
-				splitMirror(uy, vy, filters.h, filters.g);
-				out.setY(x, z, vy);
-			}
-
-		if (nz > 1) {
-			float uz[] = new float[nz];
-			float vz[] = new float[nz];
-			for (int x = 0; x < nx; x++)
-				for (int y = 0; y < ny; y++) {
-					uz = out.getZ(x, y);
-					splitMirror(uz, vz, filters.h, filters.g);
-					out.setZ(x, y, vz);
-				}
-		}
+	public void split(float vin[], float vout[], int n) {
+		splitMirror(vin, vout, n, filters.h, filters.g);
 	}
 
-	public void synthesis1(RealSignal in, RealSignal out) {
-		int nx = in.nx;
-		int ny = in.ny;
-		int nz = in.nz;
-		float ux[] = new float[nx];
-		float vx[] = new float[nx];
-		for (int z = 0; z < nz; z++)
-			for (int y = 0; y < ny; y++) {
-				ux = in.getX(y, z);
-				mergeMirror(ux, vx, filters.h, filters.g);
-				out.setX(y, z, vx);
-			}
-
-		float uy[] = new float[ny];
-		float vy[] = new float[ny];
-		for (int z = 0; z < nz; z++)
-			for (int x = 0; x < nx; x++) {
-				uy = out.getY(x, z);
-				mergeMirror(uy, vy, filters.h, filters.g);
-				out.setY(x, z, vy);
-			}
-
-		if (nz > 1) {
-			float uz[] = new float[nz];
-			float vz[] = new float[nz];
-			for (int x = 0; x < nx; x++)
-				for (int y = 0; y < ny; y++) {
-					uz = out.getZ(x, y);
-					mergeMirror(uz, vz, filters.h, filters.g);
-					out.setZ(x, y, vz);
-				}
-		}
+	public void merge(float vin[], float vout[], int n) {
+		mergeMirror(vin, vout, n, filters.h, filters.g);
 	}
 
-	static private void splitMirror(float vin[], float vout[], double h[], double g[]) {
-		int n = vin.length;
+	static private void splitMirror(float vin[], float vout[], int n, double h[], double g[]) {
 		int n2 = n / 2;
 		int nh = h.length;
 		int ng = g.length;
@@ -164,8 +101,7 @@ public class SplineWaveletsTool {
 		}
 	}
 
-	static private void mergeMirror(float vin[], float vout[], double h[], double g[]) {
-		int n = vin.length;
+	static private void mergeMirror(float vin[], float vout[], int n, double h[], double g[]) {
 		int n2 = n / 2;
 		int nh = h.length;
 		int ng = g.length;
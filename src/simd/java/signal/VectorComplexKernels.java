@@ -0,0 +1,132 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package signal;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation of the complex kernels with the Vector API. A vector
+ * holds interleaved pairs (real, imaginary); the products are computed with
+ * the real and the imaginary parts duplicated in every pair and with the
+ * swapped pairs of the second operand. The tail of the range is computed by
+ * the scalar kernels.
+ * 
+ * It requires Java 17 and --add-modules jdk.incubator.vector, it is loaded by
+ * ComplexKernels when available.
+ * 
+ * @author Daniel Sage
+ * 
+ */
+class VectorComplexKernels extends ComplexKernels {
+
+	private static final VectorSpecies<Float>	SPECIES	= FloatVector.SPECIES_PREFERRED;
+	private static final int					LENGTH	= SPECIES.length();
+
+	private static final VectorShuffle<Float>	SWAP	= VectorShuffle.fromOp(SPECIES, i -> i ^ 1);
+	private static final VectorShuffle<Float>	REAL	= VectorShuffle.fromOp(SPECIES, i -> i & ~1);
+	private static final VectorShuffle<Float>	IMAG	= VectorShuffle.fromOp(SPECIES, i -> i | 1);
+	private static final FloatVector			MINUS	= alternate(-1f, 1f);
+	private static final FloatVector			CONJ	= alternate(1f, -1f);
+
+	VectorComplexKernels() {
+		if (LENGTH < 2)
+			throw new UnsupportedOperationException("No SIMD for complex pairs");
+	}
+
+	private static FloatVector alternate(float even, float odd) {
+		float[] pattern = new float[LENGTH];
+		for (int i = 0; i < LENGTH; i++)
+			pattern[i] = i % 2 == 0 ? even : odd;
+		return FloatVector.fromArray(SPECIES, pattern, 0);
+	}
+
+	@Override
+	public String getName() {
+		return "simd " + SPECIES.vectorBitSize() + " bits";
+	}
+
+	/**
+	 * @return (ar.br - ai.bi, ar.bi + ai.br) for every pair
+	 */
+	private FloatVector product(FloatVector a, FloatVector b) {
+		FloatVector ar = a.rearrange(REAL);
+		FloatVector ai = a.rearrange(IMAG).mul(MINUS);
+		return b.rearrange(SWAP).fma(ai, ar.mul(b));
+	}
+
+	@Override
+	public void multiply(float[] a, float[] b, int from, int to, boolean conjugate, float[] output, int offset) {
+		int bound = from + SPECIES.loopBound(to - from);
+		int i = from;
+		int o = offset;
+		for (; i < bound; i += LENGTH, o += LENGTH) {
+			FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+			FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+			if (conjugate)
+				vb = vb.mul(CONJ);
+			product(va, vb).intoArray(output, o);
+		}
+		super.multiply(a, b, i, to, conjugate, output, o);
+	}
+
+	@Override
+	public void divide(float[] a, float[] b, int from, int to, float minimum, float[] output, int offset) {
+		int bound = from + SPECIES.loopBound(to - from);
+		int i = from;
+		int o = offset;
+		for (; i < bound; i += LENGTH, o += LENGTH) {
+			FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+			FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+			FloatVector b2 = vb.mul(vb);
+			FloatVector mag = b2.add(b2.rearrange(SWAP)).lanewise(VectorOperators.MAX, minimum);
+			product(va, vb.mul(CONJ)).div(mag).intoArray(output, o);
+		}
+		super.divide(a, b, i, to, minimum, output, o);
+	}
+
+	@Override
+	public void multiplyAdd(float[] x, float[] a, float[] g, int from, int to) {
+		int bound = from + SPECIES.loopBound(to - from);
+		int i = from;
+		for (; i < bound; i += LENGTH) {
+			FloatVector vx = FloatVector.fromArray(SPECIES, x, i);
+			FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+			FloatVector vg = FloatVector.fromArray(SPECIES, g, i);
+			product(vx, va).add(vg).intoArray(x, i);
+		}
+		super.multiplyAdd(x, a, g, i, to);
+	}
+}
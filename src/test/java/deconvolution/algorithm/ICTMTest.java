@@ -0,0 +1,74 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package deconvolution.algorithm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import deconvolutionlab.monitor.Monitors;
+import signal.RealSignal;
+import signal.factory.Gaussian;
+
+public class ICTMTest {
+
+	/**
+	 * The non-negativity of ICTM is part of the algorithm, it holds with a
+	 * controller given after the construction, and it rules out the closed
+	 * form of the iterations.
+	 */
+	@Test
+	public void testNonNegativeOutput() {
+		int nx = 32, ny = 32, nz = 8;
+		RealSignal image = new RealSignal("image", nx, ny, nz);
+		for (int k = 2; k < 6; k++)
+			for (int i = 8; i < 24; i++)
+				for (int j = 8; j < 24; j++)
+					image.data[k][i + nx * j] = 100f;
+		RealSignal psf = new Gaussian(2, 2, 1).generate(nx, ny, nz);
+
+		ICTM ictm = new ICTM(10, 1.0, 0.0001);
+		Controller controller = new Controller();
+		controller.setMonitors(new Monitors());
+		controller.setDisplayFinal(false);
+		ictm.setController(controller);
+		RealSignal x = ictm.run(image, psf);
+
+		assertEquals("constraint", Constraint.NONNEGATIVE, controller.getConstraint());
+		float min = Float.MAX_VALUE;
+		for (int k = 0; k < x.nz; k++)
+			for (int i = 0; i < x.nx * x.ny; i++)
+				min = Math.min(min, x.data[k][i]);
+		assertTrue("minimum " + min, min >= 0f);
+	}
+}
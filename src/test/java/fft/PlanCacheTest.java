@@ -0,0 +1,112 @@
+/*
+ * DeconvolutionLab2
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: DeconvolutionLab2: An Open-Source Software for Deconvolution
+ * Microscopy D. Sage, L. Donati, F. Soulez, D. Fortun, G. Schmit, A. Seitz,
+ * R. Guiet, C. Vonesch, M Unser, Methods of Elsevier, 2017.
+ */
+
+/*
+ * Copyright 2010-2017 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of DeconvolutionLab2 (DL2).
+ * 
+ * DL2 is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * DL2 is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * DL2. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fft;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import deconvolutionlab.monitor.Monitors;
+import fft.academic.AcademicFFT_XYZ;
+import signal.ComplexSignal;
+import signal.RealSignal;
+
+public class PlanCacheTest {
+
+	private Monitors monitors = new Monitors();
+
+	@Before
+	public void setUp() {
+		PlanCache.clear();
+	}
+
+	@After
+	public void tearDown() {
+		PlanCache.clear();
+	}
+
+	/**
+	 * The FFT of a run is given again to the next run, as the controller
+	 * does. A shape seen before must not hit an entry initialized since for
+	 * another shape.
+	 */
+	@Test
+	public void testAlternatingShapes() {
+		int shapes[][] = { { 64, 64, 16 }, { 32, 32, 8 }, { 64, 64, 16 }, { 32, 32, 8 } };
+		AbstractFFT fft = new AcademicFFT_XYZ();
+		for (int shape[] : shapes) {
+			fft = PlanCache.acquire(monitors, fft, shape[0], shape[1], shape[2]);
+			assertEquals("nx", shape[0], fft.getSizeX());
+			assertEquals("ny", shape[1], fft.getSizeY());
+			assertEquals("nz", shape[2], fft.getSizeZ());
+			assertRoundTrip(fft, shape[0], shape[1], shape[2]);
+			PlanCache.release(fft);
+		}
+	}
+
+	@Test
+	public void testLeasedFFTIsNotInitializedAgain() {
+		AbstractFFT first = PlanCache.acquire(monitors, new AcademicFFT_XYZ(), 32, 32, 8);
+		PlanCache.release(first);
+		AbstractFFT leased = PlanCache.acquire(monitors, new AcademicFFT_XYZ(), 32, 32, 8);
+		assertSame("hit", first, leased);
+
+		AbstractFFT other = PlanCache.acquire(monitors, first, 16, 16, 4);
+		assertNotSame("leased instance", leased, other);
+		assertEquals("leased nx", 32, leased.getSizeX());
+		assertRoundTrip(leased, 32, 32, 8);
+		PlanCache.release(other);
+		PlanCache.release(leased);
+	}
+
+	private void assertRoundTrip(AbstractFFT fft, int nx, int ny, int nz) {
+		RealSignal x = new RealSignal("x", nx, ny, nz);
+		Random rand = new Random(1);
+		for (int k = 0; k < nz; k++)
+			for (int i = 0; i < nx * ny; i++)
+				x.data[k][i] = rand.nextFloat();
+		ComplexSignal X = fft.transform(x);
+		RealSignal y = fft.inverse(X);
+		double error = 0;
+		for (int k = 0; k < nz; k++)
+			for (int i = 0; i < nx * ny; i++)
+				error = Math.max(error, Math.abs(x.data[k][i] - y.data[k][i]));
+		assertTrue("round trip error " + error, error < 1e-4);
+	}
+}